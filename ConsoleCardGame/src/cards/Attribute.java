@@ -1,5 +1,6 @@
 package cards;
 
+import game.Zobrist;
 import utility.Util;
 
 /**
@@ -7,7 +8,10 @@ import utility.Util;
  * Designed to hold information about an attribute.
  * There are 2 categories of attributes: Timed and non timed
  * Each category can have any of the types described in AttributeType.
+ * What an attribute does is its effect script (by default the one of its type), compiled once when the
+ * attribute is created.
  * @see {@link AttributeType}
+ * @see {@link EffectCompiler}
  * @author paulo
  */
 public class Attribute {
@@ -20,6 +24,11 @@ public class Attribute {
     // Instance constants
     private final boolean is_timed;
     private final int turns;
+    private final String script;
+    private final Effect effect;
+    private final boolean touches_self;
+    private final boolean plain_damage;
+    private final int damage;
     
     /**
      * Constructor. Creates a new instance of an attribute.
@@ -39,6 +48,39 @@ public class Attribute {
         this.num_targets = num_targets;
         this.is_timed = is_timed;
         this.turns = turns;
+        this.script = type.getScript();
+        EffectCompiler.Compiled compiled = EffectCompiler.compile(script, value);
+        this.effect = compiled.getEffect();
+        this.touches_self = compiled.touchesSelf();
+        this.plain_damage = compiled.isPlainDamage();
+        this.damage = compiled.getDamage();
+    }
+    
+    /**
+     * Constructor. Creates a new instance of an attribute with its own effect script.
+     * The attribute is timed if the script starts with 'after N:'.
+     * @param name the name of the attribute
+     * @param description the description of the attribute
+     * @param value the base value of the attribute, read by 'value' in the script
+     * @param num_targets the number of targets the attribute can affect
+     * @param type the type the attribute is shown and judged as
+     * @param script the effect script
+     * @throws IllegalArgumentException if the script is not valid
+     */
+    public Attribute( String name, String description, int value, int num_targets, AttributeType type, String script ){
+        EffectCompiler.Compiled compiled = EffectCompiler.compile(script, value);
+        this.name = name;
+        this.description = description;
+        this.value = value;
+        this.type = type;
+        this.num_targets = num_targets;
+        this.is_timed = compiled.getDelay() > 0;
+        this.turns = compiled.getDelay();
+        this.script = script;
+        this.effect = compiled.getEffect();
+        this.touches_self = compiled.touchesSelf();
+        this.plain_damage = compiled.isPlainDamage();
+        this.damage = compiled.getDamage();
     }
     
     /**
@@ -90,36 +132,58 @@ public class Attribute {
         return turns;
     }
     
+    /**
+     * @return the effect script of the attribute
+     */
+    public String getScript() {
+        return script;
+    }
+    
+    /**
+     * @return if the effect of the attribute can change the card it belongs to
+     */
+    public boolean touchesSelf() {
+        return touches_self;
+    }
+    
+    /**
+     * @return if the effect is a single unconditional damage on the target, which can be applied in batches
+     * @see {@link DamageBatch}
+     */
+    public boolean isPlainDamage() {
+        return plain_damage;
+    }
+    
+    /**
+     * @return the damage of a plain damage effect
+     */
+    public int getDamage() {
+        return damage;
+    }
+    
     /**
      * Activates a attribute from an activator card on a target card
      * @param activator the card which the attribute belongs to
      * @param target the target card
      */
     public void activate( Card activator, Card target ){
-        switch( type ){
-            case INFLICTING:
-                int damage_after_resiliance = target.getResiliance()-value;
-                if( damage_after_resiliance < 0 ){
-                    target.setResiliance(0);
-                }else{
-                    target.setResiliance(damage_after_resiliance);
-                    Util.print("%s has inflicted %d points of damage on %s, however, resiliance protected the target's power!", activator.getName(), value, target.getName());
-                    break; // No need to continue
-                }
-                
-                target.setPower(target.getPower()+damage_after_resiliance); // left over damage subtracts on power  
-                Util.print("%s has inflicted %d points of damage on %s", activator.getName(), value, target.getName());
-                break;
-            case BUFF:
-                target.setPower(target.getPower()+value);
-                Util.print("%s has buffed %s by %d", activator.getName(), target.getName(), value);
-                break;
-            case RESILIANCE:
-                target.setResiliance(target.getResiliance()+value);
-                Util.print("%s has inscreased %s resiliance by %d", activator.getName(), target.getName(), value);
-                break;
-            default:
-                throw new IllegalStateException("Invalid attribute type during activation!");
+        effect.apply(activator, target);
+        activated(activator, target);
+    }
+    
+    /**
+     * Ends the activation of the attribute on a target once its effect was applied: rehashes the changed cards.
+     * @param activator the card which the attribute belongs to
+     * @param target the target card
+     */
+    void activated( Card activator, Card target ){
+        Zobrist zh = Zobrist.of(target);
+        if( zh != null )
+            zh.rehash(target); // power or resiliance changed
+        if( touches_self && activator != target ){
+            Zobrist za = Zobrist.of(activator);
+            if( za != null )
+                za.rehash(activator);
         }
         
         Util.print( "Attribute '%s' from the card %s was activated targeting the card %s", name, activator.getName(), target.getName() );
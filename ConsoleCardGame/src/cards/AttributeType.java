@@ -5,21 +5,24 @@ package cards;
  * @author paulo
  */
 public enum AttributeType {
-    INFLICTING( "Inflicting", "This attribute type deals damage to the cards on the board" ),
-    BUFF( "Buff", "This attribute type Buffs the card played on the board" ),
-    RESILIANCE( "Resiliance", "This attribute type buffs the next card played on the board" );
+    INFLICTING( "Inflicting", "This attribute type deals damage to the cards on the board", "damage(value)" ),
+    BUFF( "Buff", "This attribute type Buffs the card played on the board", "buff(value)" ),
+    RESILIANCE( "Resiliance", "This attribute type buffs the next card played on the board", "shield(value)" );
     
     private final String name;
     private final String description;
+    private final String script;
     
     /**
      * Constructor for the enum.
      * @param name the name of the enum.
      * @param description the description of the enum.
+     * @param script the effect script of attributes of this type that have none of their own.
      */
-    AttributeType( String name, String description ){
+    AttributeType( String name, String description, String script ){
         this.name = name;
         this.description = description;
+        this.script = script;
     }
     
     /**
@@ -36,6 +39,14 @@ public enum AttributeType {
         return description;
     }
     
+    /**
+     * @return the default effect script of the attribute type
+     * @see {@link EffectCompiler}
+     */
+    public String getScript() {
+        return script;
+    }
+    
     /**
      * Static method to translate a string into the attribute type ENUM
      * @param str Attribute type as string
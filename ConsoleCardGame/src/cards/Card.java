@@ -15,6 +15,7 @@ public class Card {
     public static final int MAX_CARD_ATTRIBUTE = 3; 
     private String name;
     private String description;
+    private final int base_power;
     private int power;
     private int resiliance;
     private boolean in_graveyard;
@@ -25,6 +26,11 @@ public class Card {
     private Attribute active_attribute;
     private int board_id;
     
+    // state hash data
+    private long hash_key;
+    private int hash_location;
+    private int hash_slot;
+    
     /**
      * Constructor. Creates a new card instance.
      * @param name the name of the card
@@ -38,6 +44,7 @@ public class Card {
 
         this.name = name;
         this.description = description;
+        this.base_power = power;
         this.power = power;
         this.attributes = attributes;
         this.in_graveyard = false;
@@ -46,6 +53,9 @@ public class Card {
         this.owner = null;
         this.active_attribute = null;
         this.board_id = -1;
+        this.hash_key = 0;
+        this.hash_location = 0;
+        this.hash_slot = -1;
     }
     
     /**
@@ -62,6 +72,13 @@ public class Card {
         return power;
     }
     
+    /**
+     * @return the power the card was created with, before any attribute changed it
+     */
+    public int getBasePower() {
+        return base_power;
+    }
+    
     /**
      * @return the description of the card
      */
@@ -99,6 +116,18 @@ public class Card {
         return attributes.clone();
     }
 
+    /**
+     * Gets the index of one of the card's attributes.
+     * @param attribute the attribute of the card
+     * @return the index of the attribute or -1 if it does not belong to the card
+     */
+    public int getAttributeIndex( Attribute attribute ){
+        for( int i = 0; i < attributes.length; i++ )
+            if( attributes[i] == attribute )
+                return i;
+        return -1;
+    }
+
     /**
      * @return gets the card active attribute (the one it is played with)
      */
@@ -161,6 +190,66 @@ public class Card {
         this.board_id = board_id;
     }
     
+    /**
+     * @return the key the card currently contributes to the state hash
+     * @see {@link game.Zobrist}
+     */
+    public long getHashKey() {
+        return hash_key;
+    }
+    
+    /**
+     * @return the location the card is hashed at
+     * @see {@link game.Zobrist}
+     */
+    public int getHashLocation() {
+        return hash_location;
+    }
+    
+    /**
+     * @return the slot the card is hashed at
+     * @see {@link game.Zobrist}
+     */
+    public int getHashSlot() {
+        return hash_slot;
+    }
+    
+    /**
+     * Sets the state hash data of the card. Only to be used by the state hash.
+     * @param key the key the card contributes to the state hash
+     * @param location the location the card is hashed at
+     * @param slot the slot the card is hashed at
+     */
+    public void setHashState( long key, int location, int slot ) {
+        this.hash_key = key;
+        this.hash_location = location;
+        this.hash_slot = slot;
+    }
+    
+    /**
+     * Creates a new card with the same definition as this one: name, description, base power and attributes.
+     * The new card has no owner and is in the state a card is created in.
+     * @return the new card
+     */
+    public Card copy() {
+        return new Card(name, description, base_power, attributes); // attributes never change, they can be shared
+    }
+    
+    /**
+     * Resets the card to the state it was created in, so it can be used again in a new round.
+     * Its owner is kept, its state hash data is forgotten (the hash is reset with the round).
+     */
+    public void reset() {
+        power = base_power;
+        resiliance = 0;
+        in_graveyard = false;
+        active_attribute = null;
+        board_id = -1;
+        hash_key = 0;
+        hash_location = 0;
+        hash_slot = -1;
+    }
+    
     /**
      * Displays the card in console
      */
@@ -258,6 +347,7 @@ public class Card {
             System.out.println("Timed: " + Boolean.toString(at.isTimed()) );
             System.out.println("TimedTurns: " + at.getTurns());
             System.out.println("#Targets: " + at.getNumTargets());
+            System.out.println("Effect: " + at.getScript());
             System.out.println("Description: " + at.getDescription());
             i++;
         }
@@ -0,0 +1,103 @@
+package cards;
+import java.util.ArrayList;
+
+import utility.Util;
+
+/**
+ * A data structure. The catalog of every card that can be put in a deck, each with an id.
+ * Cards in the pool are prototypes, decks get copies of them so they can be played on.
+ * A deck list is an array of ids of the pool.
+ * @see {@link Deck}
+ * @see {@link Card}
+ * @author paulo
+ */
+public final class CardPool {
+    private final Card[] cards;
+    private final int[][] presets; // deck list of each faction preset
+
+    /**
+     * Constructor. Creates a pool of cards.
+     * @param cards the prototype cards, their index is their id
+     * @param presets the deck list of each faction preset, indexed by faction ordinal
+     */
+    private CardPool( Card[] cards, int[][] presets ){
+        this.cards = cards;
+        this.presets = presets;
+    }
+
+    /**
+     * Creates the pool of every card found in the faction preset decks.
+     * @return the pool
+     */
+    public static CardPool fromPresets(){
+        boolean was_muted = Util.isMuted();
+        Util.setMuted(true);
+        try {
+            ArrayList<Card> cards = new ArrayList<Card>();
+            DeckFaction[] factions = DeckFaction.values();
+            int[][] presets = new int[factions.length][];
+            for( DeckFaction faction : factions ){
+                Deck deck = Deck.loadPresetDeck(faction);
+                presets[faction.ordinal()] = new int[deck.getCardsLeft()];
+                int i = 0;
+                for( Card card : deck ){
+                    presets[faction.ordinal()][i++] = cards.size();
+                    cards.add(card.copy());
+                }
+            }
+            return new CardPool(cards.toArray(new Card[cards.size()]), presets);
+        } finally {
+            Util.setMuted(was_muted);
+        }
+    }
+
+    /**
+     * @return the number of cards in the pool
+     */
+    public int size(){
+        return cards.length;
+    }
+
+    /**
+     * @param id the id of a card
+     * @return the prototype of the card, not to be played on
+     */
+    public Card getCard( int id ){
+        return cards[id];
+    }
+
+    /**
+     * @param faction a faction
+     * @return the deck list of the faction's preset deck
+     */
+    public int[] getPreset( DeckFaction faction ){
+        return presets[faction.ordinal()].clone();
+    }
+
+    /**
+     * Creates a deck from a deck list, with new cards.
+     * @param name the name of the deck
+     * @param list the ids of the cards in the deck, in order
+     * @return the deck
+     */
+    public Deck newDeck( String name, int[] list ){
+        Deck deck = new Deck(name, list.length);
+        for( int id : list )
+            deck.addCard(cards[id].copy());
+        return deck;
+    }
+
+    /**
+     * @param list a deck list
+     * @return the names of the cards in the deck list, comma separated
+     */
+    public String describe( int[] list ){
+        StringBuilder sb = new StringBuilder();
+        for( int i = 0; i < list.length; i++ ){
+            if( i > 0 )
+                sb.append(", ");
+            sb.append(cards[list[i]].getName());
+        }
+        return sb.toString();
+    }
+}
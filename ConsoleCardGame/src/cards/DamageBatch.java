@@ -0,0 +1,160 @@
+package cards;
+import java.util.Arrays;
+
+/**
+ * A data structure. Applies a plain damage attribute to a batch of target cards at once.
+ * The power and resiliance of the targets are copied into primitive columns and the damage is worked out for
+ * all of them by one branch-free loop (resiliance absorption, leftover damage to power and the death mask),
+ * a loop the JIT turns into SIMD instructions. The results are then written back to the cards one by one, in
+ * the order of the targets, with the same messages and hashes as activating the attribute on each of them.
+ * It only gives the same results as the card by card activation when the targets are different living cards
+ * and the activator is not one of them, the board checks that before using it.
+ * The scalar kernel, a target at a time, is used instead with -Dcardgame.batch.scalar=true.
+ * Reused from play to play, a board HAS-A DamageBatch.
+ * @see {@link Attribute}
+ * @author paulo
+ */
+public final class DamageBatch {
+    public static final boolean SCALAR = Boolean.getBoolean("cardgame.batch.scalar");
+
+    private Card[] cards;
+    private int[] power;
+    private int[] resiliance;
+    private int[] left;  // resiliance left after the damage, negative for the damage that went to power
+    private int[] dead;  // death mask: 1 if the card has no power left
+    private int size;
+
+    /**
+     * Constructor. Creates an empty batch.
+     */
+    public DamageBatch(){
+        cards = new Card[8];
+        power = new int[8];
+        resiliance = new int[8];
+        left = new int[8];
+        dead = new int[8];
+        size = 0;
+    }
+
+    /**
+     * Empties the batch.
+     */
+    public void clear(){
+        for( int i = 0; i < size; i++ )
+            cards[i] = null;
+        size = 0;
+    }
+
+    /**
+     * Adds a target to the batch.
+     * @param card the target
+     */
+    public void add( Card card ){
+        if( size == cards.length ){
+            int n = size * 2;
+            cards = Arrays.copyOf(cards, n);
+            power = Arrays.copyOf(power, n);
+            resiliance = Arrays.copyOf(resiliance, n);
+            left = Arrays.copyOf(left, n);
+            dead = Arrays.copyOf(dead, n);
+        }
+        cards[size] = card;
+        power[size] = card.getPower();
+        resiliance[size] = card.getResiliance();
+        size++;
+    }
+
+    /**
+     * @return the number of targets in the batch
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Works out the damage on every target of the batch. The cards are not changed until they are committed.
+     * @param damage the damage
+     */
+    public void compute( int damage ){
+        if( SCALAR )
+            damageScalar(power, resiliance, left, dead, size, damage);
+        else
+            damage(power, resiliance, left, dead, size, damage);
+    }
+
+    /**
+     * Damage kernel. One straight loop per column written, with signs worked out by shifts instead of branches
+     * or Math.max/min, which is the shape the JIT vectorizes (several times faster than the scalar kernel on
+     * large batches, measured with and without -XX:-UseSuperWord).
+     * @param power the power of the targets, updated
+     * @param resiliance the resiliance of the targets, updated
+     * @param left set to the resiliance left after the damage, negative for the damage that went to power
+     * @param dead set to 1 for the targets with no power left, 0 for the others
+     * @param n the number of targets
+     * @param damage the damage
+     */
+    static void damage( int[] power, int[] resiliance, int[] left, int[] dead, int n, int damage ){
+        for( int i = 0; i < n; i++ )
+            left[i] = resiliance[i] - damage;
+        for( int i = 0; i < n; i++ ){
+            int l = left[i];
+            resiliance[i] = l & ~(l >> 31); // resiliance absorbs the damage, never below 0
+        }
+        for( int i = 0; i < n; i++ ){
+            int l = left[i];
+            power[i] = power[i] + (l & (l >> 31)); // what it could not absorb goes to power
+        }
+        for( int i = 0; i < n; i++ ){
+            int p = power[i];
+            dead[i] = ((p - 1) | p) >>> 31; // sign of p - 1 for p > 0, of p otherwise (no overflow at MIN_VALUE)
+        }
+    }
+
+    /**
+     * Scalar version of the damage kernel, a target at a time with branches. Gives the same results.
+     * @param power the power of the targets, updated
+     * @param resiliance the resiliance of the targets, updated
+     * @param left set to the resiliance left after the damage, negative for the damage that went to power
+     * @param dead set to 1 for the targets with no power left, 0 for the others
+     * @param n the number of targets
+     * @param damage the damage
+     * @see {@link #damage(int[], int[], int[], int[], int, int)}
+     */
+    static void damageScalar( int[] power, int[] resiliance, int[] left, int[] dead, int n, int damage ){
+        for( int i = 0; i < n; i++ ){
+            int l = resiliance[i] - damage;
+            left[i] = l;
+            if( l < 0 ){
+                resiliance[i] = 0;
+                power[i] += l;
+            }else{
+                resiliance[i] = l;
+            }
+            dead[i] = power[i] <= 0 ? 1 : 0;
+        }
+    }
+
+    /**
+     * Writes the damage worked out for a target back to its card, prints it and rehashes the card.
+     * @param i the index of the target
+     * @param attribute the attribute applied
+     * @param activator the card the attribute belongs to
+     * @return the card
+     */
+    public Card commit( int i, Attribute attribute, Card activator ){
+        Card card = cards[i];
+        card.setResiliance(resiliance[i]);
+        card.setPower(power[i]);
+        EffectCompiler.printDamage(activator, card, attribute.getDamage(), left[i]);
+        attribute.activated(activator, card);
+        return card;
+    }
+
+    /**
+     * @param i the index of a target
+     * @return if the target has no power left after the damage
+     */
+    public boolean isDead( int i ){
+        return dead[i] != 0;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
+import game.Zobrist;
 import players.Player;
 import utility.PresetDecks;
 import utility.Util;
@@ -11,19 +12,21 @@ import utility.Util;
 /**
  * A data structure. Designed to follow the Queue format - FIFO.
  * A deck contains is of size = DEFAULT_DECK_SIZE.
+ * The queue itself is an IntDeck of indices into the cards the deck was filled with,
+ * so shuffling and drawing only move ints around.
  * A Player HAS-A Deck.
  * @author paulo
  * @see {@link Player}
  * @see {@link Card}
+ * @see {@link IntDeck}
  */
 public class Deck implements Iterable<Card>{
-    private static final int DEFAULT_DECK_SIZE = 5;
+    public static final int DEFAULT_DECK_SIZE = 5;
     private final int MAX_SIZE;
-    private final Card[] array;
+    private final IntDeck queue;
+    private final Card[] cards; // every card the deck was filled with, in order
+    private int n_cards;
     private String name;
-    private int size;
-    private int front;
-    private int rear;
     private Player owner;
     
     /**
@@ -34,68 +37,128 @@ public class Deck implements Iterable<Card>{
     public Deck( String name, int MAX_SIZE ){
         this.MAX_SIZE = MAX_SIZE;
         this.name = name;
-        this.size = 0;
-        this.front = 0;
-        this.rear = 0;
-        array = new Card[MAX_SIZE];
+        queue = new IntDeck(MAX_SIZE);
+        cards = new Card[MAX_SIZE];
+        n_cards = 0;
         
         this.owner = null;
     }
     
     /**
-     * Adds a card to the data structure. FIFO style.
-     * @param card
+     * Removes and returns the top card of the deck
+     * @return top card of the deck
      */
-    private void enqueue( Card card ){
-        if( size == MAX_SIZE ){
-            throw new IllegalStateException("Queue for deck is full!");
+    public Card removeCard(){
+        int id = queue.draw();
+        if( id == IntDeck.NO_CARD ){
+            throw new IllegalStateException("Queue for deck is empty!");
         }
         
-        array[rear] = card;
-        rear = (++rear % MAX_SIZE);
-        size++;
+        Card card = cards[id];
+        Zobrist zh = Zobrist.of(card);
+        if( zh != null )
+            zh.remove(card);
+        Util.printDebug("Removed card %s from deck %s", card.getName(), name);
+        return card;
     }
     
     /**
-     * Removes and returns a card from the data structure.
-     * @return
+     * Adds a card to the deck
+     * @param card card to be added to the deck
      */
-    private Card dequeue(){
-        if( size == 0 ){
-            throw new IllegalStateException("Queue for deck is empty!");
+    public void addCard( Card card ){
+        if( queue.size() == MAX_SIZE ){
+            throw new IllegalStateException("Queue for deck is full!");
         }
         
-        Card data = array[front%MAX_SIZE];
-        array[front] = null;
-        front = (++front % MAX_SIZE);
-        size--;
-        return data;
+        int slot = queue.slotOf(queue.size());
+        queue.add(remember(card));
+        if( owner != null ){
+            card.setOwner(owner);
+            Zobrist zh = Zobrist.of(card);
+            if( zh != null )
+                zh.place(card, Zobrist.DECK, slot);
+        }
+        Util.printDebug("Added card %s to deck %s", card.getName(), name);
     }
     
     /**
-     * Removes and returns the top card of the deck
-     * @return top card of the deck
+     * Adds a card to the cards the deck is refilled with, if not there already.
+     * @param card the card
+     * @return the index of the card in the cards of the deck
      */
-    public Card removeCard(){
-        Card card = dequeue();
-        Util.printDebug("Removed card %s from deck %s", card.getName(), name);
-        return card;
+    private int remember( Card card ){
+        for( int i = 0; i < n_cards; i++ )
+            if( cards[i] == card )
+                return i;
+        if( n_cards == MAX_SIZE )
+            throw new IllegalStateException("Deck can not hold more cards than its size!");
+        cards[n_cards] = card;
+        return n_cards++;
     }
     
     /**
-     * Adds a card to the deck
-     * @param card card to be added to the deck
+     * Puts every card the deck was filled with back in it, in the order they were added and
+     * reset to how they were created. Used to play a new round with the same deck and cards
+     * instead of loading them again. Cards still in a hand, board or graveyard must be cleared from them first.
      */
-    public void addCard( Card card ){
-        enqueue(card);
-        Util.printDebug("Added card %s to deck %s", card.getName(), name);
+    public void refill(){
+        queue.clear();
+        for( int i = 0; i < n_cards; i++ ){
+            Card card = cards[i];
+            card.reset();
+            queue.add(i);
+        }
+        placeKeys();
+        Util.printDebug("Refilled deck %s with %d cards", name, n_cards);
+    }
+    
+    /**
+     * Places the state hash keys of the cards in the deck on their current slots.
+     */
+    private void placeKeys(){
+        for( int i = 0; i < queue.size(); i++ ){
+            Card card = cards[queue.get(i)];
+            Zobrist zh = Zobrist.of(card);
+            if( zh != null )
+                zh.place(card, Zobrist.DECK, queue.slotOf(i));
+        }
+    }
+    
+    /**
+     * Sets the number of cards left in the deck back to what it was earlier in the round, putting back on top
+     * the cards drawn since then. Only valid while the deck was not added to, shuffled or refilled since.
+     * @param cards_left the number of cards the deck had left
+     * @see {@link IntDeck#rewind(int)}
+     */
+    public void rewind( int cards_left ){
+        queue.rewind(cards_left);
+        placeKeys();
     }
     
     /**
      * @return the number of cards left in deck
      */
     public int getCardsLeft(){
-        return size;
+        return queue.size();
+    }
+    
+    /**
+     * @return the number of cards the deck is filled with, in it or not
+     */
+    public int getCardsFilled(){
+        return n_cards;
+    }
+    
+    /**
+     * Gets one of the cards the deck is filled with, wherever it is now (deck, hand, board or graveyard).
+     * @param index the index of the card, from 0 to getCardsFilled()-1
+     * @return the card
+     */
+    public Card getFilledCard( int index ){
+        if( index < 0 || index >= n_cards )
+            throw new IllegalArgumentException("The deck is not filled with a card at index " + index + "!");
+        return cards[index];
     }
     
     /**
@@ -106,46 +169,55 @@ public class Deck implements Iterable<Card>{
     }
     
     /**
-     * Sets the owner of the deck
+     * Sets the owner of the deck. The cards in the deck are owned by the same player.
      * @param owner the player owner of the deck
      */
     public void setOwner(Player owner) {
         this.owner = owner;
+        for( int i = 0; i < queue.size(); i++ )
+            cards[queue.get(i)].setOwner(owner);
+        placeKeys();
     }
     
     /**
      * Shuffles the deck equally randomly.
      */
     public void shuffle(){
-        Random rnd = ThreadLocalRandom.current();
-        for (int i = array.length - 1; i > 0; i--) {
-          int index = rnd.nextInt(i + 1);
-          // Simple swap
-          Card c = array[index];
-          array[index] = array[i];
-          array[i] = c;
-        }
+        shuffle(ThreadLocalRandom.current());
+    }
+    
+    /**
+     * Shuffles the cards left in the deck equally randomly using the given random generator.
+     * @param rnd the random generator, a seeded one makes the shuffle repeatable
+     */
+    public void shuffle( Random rnd ){
+        queue.shuffle(rnd);
+        placeKeys(); // cards moved, move their keys too
         Util.print("Deck %s has been shuffled!", name);
     }
     
+    /**
+     * Computes the state hash contribution of the cards in the deck from scratch.
+     * @return the XOR of the keys of the cards in the deck
+     * @see {@link Zobrist}
+     */
+    public long computeHash(){
+        long h = 0;
+        for( int i = 0; i < queue.size(); i++ )
+            h ^= Zobrist.cardKey(cards[queue.get(i)], Zobrist.DECK, queue.slotOf(i));
+        return h;
+    }
+    
     /**
      * Static method to ease the creation of a deck.
+     * The deck is filled with copies of the preset cards of the faction, built the first time they are needed.
      * @param faction faction the deck is part off
      * @return the deck that was preset loaded
      */
     public static Deck loadPresetDeck( DeckFaction faction ){
         Deck deck = new Deck( faction.getName(), DEFAULT_DECK_SIZE );
-        switch(faction){  
-            case ELVES: 
-                deck = PresetDecks.loadElvenDeck(deck);
-                break;
-            case PIRATES:
-                deck = PresetDecks.loadPirateDeck(deck);
-                break;
-            case KINGDOM:
-                deck = PresetDecks.loadKingdomDeck(deck);
-                break;
-        }
+        for( Card card : PresetDecks.getCatalog(faction) )
+            deck.addCard(card.copy());
         Util.print("Finished loading deck preset '%s'", faction.getName() );
         return deck;
     }
@@ -158,18 +230,18 @@ public class Deck implements Iterable<Card>{
         private int pointer;
         
         public DeckIterator(){
-            pointer = rear;
+            pointer = 0;
         }
         
         @Override
         public boolean hasNext() {
-            return pointer < front;
+            return pointer < queue.size();
         }
         
         @Override
         public Card next() {
             if(this.hasNext()) {
-               return array[++pointer];
+               return cards[queue.get(pointer++)];
             }
             throw new NoSuchElementException();
         }
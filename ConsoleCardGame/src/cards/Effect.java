@@ -0,0 +1,27 @@
+package cards;
+
+/**
+ * Functional interface. The effect of an attribute on one of its targets, compiled once from its script.
+ * @see {@link EffectCompiler}
+ * @author paulo
+ */
+@FunctionalInterface
+public interface Effect {
+    /**
+     * Applies the effect.
+     * @param activator the card the attribute belongs to
+     * @param target the targeted card
+     */
+    void apply( Card activator, Card target );
+
+    /**
+     * @param next the effect applied after this one
+     * @return an effect applying this one then the next
+     */
+    default Effect andThen( Effect next ){
+        return (activator, target) -> {
+            apply(activator, target);
+            next.apply(activator, target);
+        };
+    }
+}
@@ -0,0 +1,444 @@
+package cards;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
+
+import utility.Util;
+
+/**
+ * Compiler of attribute effect scripts.
+ * A script is parsed once into a chain of small lambdas, each a single primitive with its selector and amount
+ * bound in, so activating an attribute runs straight code the JIT can inline, the script is never read again.
+ * Compiled scripts are cached by their text and value, attributes sharing a script share its effect.
+ * <pre>
+ * script    := [ 'after' INT ':' ] statement ( ';' statement )*
+ * statement := [ 'if' condition ( 'and' condition )* ':' ] action
+ * action    := ( damage | buff | weaken | shield | heal ) '(' [ selector ',' ] amount ')'
+ *            | strip '(' [ selector ] ')'
+ * condition := selector '.' ( power | resiliance | base ) ( '<' | '<=' | '>' | '>=' | '==' | '!=' ) amount
+ * selector  := target | self
+ * amount    := INT | value
+ * </pre>
+ * The selector defaults to the target. 'value' is the value of the attribute. 'after N:' makes the attribute
+ * timed, deploying N turns after it is played.
+ * Examples: "damage(value)", "damage(target, value); buff(self, value)" (drain),
+ * "if target.resiliance == 0: damage(value)", "after 2: heal(self, value)".
+ * @see {@link Effect}
+ * @see {@link Attribute}
+ * @author paulo
+ */
+public final class EffectCompiler {
+    private static final ConcurrentHashMap<String, Compiled> cache = new ConcurrentHashMap<String, Compiled>();
+
+    /**
+     * A compiled script.
+     * @author paulo
+     */
+    public static final class Compiled {
+        private final Effect effect;
+        private final int delay;
+        private final boolean touches_self;
+        private final boolean plain_damage;
+        private final int damage;
+
+        private Compiled( Effect effect, int delay, boolean touches_self, boolean plain_damage, int damage ){
+            this.effect = effect;
+            this.delay = delay;
+            this.touches_self = touches_self;
+            this.plain_damage = plain_damage;
+            this.damage = damage;
+        }
+
+        /**
+         * @return the effect
+         */
+        public Effect getEffect(){
+            return effect;
+        }
+
+        /**
+         * @return the turns waited before the effect deploys, 0 if it deploys at play
+         */
+        public int getDelay(){
+            return delay;
+        }
+
+        /**
+         * @return if the effect can change the activator
+         */
+        public boolean touchesSelf(){
+            return touches_self;
+        }
+
+        /**
+         * @return if the script is a single unconditional damage on the target, which can be applied in batches
+         * @see {@link DamageBatch}
+         */
+        public boolean isPlainDamage(){
+            return plain_damage;
+        }
+
+        /**
+         * @return the damage of a plain damage script
+         */
+        public int getDamage(){
+            return damage;
+        }
+    }
+
+    /**
+     * An action on the card picked by its selector.
+     */
+    @FunctionalInterface
+    private interface Action {
+        /**
+         * @param activator the card the attribute belongs to
+         * @param card the card the action changes
+         */
+        void apply( Card activator, Card card );
+    }
+
+    private final String src;
+    private final int value;
+    private int pos;
+    private boolean touches_self;
+    private int n_statements;
+    private boolean conditional;
+    private String last_verb;  // verb, selector and amount of the last action read
+    private boolean last_self;
+    private int last_amount;
+
+    /**
+     * Constructor.
+     * @param src the script
+     * @param value the value of the attribute
+     */
+    private EffectCompiler( String src, int value ){
+        this.src = src;
+        this.value = value;
+        this.pos = 0;
+    }
+
+    /**
+     * Compiles a script, or gets it from the cache.
+     * @param src the script
+     * @param value the value of the attribute, read by 'value'
+     * @return the compiled script
+     * @throws IllegalArgumentException if the script is not valid
+     */
+    public static Compiled compile( String src, int value ){
+        return cache.computeIfAbsent(value + "|" + src, k -> new EffectCompiler(src, value).script());
+    }
+
+    /**
+     * @return the compiled script
+     */
+    private Compiled script(){
+        int delay = 0;
+        if( acceptWord("after") ){
+            delay = integer();
+            if( delay < 1 )
+                throw error("a delay of at least 1 turn");
+            expect(":");
+        }
+        Effect effect = statement();
+        while( accept(";") ){
+            if( atEnd() )
+                break; // trailing ';'
+            effect = effect.andThen(statement());
+        }
+        if( !atEnd() )
+            throw error("';' or the end of the script");
+        boolean plain_damage = n_statements == 1 && !conditional && !last_self && last_verb.equals("damage");
+        return new Compiled(effect, delay, touches_self, plain_damage, last_amount);
+    }
+
+    /**
+     * @return the effect of a statement
+     */
+    private Effect statement(){
+        n_statements++;
+        if( !acceptWord("if") )
+            return action();
+        conditional = true;
+        BiPredicate<Card, Card> cond = condition();
+        while( acceptWord("and") )
+            cond = cond.and(condition());
+        expect(":");
+        final BiPredicate<Card, Card> test = cond;
+        final Effect then = action();
+        return (activator, target) -> {
+            if( test.test(activator, target) )
+                then.apply(activator, target);
+        };
+    }
+
+    /**
+     * @return the effect of an action, bound to its selector
+     */
+    private Effect action(){
+        skipSpaces();
+        int start = pos;
+        String verb = word();
+        expect("(");
+        boolean self = false;
+        if( peekWord("self") || peekWord("target") ){
+            self = word().equals("self");
+            if( !verb.equals("strip") )
+                expect(",");
+        }
+        last_verb = verb;
+        last_self = self;
+        Action action;
+        if( verb.equals("strip") ){
+            action = (a, c) -> {
+                c.setResiliance(0);
+                Util.print("%s has stripped the resiliance of %s", a.getName(), c.getName());
+            };
+        }else{
+            final int n = amount();
+            last_amount = n;
+            switch( verb ){
+                case "damage": // resiliance takes the damage first, what is left goes to power
+                    action = (a, c) -> {
+                        int left = c.getResiliance() - n;
+                        if( left < 0 ){
+                            c.setResiliance(0);
+                            c.setPower(c.getPower() + left);
+                        }else{
+                            c.setResiliance(left);
+                        }
+                        printDamage(a, c, n, left);
+                    };
+                    break;
+                case "buff":
+                    action = (a, c) -> {
+                        c.setPower(c.getPower() + n);
+                        Util.print("%s has buffed %s by %d", a.getName(), c.getName(), n);
+                    };
+                    break;
+                case "weaken": // ignores resiliance
+                    action = (a, c) -> {
+                        c.setPower(c.getPower() - n);
+                        Util.print("%s has weakened %s by %d", a.getName(), c.getName(), n);
+                    };
+                    break;
+                case "shield":
+                    action = (a, c) -> {
+                        c.setResiliance(c.getResiliance() + n);
+                        Util.print("%s has inscreased %s resiliance by %d", a.getName(), c.getName(), n);
+                    };
+                    break;
+                case "heal": // never above base power
+                    action = (a, c) -> {
+                        if( c.getPower() < c.getBasePower() ){
+                            c.setPower(Math.min(c.getBasePower(), c.getPower() + n));
+                            Util.print("%s has healed %s by %d", a.getName(), c.getName(), n);
+                        }
+                    };
+                    break;
+                default:
+                    pos = start;
+                    throw error("an action (damage, buff, weaken, shield, heal, strip)");
+            }
+        }
+        expect(")");
+
+        final Action act = action;
+        if( self ){
+            touches_self = true;
+            return (activator, target) -> act.apply(activator, activator);
+        }
+        return act::apply;
+    }
+
+    /**
+     * Prints the message of a damage.
+     * @param activator the card the attribute belongs to
+     * @param card the damaged card
+     * @param n the damage
+     * @param left the resiliance left after the damage, negative for the damage that went to power
+     */
+    static void printDamage( Card activator, Card card, int n, int left ){
+        if( left < 0 )
+            Util.print("%s has inflicted %d points of damage on %s", activator.getName(), n, card.getName());
+        else
+            Util.print("%s has inflicted %d points of damage on %s, however, resiliance protected the target's power!", activator.getName(), n, card.getName());
+    }
+
+    /**
+     * @return the test of a condition
+     */
+    private BiPredicate<Card, Card> condition(){
+        skipSpaces();
+        int start = pos;
+        String sel = word();
+        if( !sel.equals("self") && !sel.equals("target") ){
+            pos = start;
+            throw error("'self' or 'target'");
+        }
+        expect(".");
+        skipSpaces();
+        start = pos;
+        String name = word();
+        ToIntFunction<Card> stat;
+        switch( name ){
+            case "power":
+                stat = Card::getPower;
+                break;
+            case "resiliance":
+                stat = Card::getResiliance;
+                break;
+            case "base":
+                stat = Card::getBasePower;
+                break;
+            default:
+                pos = start;
+                throw error("a stat (power, resiliance, base)");
+        }
+        String op = operator();
+        final int n = amount();
+        final boolean self = sel.equals("self");
+        final ToIntFunction<Card> s = stat;
+        BiPredicate<Card, Card> test;
+        switch( op ){
+            case "<":
+                test = self ? (a, t) -> s.applyAsInt(a) < n : (a, t) -> s.applyAsInt(t) < n;
+                break;
+            case "<=":
+                test = self ? (a, t) -> s.applyAsInt(a) <= n : (a, t) -> s.applyAsInt(t) <= n;
+                break;
+            case ">":
+                test = self ? (a, t) -> s.applyAsInt(a) > n : (a, t) -> s.applyAsInt(t) > n;
+                break;
+            case ">=":
+                test = self ? (a, t) -> s.applyAsInt(a) >= n : (a, t) -> s.applyAsInt(t) >= n;
+                break;
+            case "==":
+                test = self ? (a, t) -> s.applyAsInt(a) == n : (a, t) -> s.applyAsInt(t) == n;
+                break;
+            default: // "!="
+                test = self ? (a, t) -> s.applyAsInt(a) != n : (a, t) -> s.applyAsInt(t) != n;
+        }
+        return test;
+    }
+
+    /**
+     * @return an amount: an integer or the value of the attribute
+     */
+    private int amount(){
+        if( acceptWord("value") )
+            return value;
+        return integer();
+    }
+
+    /**
+     * Moves past spaces.
+     */
+    private void skipSpaces(){
+        while( pos < src.length() && Character.isWhitespace(src.charAt(pos)) )
+            pos++;
+    }
+
+    /**
+     * @return if the whole script was read
+     */
+    private boolean atEnd(){
+        skipSpaces();
+        return pos >= src.length();
+    }
+
+    /**
+     * Reads a symbol if it is next.
+     * @param symbol the symbol
+     * @return if it was read
+     */
+    private boolean accept( String symbol ){
+        skipSpaces();
+        if( src.startsWith(symbol, pos) ){
+            pos += symbol.length();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads a symbol that must be next.
+     * @param symbol the symbol
+     */
+    private void expect( String symbol ){
+        if( !accept(symbol) )
+            throw error("'" + symbol + "'");
+    }
+
+    /**
+     * @param w a word
+     * @return if the word is next, without reading it
+     */
+    private boolean peekWord( String w ){
+        skipSpaces();
+        int end = pos + w.length();
+        return src.startsWith(w, pos) && (end >= src.length() || !Character.isLetter(src.charAt(end)));
+    }
+
+    /**
+     * Reads a word if it is next.
+     * @param w the word
+     * @return if it was read
+     */
+    private boolean acceptWord( String w ){
+        if( !peekWord(w) )
+            return false;
+        pos += w.length();
+        return true;
+    }
+
+    /**
+     * @return the next word
+     */
+    private String word(){
+        skipSpaces();
+        int start = pos;
+        while( pos < src.length() && Character.isLetter(src.charAt(pos)) )
+            pos++;
+        if( start == pos )
+            throw error("a word");
+        return src.substring(start, pos);
+    }
+
+    /**
+     * @return the next integer
+     */
+    private int integer(){
+        skipSpaces();
+        int start = pos;
+        if( pos < src.length() && src.charAt(pos) == '-' )
+            pos++;
+        while( pos < src.length() && Character.isDigit(src.charAt(pos)) )
+            pos++;
+        try {
+            return Integer.parseInt(src.substring(start, pos));
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("an integer or 'value'");
+        }
+    }
+
+    /**
+     * @return the next comparison operator
+     */
+    private String operator(){
+        for( String op : new String[]{ "<=", ">=", "==", "!=", "<", ">" } )
+            if( accept(op) )
+                return op;
+        throw error("a comparison (<, <=, >, >=, ==, !=)");
+    }
+
+    /**
+     * @param expected what was expected
+     * @return the error for the current position
+     */
+    private IllegalArgumentException error( String expected ){
+        return new IllegalArgumentException("Invalid effect script '" + src + "': expected " + expected + " at " + pos);
+    }
+}
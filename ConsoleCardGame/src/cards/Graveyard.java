@@ -1,24 +1,39 @@
 package cards;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 
+import game.Zobrist;
 import utility.Util;
 
 /**
- * A data structure. Simply a array list that can grow.
+ * A data structure. Simply a array list that can grow, indexed.
  * Holds the cards that have been removed from the board.
  * It is specific to a player instance.
+ * The slot of every card is kept in an identity map, so finding a card is O(1) and a card is removed by
+ * moving the last card into its slot (the graveyard has no order). On top of that the graveyard keeps, updated
+ * on every add and remove, the number of cards played with each attribute type and a max heap of the slots by
+ * base power, so the strongest card (to bring back) and the max base power are read in O(1).
  * A player HAS-A board.
  * @author paulo
  * @see {@link Deck}
  */
 public class Graveyard {
     private ArrayList<Card> yard;
+    private final IdentityHashMap<Card, Integer> slots; // slot of each card
+    private int[] heap;        // slots, the one of the card with the highest base power first
+    private int[] heap_pos;    // position of each slot in the heap
+    private final int[] type_count; // cards by the type of the attribute they were played with
     
     /**
      * Constructor. Creates a graveyard instance.
      */
     public Graveyard(){
         yard = new ArrayList<Card>();
+        slots = new IdentityHashMap<Card, Integer>();
+        heap = new int[16];
+        heap_pos = new int[16];
+        type_count = new int[AttributeType.values().length];
     }
     
     /**
@@ -26,29 +41,185 @@ public class Graveyard {
      * @param card Card to be added to the graveyard.
      */
     public void addCard( Card card ){
+        int slot = yard.size();
         yard.add(card);
+        slots.put(card, slot);
+        if( slot == heap.length ){
+            heap = Arrays.copyOf(heap, slot * 2);
+            heap_pos = Arrays.copyOf(heap_pos, slot * 2);
+        }
+        heap[slot] = slot;
+        heap_pos[slot] = slot;
+        siftUp(slot);
+        if( card.getActiveAttribute() != null )
+            type_count[card.getActiveAttribute().getType().ordinal()]++;
+        
         card.setInGraveyard(true);
+        Zobrist zh = Zobrist.of(card);
+        if( zh != null )
+            zh.place(card, Zobrist.GRAVEYARD, slot);
         Util.print("%s was sent to the graveyard", card.getName());
     }
     
     /**
-     * Removes a card out of the graveyard
+     * @param index the index of a card
+     * @return the card at the index
+     */
+    public Card getCard( int index ){
+        return yard.get(index);
+    }
+    
+    /**
+     * Removes a card out of the graveyard. The last card of the graveyard takes its index.
      * @param index Index of the Card to be removed.
      * @return the Card that was removed
      */
     public Card removeCard( int index ){
-        Card card = yard.remove(index);
+        Card card = yard.get(index);
+        int last = yard.size() - 1;
+        
+        // take the slot out of the heap: the last heap entry fills its place
+        int hp = heap_pos[index];
+        int moved = heap[last];
+        heap[hp] = moved;
+        heap_pos[moved] = hp;
+        if( hp < last ){
+            siftUp(hp);
+            siftDown(heap_pos[moved], last);
+        }
+        
+        // the last card takes the slot, its heap entry is renamed (same card, same key: the heap stays valid)
+        Card last_card = yard.remove(last);
+        if( index != last ){
+            yard.set(index, last_card);
+            slots.put(last_card, index);
+            int lp = heap_pos[last];
+            heap[lp] = index;
+            heap_pos[index] = lp;
+        }
+        slots.remove(card);
+        if( card.getActiveAttribute() != null )
+            type_count[card.getActiveAttribute().getType().ordinal()]--;
+        
         card.setInGraveyard(false);
+        Zobrist zh = Zobrist.of(card);
+        if( zh != null ){
+            zh.remove(card);
+            if( index != last )
+                zh.place(last_card, Zobrist.GRAVEYARD, index);
+        }
         return card;
     }
     
+    /**
+     * Removes a card out of the graveyard, found in O(1) (e.g. to exile it).
+     * @param card the card to be removed
+     * @return if the card was in the graveyard
+     */
+    public boolean removeCard( Card card ){
+        Integer slot = slots.get(card);
+        if( slot == null )
+            return false;
+        removeCard(slot);
+        return true;
+    }
+    
+    /**
+     * @return the card with the highest base power, null if the graveyard is empty
+     */
+    public Card getStrongestCard(){
+        return yard.isEmpty() ? null : yard.get(heap[0]);
+    }
+    
+    /**
+     * Removes the card with the highest base power out of the graveyard (e.g. to bring it back).
+     * @return the card, null if the graveyard is empty
+     */
+    public Card removeStrongestCard(){
+        return yard.isEmpty() ? null : removeCard(heap[0]);
+    }
+    
+    /**
+     * @return the highest base power of the cards in the graveyard, 0 if it is empty
+     */
+    public int getMaxBasePower(){
+        return yard.isEmpty() ? 0 : yard.get(heap[0]).getBasePower();
+    }
+    
+    /**
+     * @param type an attribute type
+     * @return the number of cards in the graveyard that were played with an attribute of that type
+     */
+    public int countByType( AttributeType type ){
+        return type_count[type.ordinal()];
+    }
+    
+    /**
+     * Moves the heap entry at a position up while its card is stronger than its parent's.
+     * @param i the position
+     */
+    private void siftUp( int i ){
+        int slot = heap[i];
+        int power = yard.get(slot).getBasePower();
+        while( i > 0 ){
+            int parent = (i - 1) >>> 1;
+            if( yard.get(heap[parent]).getBasePower() >= power )
+                break;
+            heap[i] = heap[parent];
+            heap_pos[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = slot;
+        heap_pos[slot] = i;
+    }
+    
+    /**
+     * Moves the heap entry at a position down while a child's card is stronger.
+     * @param i the position
+     * @param n the number of entries in the heap
+     */
+    private void siftDown( int i, int n ){
+        int slot = heap[i];
+        int power = yard.get(slot).getBasePower();
+        while( true ){
+            int child = 2 * i + 1;
+            if( child >= n )
+                break;
+            if( child + 1 < n && yard.get(heap[child + 1]).getBasePower() > yard.get(heap[child]).getBasePower() )
+                child++;
+            if( yard.get(heap[child]).getBasePower() <= power )
+                break;
+            heap[i] = heap[child];
+            heap_pos[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = slot;
+        heap_pos[slot] = i;
+    }
+    
+    /**
+     * Removes every card from the graveyard, keeping the graveyard (and its capacity) to be used again.
+     */
+    public void clear(){
+        for( int i = 0; i < yard.size(); i++ ){
+            Card card = yard.get(i);
+            card.setInGraveyard(false);
+            Zobrist zh = Zobrist.of(card);
+            if( zh != null )
+                zh.remove(card);
+        }
+        yard.clear();
+        slots.clear();
+        Arrays.fill(type_count, 0);
+    }
+    
     /**
      * Does the graveyard contain the card?
      * @param card The Card to be checked.
      * @return boolean - Does the graveyard contain the card?
      */
     public boolean containsCard( Card card ){
-        return yard.contains(card);
+        return slots.containsKey(card);
     }
     
     /**
@@ -58,6 +229,18 @@ public class Graveyard {
         return yard.size();
     }
     
+    /**
+     * Computes the state hash contribution of the cards in the graveyard from scratch.
+     * @return the XOR of the keys of the cards in the graveyard
+     * @see {@link Zobrist}
+     */
+    public long computeHash(){
+        long h = 0;
+        for( int i = 0; i < yard.size(); i++ )
+            h ^= Zobrist.cardKey(yard.get(i), Zobrist.GRAVEYARD, i);
+        return h;
+    }
+    
     /**
      * Prints the graveyard structure to a game format.
      */
@@ -1,10 +1,13 @@
 package cards;
 
+import game.Zobrist;
 import utility.Util;
 
 /**
  * A data structure to control the hand of the user.
- * Designed to be a static array of size = MAX_CARDS_IN_HAND
+ * Designed to be a static array of a fixed size (DEFAULT_HAND_SIZE unless set, up to MAX_HAND_SIZE).
+ * The slots holding a card are the set bits of a long, so the first free and the first taken slot are
+ * found with a single Long.numberOfTrailingZeros.
  * A Player HAS-A hand.
  * A Hand contains Cards that the user can play to the Board.
  * @author paulo
@@ -14,17 +17,39 @@ import utility.Util;
  */
 public class Hand {
     // Data structure variables
-    public static final int MAX_CARDS_IN_HAND = 2; // this should remain as 2 - some logic depends on it :b (slightly lazy)
+    public static final int DEFAULT_HAND_SIZE = 2;
+    public static final int MAX_HAND_SIZE = Long.SIZE; // one bit of the occupancy mask per slot
     private final Card array[];
-    private int cards_in_hand;
+    private final long full; // the bits of every slot
+    private long occupied;   // the bits of the slots holding a card
     
     /**
      * Constructor.
-     * Creates a new hand instance with size MAX_CARDS_IN_HAND
+     * Creates a new hand instance with size DEFAULT_HAND_SIZE
      */
     public Hand(){
-        array = new Card[MAX_CARDS_IN_HAND];
-        cards_in_hand = 0;
+        this(DEFAULT_HAND_SIZE);
+    }
+    
+    /**
+     * Constructor.
+     * Creates a new hand instance with a given size
+     * @param size the number of cards the hand can hold, from 1 to MAX_HAND_SIZE
+     */
+    public Hand( int size ){
+        if ( size < 1 || size > MAX_HAND_SIZE ) {
+            throw new IllegalArgumentException("A hand holds from 1 to " + MAX_HAND_SIZE + " cards!");
+        }
+        array = new Card[size];
+        full = (size == MAX_HAND_SIZE) ? -1L : (1L << size) - 1;
+        occupied = 0;
+    }
+    
+    /**
+     * @return the number of cards the hand can hold
+     */
+    public int getSize(){
+        return array.length;
     }
     
     /**
@@ -32,19 +57,17 @@ public class Hand {
      * @param card
      */
     public void addCardToHand( Card card ){
-        if ( cards_in_hand == MAX_CARDS_IN_HAND ) {
+        if ( occupied == full ) {
             throw new IllegalStateException("Hand is full!");
         }
         
-        for( int i = 0; i < array.length; i++ ){
-            if( array[i] == null ){ // find first free space and break
-                array[i] = card;
-                Util.printDebug("Added card %s to a hand at pos %d!", array[i].getName(), i);
-                break;
-            }
-        }
-       
-        cards_in_hand++;
+        int i = Long.numberOfTrailingZeros(~occupied); // first free space
+        array[i] = card;
+        occupied |= 1L << i;
+        Zobrist zh = Zobrist.of(card);
+        if( zh != null )
+            zh.place(card, Zobrist.HAND, i);
+        Util.printDebug("Added card %s to a hand at pos %d!", array[i].getName(), i);
     }
     
     /**
@@ -53,7 +76,7 @@ public class Hand {
      * @return returns the removed card.
      */
     public Card removeCardFromHand( int index ){
-        if ( cards_in_hand == 0 ) {
+        if ( occupied == 0 ) {
             throw new IllegalStateException("Hand is empty");
         } 
         
@@ -63,25 +86,62 @@ public class Hand {
         
         Card cardremoved = array[index];
         array[index] = null;
-        cards_in_hand--;
+        occupied &= ~(1L << index);
+        Zobrist zh = Zobrist.of(cardremoved);
+        if( zh != null )
+            zh.remove(cardremoved);
         
         return cardremoved;
     }
     
+    /**
+     * Removes every card from the hand, keeping the hand to be used again.
+     */
+    public void clear(){
+        for( long m = occupied; m != 0; m &= m - 1 ){
+            int i = Long.numberOfTrailingZeros(m);
+            Zobrist zh = Zobrist.of(array[i]);
+            if( zh != null )
+                zh.remove(array[i]);
+            array[i] = null;
+        }
+        occupied = 0;
+    }
+    
+    /**
+     * Empties the hand and puts cards on given slots. Used to put a hand back to an earlier state.
+     * @param slots the card of every slot, null for the free slots
+     */
+    public void restore( Card[] slots ){
+        if ( slots.length != array.length ) {
+            throw new IllegalArgumentException("A hand of " + array.length + " cards can not take " + slots.length + " slots!");
+        }
+        clear();
+        for( int i = 0; i < slots.length; i++ ){
+            if( slots[i] == null )
+                continue;
+            array[i] = slots[i];
+            occupied |= 1L << i;
+            Zobrist zh = Zobrist.of(slots[i]);
+            if( zh != null )
+                zh.place(slots[i], Zobrist.HAND, i);
+        }
+    }
+    
     /**
      * Checks if the index holds a card.
      * @param index index of the card to check
      * @return true or false
      */
     public boolean hasCardOnIndex( int index ){
-        return array[index] != null;
+        return index >= 0 && index < array.length && (occupied & (1L << index)) != 0;
     }
     
     /**
      * @return the number of cards in the hand datastructure.
      */
     public int getCardsInHand(){
-        return cards_in_hand;
+        return Long.bitCount(occupied);
     }
     
     /**
@@ -98,14 +158,46 @@ public class Hand {
     }
     
     /**
-     * @return the first card found in hand
+     * @return the index of the first card found in hand
      */
     public int getFirstCardIndexFromHand() {
-        return ( array[0] == null ) ? 1 : 0;
+        if ( occupied == 0 ) {
+            throw new IllegalStateException("Hand is empty");
+        }
+        return Long.numberOfTrailingZeros(occupied);
+    }
+    
+    /**
+     * Gets the index of a card by its position among the cards in hand, the order they are printed in.
+     * @param position the position of the card, from 0 to getCardsInHand()-1
+     * @return the index of the card
+     */
+    public int getCardIndex( int position ){
+        if ( position < 0 || position >= getCardsInHand() ) {
+            throw new IllegalStateException("There is no card on the hand at this position!");
+        }
+        long m = occupied;
+        for( int i = 0; i < position; i++ )
+            m &= m - 1; // drop the first card
+        return Long.numberOfTrailingZeros(m);
+    }
+    
+    /**
+     * Computes the state hash contribution of the cards in the hand from scratch.
+     * @return the XOR of the keys of the cards in the hand
+     * @see {@link Zobrist}
+     */
+    public long computeHash(){
+        long h = 0;
+        for( long m = occupied; m != 0; m &= m - 1 ){
+            int i = Long.numberOfTrailingZeros(m);
+            h ^= Zobrist.cardKey(array[i], Zobrist.HAND, i);
+        }
+        return h;
     }
     
     /**
-     * Prints the cards in a game format in this data structure.
+     * Prints the cards in a game format in this data structure, by their position in hand.
      */
     public void printCards() {
         int i = 0;
@@ -0,0 +1,134 @@
+package cards;
+import java.util.Random;
+
+/**
+ * A data structure. A deck of card ids held in a primitive ring buffer - FIFO.
+ * What an id means is up to the owner of the deck (Deck uses the index of its cards).
+ * The capacity is a power of 2 so positions wrap with a mask instead of a division,
+ * and drawing from an empty deck returns NO_CARD instead of throwing.
+ * @see {@link Deck}
+ * @author paulo
+ */
+public final class IntDeck {
+    public static final int NO_CARD = -1;
+    private final int[] ring;
+    private final int mask;
+    private int front;
+    private int size;
+
+    /**
+     * Constructor. Creates an empty deck.
+     * @param capacity the least number of ids the deck can hold
+     */
+    public IntDeck( int capacity ){
+        int cap = Integer.highestOneBit(Math.max(capacity, 1));
+        if( cap < capacity )
+            cap <<= 1;
+        ring = new int[cap];
+        mask = cap - 1;
+        front = 0;
+        size = 0;
+    }
+
+    /**
+     * Adds an id to the bottom of the deck.
+     * @param id the id
+     * @return false if the deck is full and the id was not added
+     */
+    public boolean add( int id ){
+        if( size == ring.length )
+            return false;
+        ring[(front + size) & mask] = id;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes and returns the id on top of the deck.
+     * @return the id or NO_CARD if the deck is empty
+     */
+    public int draw(){
+        if( size == 0 )
+            return NO_CARD;
+        int id = ring[front];
+        front = (front + 1) & mask;
+        size--;
+        return id;
+    }
+
+    /**
+     * @return the id on top of the deck or NO_CARD if the deck is empty
+     */
+    public int peek(){
+        return size == 0 ? NO_CARD : ring[front];
+    }
+
+    /**
+     * Gets an id by its position from the top, without removing it.
+     * @param i the position, from 0 (top) to size()-1 (bottom)
+     * @return the id or NO_CARD if there is no id at the position
+     */
+    public int get( int i ){
+        return i < 0 || i >= size ? NO_CARD : ring[(front + i) & mask];
+    }
+
+    /**
+     * Gets the slot of the ring buffer that holds a position. A slot does not change while
+     * the id stays in the deck and is not shuffled, positions move every draw.
+     * @param i the position, from 0 (top) to size()-1 (bottom)
+     * @return the slot
+     */
+    public int slotOf( int i ){
+        return (front + i) & mask;
+    }
+
+    /**
+     * Shuffles the ids in the deck equally randomly (Fisher-Yates). Only the ids in the deck are
+     * moved, the free part of the ring is left alone.
+     * @param rnd the random generator, a seeded one makes the shuffle repeatable
+     */
+    public void shuffle( Random rnd ){
+        for( int i = size - 1; i > 0; i-- ){
+            int a = (front + i) & mask;
+            int b = (front + rnd.nextInt(i + 1)) & mask;
+            int id = ring[a];
+            ring[a] = ring[b];
+            ring[b] = id;
+        }
+    }
+
+    /**
+     * Sets the number of ids in the deck back to what it was, putting back on top the ids drawn since then
+     * in the order they were drawn (or drawing again, if it had fewer). Drawing only moves the front of the
+     * ring, so the ids are still there as long as nothing was added or shuffled in between.
+     * @param n the number of ids the deck had
+     */
+    public void rewind( int n ){
+        if( n < 0 || n > ring.length )
+            throw new IllegalArgumentException("A deck of capacity " + ring.length + " can not hold " + n + " ids!");
+        front = (front + size - n) & mask;
+        size = n;
+    }
+
+    /**
+     * Removes every id, the deck can be filled again.
+     */
+    public void clear(){
+        front = 0;
+        size = 0;
+    }
+
+    /**
+     * @return the number of ids in the deck
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return the max number of ids the deck can hold
+     */
+    public int capacity(){
+        return ring.length;
+    }
+}
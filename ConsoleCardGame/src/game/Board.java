@@ -1,10 +1,13 @@
 package game;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 
 import cards.Attribute;
 import cards.Card;
+import cards.DamageBatch;
 import players.Player;
 import utility.Util;
 
@@ -17,16 +20,26 @@ import utility.Util;
  * @author paulo
  */
 public class Board {
+    private static final int BATCH_MIN = Integer.getInteger("cardgame.batch.min", 4); // fewest targets applied as a batch
+    
     private final HashMap<Player, ArrayList<Card>> boardmap;
     private final Game game;
     private final Player[] players;
     private final ArrayList<TimedAttribute> timed_attributes;
+    private final BoardDelta delta;
+    private final PowerIndex power;  // total power on board of each seat, strongest first
+    private Card[] target_buffer; // targets of attributes activated right away, reused every play
+    private final DamageBatch batch;
+    private boolean[] batch_seen; // board slots already in the batch
+    private int cards_destroyed;  // this round
+    private int timed_triggered;  // this round
     
     /**
      * A static class to hold data about timed attributes within the board class.
+     * Never changed once queued, so the versions of the game history share them.
      * @author paulo
      */
-    private static class TimedAttribute{
+    static class TimedAttribute{
         public final Attribute attribute;
         public final int turn;
         public final Card card;
@@ -45,6 +58,22 @@ public class Board {
         }
     }
     
+    /**
+     * Callback used to look at the timed attributes waiting on the board.
+     * @author paulo
+     */
+    public interface TimedAttributeVisitor {
+        /**
+         * Called for each timed attribute on the board.
+         * @param turn the turn the attribute deploys on
+         * @param card the card the attribute belongs to
+         * @param attribute the attribute
+         * @param target the targeted player
+         * @param targets the targeted cards
+         */
+        void visit( int turn, Card card, Attribute attribute, Player target, Card[] targets );
+    }
+    
     /**
      * Constructor. Constructs a board for the players in the game.
      * @param game an instance of a active game
@@ -53,6 +82,11 @@ public class Board {
     public Board(Game game, Player[] players){
         boardmap = new HashMap<Player, ArrayList<Card>>();
         timed_attributes = new ArrayList<TimedAttribute>();
+        delta = new BoardDelta();
+        power = new PowerIndex(players.length);
+        target_buffer = new Card[0];
+        batch = new DamageBatch();
+        batch_seen = new boolean[0];
         this.game = game;
         this.players = players;
         for( Player ply : players ){
@@ -60,6 +94,20 @@ public class Board {
         }
     }
     
+    /**
+     * Empties the board for a new round, keeping it to be used again.
+     * The cards on it are left as they are, they are reset when their deck is refilled.
+     */
+    public void reset(){
+        for( Player ply : players )
+            boardmap.get(ply).clear();
+        timed_attributes.clear();
+        delta.clear();
+        power.reset();
+        cards_destroyed = 0;
+        timed_triggered = 0;
+    }
+    
     /**
      * Adds a card to the board
      * @param ply the player that owns the card
@@ -69,6 +117,9 @@ public class Board {
         ArrayList<Card> ply_board =  boardmap.get(ply);
         boardmap.get(ply).add(card);
         card.setBoardId(ply_board.size()-1);
+        game.getStateHash().place(card, Zobrist.BOARD, ply_board.size()-1);
+        delta.cardAdded(ply, ply_board.size()-1, card);
+        refreshPower(ply);
         Util.print("Card %s was added to %s's board!", card.getName(), ply.getName());
     }
     
@@ -78,8 +129,20 @@ public class Board {
      * @param card the card to be removed
      */
     private void removeCard( Player ply, Card card ){
-        boardmap.get(ply).remove(card);
+        ArrayList<Card> ply_board = boardmap.get(ply);
+        int slot = ply_board.indexOf(card);
+        if( slot >= 0 ){
+            ply_board.remove(slot);
+            for( int i = slot; i < ply_board.size(); i++ ){ // cards after it moved down a slot
+                Card moved = ply_board.get(i);
+                moved.setBoardId(i);
+                game.getStateHash().place(moved, Zobrist.BOARD, i);
+            }
+            delta.cardDestroyed(ply, slot, card);
+        }
         ply.getGraveyard().addCard(card);
+        cards_destroyed++;
+        game.getEvents().cardDestroyed(ply, card, slot);
     }
     
     /**
@@ -88,7 +151,7 @@ public class Board {
      * @param index the card index
      * @return a card selected by index
      */
-    private Card getCard( Player ply, int index ){
+    public Card getCard( Player ply, int index ){
         return boardmap.get(ply).get(index);
     }
     
@@ -99,14 +162,32 @@ public class Board {
      * @param attribute
      * @param target
      * @param targets
+     * @param n_targets the number of targets in the array
      */
-    private void activateAttribute( Player ply, Card card, Attribute attribute, Player target, Card[] targets ){
+    private void activateAttribute( Player ply, Card card, Attribute attribute, Player target, Card[] targets, int n_targets ){
+        if( activateBatch(ply, card, attribute, target, targets, n_targets) ){
+            refreshPower(ply);
+            if( target != ply )
+                refreshPower(target);
+            return;
+        }
+        
         // perform attribute logic, every effect tick.
-        for( Card tcard : targets ){ 
+        for( int i = 0; i < n_targets; i++ ){ 
+            Card tcard = targets[i];
             if( tcard.inGraveyard() )
                 continue;
 
             attribute.activate(card, tcard);
+            game.getEvents().attributeActivated(ply, card, attribute, target, tcard);
+            int slot = boardmap.get(target).indexOf(tcard);
+            if( slot >= 0 )
+                delta.statsChanged(target, slot, tcard);
+            if( attribute.touchesSelf() && card != tcard ){
+                int own = boardmap.get(ply).indexOf(card);
+                if( own >= 0 )
+                    delta.statsChanged(ply, own, card);
+            }
                 
             if( tcard.getPower() <= 0 ){
                 removeCard(target, tcard); // Avoids index out of bounds if a cards dies and gets targeted again.
@@ -114,11 +195,83 @@ public class Board {
             }
             
             if( card.getPower() <= 0 ){
-                removeCard(ply, tcard);
+                if( !card.inGraveyard() )
+                    removeCard(ply, card);
                 Util.print("%s's card has been destroyed - %s ", ply.getName(), card.getName());
                 break; // if the activator of the attribute dies. Attribute stops.
             }
         }
+        refreshPower(ply);
+        if( target != ply )
+            refreshPower(target);
+    }
+    
+    /**
+     * Applies a plain damage attribute to all its targets as one batch, when that gives the same result as applying
+     * it card by card: the activator is alive and not targeted, and the living targets are different cards of the board.
+     * @param ply the player
+     * @param card the activator
+     * @param attribute the attribute
+     * @param target the targeted player
+     * @param targets the targeted cards
+     * @param n_targets the number of targets in the array
+     * @return if the batch was applied, false if the attribute must be applied card by card
+     * @see {@link DamageBatch}
+     */
+    private boolean activateBatch( Player ply, Card card, Attribute attribute, Player target, Card[] targets, int n_targets ){
+        if( !attribute.isPlainDamage() || n_targets < BATCH_MIN || card.getPower() <= 0 )
+            return false;
+        
+        ArrayList<Card> tboard = boardmap.get(target);
+        if( batch_seen.length < tboard.size() )
+            batch_seen = new boolean[tboard.size()];
+        boolean ok = true;
+        for( int i = 0; i < n_targets && ok; i++ ){
+            Card tcard = targets[i];
+            if( tcard.inGraveyard() )
+                continue;
+            int slot = tcard.getBoardId();
+            ok = tcard != card && slot >= 0 && slot < tboard.size() && tboard.get(slot) == tcard && !batch_seen[slot];
+            if( ok ){
+                batch_seen[slot] = true;
+                batch.add(tcard);
+            }
+        }
+        for( int i = 0; i < n_targets; i++ ){
+            int slot = targets[i].getBoardId();
+            if( slot >= 0 && slot < batch_seen.length )
+                batch_seen[slot] = false;
+        }
+        if( !ok ){
+            batch.clear();
+            return false;
+        }
+        
+        batch.compute(attribute.getDamage());
+        for( int i = 0; i < batch.size(); i++ ){
+            Card tcard = batch.commit(i, attribute, card);
+            game.getEvents().attributeActivated(ply, card, attribute, target, tcard);
+            delta.statsChanged(target, tcard.getBoardId(), tcard);
+            if( batch.isDead(i) ){
+                removeCard(target, tcard);
+                Util.print("%s's card has been destroyed - %s", target.getName(), tcard.getName());
+            }
+        }
+        batch.clear();
+        return true;
+    }
+    
+    /**
+     * Sums again the power on board of a player and moves it to its place in the power index.
+     * Only the players a play touched are summed, never the whole table.
+     * @param ply the player
+     */
+    private void refreshPower( Player ply ){
+        int t = 0;
+        for( Card c : boardmap.get(ply) ){
+            t = t + c.getPower();
+        }
+        power.update(ply.getId(), t);
     }
     
     /**
@@ -136,11 +289,13 @@ public class Board {
         while (iter.hasNext()) {
             TimedAttribute ta = iter.next();
             if( game.getTurn() == ta.turn ){
-                System.out.printf("Timed attriubte effect triggered! %s's %s", ta.card.getName(), ta.attribute.getName());
-                activateAttribute(ta.ply, ta.card, ta.attribute, ta.target, ta.targets);
+                Util.print("Timed attriubte effect triggered! %s's %s", ta.card.getName(), ta.attribute.getName());
+                activateAttribute(ta.ply, ta.card, ta.attribute, ta.target, ta.targets, ta.targets.length);
                 iter.remove();
+                game.getStateHash().toggleTimed(ta.card, ta.attribute, ta.turn, ta.target);
+                timed_triggered++;
             }else{
-                System.out.printf("Timed attriubte! %s's '%s' attribute! (turns left: %d )(activates at the end of turn)\n", ta.card.getName(), ta.attribute.getName(),  ta.turn - (game.getTurn()+1));
+                Util.print("Timed attriubte! %s's '%s' attribute! (turns left: %d )(activates at the end of turn)", ta.card.getName(), ta.attribute.getName(),  ta.turn - (game.getTurn()+1));
             }
         }
     }
@@ -161,6 +316,7 @@ public class Board {
         // add card to board
         pdata.card_played.setActiveAttribute(pdata.at_played);
         addCard(pdata.player, pdata.card_played);
+        game.getEvents().cardPlayed(pdata.player, pdata.card_played, pdata.at_played, pdata.targeted_ply, pdata.card_played.getBoardId());
         
         // skip if no targets ( Case when we place the only card on the board! )
         if( pdata.targetids.length == 0 ){
@@ -168,31 +324,129 @@ public class Board {
             return;
         }
         
-        // target id translation into reference
-        Card[] targets = new Card[pdata.targetids.length];
-        for( int i = 0; i < pdata.targetids.length; i++ ){
+        // target id translation into reference. Timed attributes keep their targets, the others use the buffer
+        int n_targets = pdata.targetids.length;
+        if( !pdata.at_played.isTimed() && target_buffer.length < n_targets )
+            target_buffer = new Card[n_targets];
+        Card[] targets = pdata.at_played.isTimed() ? new Card[n_targets] : target_buffer;
+        for( int i = 0; i < n_targets; i++ ){
             targets[i] = getCard(pdata.targeted_ply, pdata.targetids[i]);
         }
         
         // does this card have a timed attribute?
         if( pdata.at_played.isTimed() ){
-            timed_attributes.add(new TimedAttribute(pdata.at_played, game.getTurn() + pdata.at_played.getTurns(), pdata.card_played, pdata.player, pdata.targeted_ply, targets));
+            int deploy_turn = game.getTurn() + pdata.at_played.getTurns();
+            timed_attributes.add(new TimedAttribute(pdata.at_played, deploy_turn, pdata.card_played, pdata.player, pdata.targeted_ply, targets));
+            game.getStateHash().toggleTimed(pdata.card_played, pdata.at_played, deploy_turn, pdata.targeted_ply);
+            game.getEvents().timedAttributeQueued(pdata.player, pdata.card_played, pdata.at_played, pdata.targeted_ply, deploy_turn);
+            delta.timedQueued(pdata.player, pdata.card_played.getBoardId(), pdata.card_played, pdata.at_played.getName(), deploy_turn);
         }else{ // no, active it on deploy!
-            activateAttribute(pdata.player, pdata.card_played, pdata.at_played, pdata.targeted_ply, targets);
+            activateAttribute(pdata.player, pdata.card_played, pdata.at_played, pdata.targeted_ply, targets, n_targets);
         }
     }
     
+    /**
+     * @return the number of cards destroyed since the board was reset
+     */
+    public int getCardsDestroyed(){
+        return cards_destroyed;
+    }
+    
+    /**
+     * @return the number of timed attributes that triggered since the board was reset
+     */
+    public int getTimedTriggered(){
+        return timed_triggered;
+    }
+    
+    /**
+     * Visits every timed attribute waiting on the board.
+     * @param visitor the callback called for each timed attribute
+     */
+    public void forEachTimedAttribute( TimedAttributeVisitor visitor ){
+        for( TimedAttribute ta : timed_attributes )
+            visitor.visit(ta.turn, ta.card, ta.attribute, ta.target, ta.targets.clone());
+    }
+    
+    /**
+     * Computes the state hash contribution of the board from scratch: cards on board and queued timed attributes.
+     * @return the XOR of the keys of the board
+     * @see {@link Zobrist}
+     */
+    public long computeHash(){
+        long h = 0;
+        for( Player ply : players ){
+            ArrayList<Card> ply_board = boardmap.get(ply);
+            for( int i = 0; i < ply_board.size(); i++ )
+                h ^= Zobrist.cardKey(ply_board.get(i), Zobrist.BOARD, i);
+        }
+        for( TimedAttribute ta : timed_attributes )
+            h ^= Zobrist.timedKey(ta.card, ta.attribute, ta.turn, ta.target);
+        return h;
+    }
+    
+    /**
+     * @return the timed attributes waiting on the board, in the order they were queued
+     */
+    List<TimedAttribute> getTimedAttributes() {
+        return Collections.unmodifiableList(timed_attributes);
+    }
+    
+    /**
+     * Puts the board back to an earlier state of the round, used to take back moves.
+     * The state of the cards themselves and the state hash are restored by the caller.
+     * @param boards the cards on the board of each seat, in slot order
+     * @param timed the timed attributes that were waiting, in the order they were queued
+     * @param cards_destroyed the number of cards destroyed so far in the round
+     * @param timed_triggered the number of timed attributes deployed so far in the round
+     * @see {@link GameState}
+     */
+    void restore( Card[][] boards, Iterable<TimedAttribute> timed, int cards_destroyed, int timed_triggered ){
+        for( Player ply : players ){
+            ArrayList<Card> ply_board = boardmap.get(ply);
+            ply_board.clear();
+            Collections.addAll(ply_board, boards[ply.getId()]);
+            refreshPower(ply);
+        }
+        timed_attributes.clear();
+        for( TimedAttribute ta : timed )
+            timed_attributes.add(ta);
+        delta.clear();
+        this.cards_destroyed = cards_destroyed;
+        this.timed_triggered = timed_triggered;
+    }
+    
+    /**
+     * @return the changes done to the board since they were last broadcast
+     */
+    BoardDelta getDelta() {
+        return delta;
+    }
+    
     /**
      * Gets the total power on board of a player
      * @param ply the player to get the total power from
      * @return total board power
      */
     public int getTotalPlayerPower( Player ply ){
-        int t = 0;
-        for( Card c : boardmap.get(ply) ){
-            t = t + c.getPower();
-        }
-        return t;
+        return power.getPower(ply.getId());
+    }
+    
+    /**
+     * @return the player with the most power on board (equal power: the first seated)
+     */
+    public Player getLeader(){
+        return players[power.getStrongest()];
+    }
+    
+    /**
+     * Gets the opponent of a player with the most power on board (equal power: the first seated), in O(1).
+     * @param ply the player
+     * @return the strongest other player, null if the player is alone
+     */
+    public Player getStrongestOpponent( Player ply ){
+        int seat = power.getStrongestExcept(ply.getId());
+        return seat < 0 ? null : players[seat];
     }
     
     /**
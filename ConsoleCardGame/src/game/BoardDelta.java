@@ -0,0 +1,206 @@
+package game;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+import cards.Card;
+import players.Player;
+
+/**
+ * ADT - BoardDelta class.
+ * Records the changes done to a board during a single turn so they can be encoded
+ * once and sent to every spectator of the game.
+ * A Board HAS-A BoardDelta.
+ * Consecutive power/resiliance changes of the same card are coalesced into one change.
+ * @see {@link Board}
+ * @see {@link SpectatorBroadcaster}
+ * @author paulo
+ */
+public class BoardDelta {
+    // Change codes, these are part of the encoded frame format
+    public static final byte CARD_ADDED = 1;
+    public static final byte STATS_CHANGED = 2;
+    public static final byte CARD_DESTROYED = 3;
+    public static final byte TIMED_QUEUED = 4;
+
+    private final ArrayList<Change> changes;
+
+    /**
+     * A static class to hold data about a single change on the board.
+     * @author paulo
+     */
+    private static class Change {
+        public final byte code;
+        public final Card card;
+        public final int player_id;
+        public final int slot;
+        public int power;
+        public int resiliance;
+        public final String text;
+        public final int extra; // turn of deploy for timed attributes, target player for others
+
+        private Change( byte code, Card card, int player_id, int slot, String text, int extra ){
+            this.code = code;
+            this.card = card;
+            this.player_id = player_id;
+            this.slot = slot;
+            this.power = card.getPower();
+            this.resiliance = card.getResiliance();
+            this.text = text;
+            this.extra = extra;
+        }
+    }
+
+    /**
+     * Constructor. Creates an empty delta.
+     */
+    public BoardDelta(){
+        changes = new ArrayList<Change>();
+    }
+
+    /**
+     * Records a card that was added to a board.
+     * @param ply the player the board belongs to
+     * @param slot the index of the card on the board
+     * @param card the card added
+     */
+    void cardAdded( Player ply, int slot, Card card ){
+        changes.add(new Change(CARD_ADDED, card, ply.getId(), slot, card.getName(), -1));
+    }
+
+    /**
+     * Records a change of power and/or resiliance of a card on the board.
+     * If the card was already changed this turn, and nothing structural happened since, the changes are merged.
+     * @param ply the player the board belongs to
+     * @param slot the index of the card on the board
+     * @param card the card changed
+     */
+    void statsChanged( Player ply, int slot, Card card ){
+        for( int i = changes.size()-1; i >= 0; i-- ){
+            Change c = changes.get(i);
+            if( c.code != STATS_CHANGED )
+                break; // a card was added or removed, slots might have moved
+
+            if( c.card == card ){
+                c.power = card.getPower();
+                c.resiliance = card.getResiliance();
+                return;
+            }
+        }
+        changes.add(new Change(STATS_CHANGED, card, ply.getId(), slot, null, -1));
+    }
+
+    /**
+     * Records a card that was destroyed and removed from a board.
+     * @param ply the player the board belongs to
+     * @param slot the index the card had on the board before removal
+     * @param card the card destroyed
+     */
+    void cardDestroyed( Player ply, int slot, Card card ){
+        changes.add(new Change(CARD_DESTROYED, card, ply.getId(), slot, null, -1));
+    }
+
+    /**
+     * Records a timed attribute that was queued on the board.
+     * @param ply the player that played the attribute
+     * @param slot the index of the activator card on the board
+     * @param card the activator card
+     * @param attribute_name the name of the timed attribute
+     * @param turn the turn the attribute will deploy on
+     */
+    void timedQueued( Player ply, int slot, Card card, String attribute_name, int turn ){
+        changes.add(new Change(TIMED_QUEUED, card, ply.getId(), slot, attribute_name, turn));
+    }
+
+    /**
+     * @return if no changes were recorded since the last clear
+     */
+    public boolean isEmpty(){
+        return changes.isEmpty();
+    }
+
+    /**
+     * @return the number of changes recorded since the last clear
+     */
+    public int size(){
+        return changes.size();
+    }
+
+    /**
+     * Clears the recorded changes. Called once the delta has been encoded.
+     */
+    public void clear(){
+        changes.clear();
+    }
+
+    /**
+     * Encodes the recorded changes into a frame payload.
+     * Format: [count:int] then per change [code:byte][player:int][slot:int] followed by
+     * [name:utf][power:int][resiliance:int] for CARD_ADDED, [power:int][resiliance:int] for STATS_CHANGED,
+     * nothing for CARD_DESTROYED and [attribute:utf][turn:int] for TIMED_QUEUED.
+     * @return the encoded changes
+     */
+    byte[] encode(){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + changes.size()*24);
+        try( DataOutputStream out = new DataOutputStream(bytes) ){
+            out.writeInt(changes.size());
+            for( Change c : changes ){
+                out.writeByte(c.code);
+                out.writeInt(c.player_id);
+                out.writeInt(c.slot);
+                switch( c.code ){
+                    case CARD_ADDED:
+                        out.writeUTF(c.text);
+                        out.writeInt(c.power);
+                        out.writeInt(c.resiliance);
+                        break;
+                    case STATS_CHANGED:
+                        out.writeInt(c.power);
+                        out.writeInt(c.resiliance);
+                        break;
+                    case CARD_DESTROYED:
+                        break;
+                    case TIMED_QUEUED:
+                        out.writeUTF(c.text);
+                        out.writeInt(c.extra);
+                        break;
+                    default:
+                        throw new IllegalStateException("Invalid change code during delta encoding!");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in memory stream, never happens
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes the whole board as a keyframe payload. Used for spectators that missed deltas.
+     * Format: [players:int] then per player [player:int][cards:int] and per card [name:utf][power:int][resiliance:int]
+     * @param board the board to encode
+     * @param players the players part of the game
+     * @return the encoded board
+     */
+    static byte[] encodeKeyframe( Board board, Player[] players ){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try( DataOutputStream out = new DataOutputStream(bytes) ){
+            out.writeInt(players.length);
+            for( Player ply : players ){
+                int n = board.getCardsOnBoard(ply);
+                out.writeInt(ply.getId());
+                out.writeInt(n);
+                for( int i = 0; i < n; i++ ){
+                    Card card = board.getCard(ply, i);
+                    out.writeUTF(card.getName());
+                    out.writeInt(card.getPower());
+                    out.writeInt(card.getResiliance());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,57 @@
+package game;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A journal of the events of a game, a line per event written to a file. Subscribed to the event bus of the game,
+ * so the file is written on the thread of the subscriber and the game never waits for the disk.
+ * @see {@link GameEventBus}
+ * @author paulo
+ */
+public class EventJournal implements GameEventHandler, Closeable {
+    private final BufferedWriter out;
+
+    /**
+     * Constructor. Creates the journal file, or empties it if it exists.
+     * @param path the path of the file
+     * @throws IOException if the file can not be written
+     */
+    public EventJournal( Path path ) throws IOException {
+        this.out = Files.newBufferedWriter(path);
+    }
+
+    @Override
+    public void onEvent( GameEvent event ){
+        write(event.toString());
+    }
+
+    @Override
+    public void onDropped( long count ){
+        write(count + " events dropped, the journal fell behind the game");
+    }
+
+    /**
+     * Writes a line.
+     * @param line the line
+     */
+    private void write( String line ){
+        try {
+            out.write(line);
+            out.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes the file. The subscription must be closed first, so every event is written.
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -1,16 +1,9 @@
 package game;
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map.Entry;
+import java.util.BitSet;
+import java.util.Random;
 import java.util.Scanner;
 import java.util.StringJoiner;
 
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.UnsupportedAudioFileException;
-
 import cards.AttributeType;
 import cards.Deck;
 import cards.DeckFaction;
@@ -20,6 +13,7 @@ import players.Computer;
 import players.ComputerType;
 import players.Human;
 import players.Player;
+import utility.AudioPlayer;
 import utility.Util;
 
 /**
@@ -36,65 +30,29 @@ public class Game {
     private final Scanner in;
     private final Player[] players;
     private final int max_rounds;
-    private final Round[] round_data;
+    private final RoundResults results;
     private final boolean game_mode;
+    private final boolean headless;
+    private final DeckFaction[] factions;
+    private final Deck[] decks;
+    private final long seed;
+    private final Random rng;
+    private final SpectatorBroadcaster spectators;
+    private final GameEventBus events;
+    private final Zobrist state_hash;
+    private final BitSet active; // seats that have not passed this round
     
     // instance variables
     private int current_round;
     private Board board;
     private int turn;
     private boolean is_active;
-    
-    /**
-     * Inner class, used to encapsulate the behavior of rounds which are part of a game.
-     * Eases readability and access to data tied specifically to each round.
-     * @author paulo
-     */
-    private final class Round {
-        public final int number;
-        public final Player[] winners; 
-        public final HashMap<Player, Integer> score = new HashMap<Player, Integer>();
-        public final boolean draw;
-        
-        /**
-         * Constructor. Creates a new instance of the round ADT.
-         */
-        private Round(){
-            this.number = current_round;
-            int max = Integer.MIN_VALUE;
-            int max_count = 0;
-            Player winner = null;
-            for( Player ply : players ){
-                int tpower = board.getTotalPlayerPower(ply);
-                if( max_count == 0 || tpower > max ){
-                    max = tpower;
-                    winner = ply;
-                    max_count = 1;
-                }else if ( tpower == max ){
-                    max_count++;
-                }
-                // store round score
-                score.put(ply,tpower);
-            }
-            
-            this.winners = new Player[max_count];
-            if ( max_count > 1 ) {
-                draw = true;
-                // better way doing this?
-                int i = 0;
-                for( Player ply : score.keySet() ){
-                    int tpower = board.getTotalPlayerPower(ply);
-                    if ( tpower == max ) {
-                        this.winners[i] = ply;
-                        i++;
-                    }       
-                }
-            }else{
-                draw = false;
-                this.winners[0] = winner;
-            }
-        }
-    }
+    private AudioPlayer music;
+    private boolean fast_start;
+    private int hand_size = Hand.DEFAULT_HAND_SIZE;
+    private GameHistory history; // versions of the round, null if moves can not be taken back
+    private boolean take_back;   // the player to move asked to take back their last move
+    private boolean restored;    // a version was just restored, it is not committed again
     
     /**
      * Constructor. Creates a new instance of the Game.
@@ -111,7 +69,89 @@ public class Game {
         this.in = in;
         this.game_mode = game_mode;
         this.players = new Player[n_players];
-        this.round_data = new Round[max_rounds];
+        this.results = new RoundResults(max_rounds, n_players);
+        this.active = new BitSet(n_players);
+        this.headless = false;
+        this.factions = null;
+        this.decks = null;
+        this.seed = System.nanoTime();
+        this.rng = new Random(seed);
+        this.spectators = new SpectatorBroadcaster(id);
+        this.events = new GameEventBus(this, GameEventBus.DEFAULT_CAPACITY);
+        this.state_hash = new Zobrist();
+        this.history = new GameHistory(); // players may take back moves
+        
+        current_round = 0;
+        is_active = true;
+    }
+    
+    /**
+     * Constructor. Creates a new headless instance of the Game.
+     * A headless game has no input or output, every player must be a computer
+     * and the factions are picked beforehand. Used to run many games at once.
+     * @param id the game ID
+     * @param players the players part of the game, their ids must match their index
+     * @param factions the faction of each player, a null faction is picked at random every round
+     * @param max_rounds the max number of rounds in the game
+     * @param seed the seed of the game, same seed and players give the same game
+     */
+    public Game( int id, Player[] players, DeckFaction[] factions, int max_rounds, long seed ){
+        this(id, players, factions.clone(), null, max_rounds, seed);
+    }
+    
+    /**
+     * Constructor. Creates a new headless instance of the Game played with given decks instead of the presets.
+     * Each player plays every round with its own deck, refilled between rounds.
+     * @param id the game ID
+     * @param players the players part of the game, their ids must match their index
+     * @param decks the deck of each player, not used by any other game
+     * @param max_rounds the max number of rounds in the game
+     * @param seed the seed of the game, same seed, players and decks give the same game
+     * @see {@link cards.CardPool}
+     */
+    public Game( int id, Player[] players, Deck[] decks, int max_rounds, long seed ){
+        this(id, players, null, decks.clone(), max_rounds, seed);
+    }
+    
+    /**
+     * Constructor. Creates a new headless instance of the Game, with either factions or decks.
+     * @param id the game ID
+     * @param players the players part of the game, their ids must match their index
+     * @param factions the faction of each player or null if decks are given
+     * @param decks the deck of each player or null if factions are given
+     * @param max_rounds the max number of rounds in the game
+     * @param seed the seed of the game
+     */
+    private Game( int id, Player[] players, DeckFaction[] factions, Deck[] decks, int max_rounds, long seed ){
+        int n_decks = factions != null ? factions.length : decks.length;
+        if ( players.length < 2 || n_decks != players.length )
+            throw new IllegalArgumentException("A headless game needs at least 2 players and a faction or deck for each!");
+        
+        this.id = id;
+        this.n_players = players.length;
+        this.max_rounds = max_rounds;
+        this.in = null;
+        this.game_mode = false;
+        this.players = players.clone();
+        this.results = new RoundResults(max_rounds, n_players);
+        this.active = new BitSet(n_players);
+        this.headless = true;
+        this.factions = factions;
+        this.decks = decks;
+        this.seed = seed;
+        this.rng = new Random(seed);
+        this.spectators = new SpectatorBroadcaster(id);
+        this.events = new GameEventBus(this, GameEventBus.DEFAULT_CAPACITY);
+        this.state_hash = new Zobrist();
+        
+        for( int i = 0; i < n_players; i++ ){
+            if ( !(players[i] instanceof Computer) || players[i].getId() != i )
+                throw new IllegalArgumentException("Headless games can only have computers with ids matching their seat!");
+            ComputerType type = ((Computer) players[i]).getType();
+            if ( n_players > type.getMaxPlayers() )
+                throw new IllegalArgumentException(String.format("%s computers can only play at tables of up to %d players, not %d!", type.getName(), type.getMaxPlayers(), n_players));
+            players[i].setGame(this);
+        }
         
         current_round = 0;
         is_active = true;
@@ -138,42 +178,176 @@ public class Game {
         return turn;
     }
     
+    /**
+     * @return the random generator of the game, every random decision of the game should use it
+     */
+    public Random getRandom() {
+        return rng;
+    }
+    
+    /**
+     * @return the seed the random generator of the game was created with
+     */
+    public long getSeed() {
+        return seed;
+    }
+    
+    /**
+     * @return if the game is running without input or output
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+    
+    /**
+     * @return the players part of the game
+     */
+    public Player[] getPlayers() {
+        return players.clone();
+    }
+    
+    /**
+     * @return the broadcaster used to fan out board changes to spectators
+     */
+    public SpectatorBroadcaster getSpectators() {
+        return spectators;
+    }
+    
+    /**
+     * @return the bus the events of the game are published on
+     */
+    public GameEventBus getEvents() {
+        return events;
+    }
+    
+    /**
+     * @return the incrementally updated hash of the game state
+     */
+    public Zobrist getStateHash() {
+        return state_hash;
+    }
+    
+    /**
+     * Computes the hash of the game state from scratch.
+     * @return the hash of the game state
+     */
+    public long computeStateHash(){
+        long h = 0;
+        for( Player ply : players ){
+            if( ply.getDeck() != null )
+                h ^= ply.getDeck().computeHash();
+            if( ply.getHand() != null )
+                h ^= ply.getHand().computeHash();
+            if( ply.getGraveyard() != null )
+                h ^= ply.getGraveyard().computeHash();
+        }
+        if( board != null )
+            h ^= board.computeHash();
+        if( state_hash.getToMove() >= 0 )
+            h ^= Zobrist.turnKey(state_hash.getToMove());
+        return h;
+    }
+    
+    /**
+     * Debug check. Compares the incremental state hash with a full recompute.
+     * @throws IllegalStateException if the hashes are different
+     */
+    public void verifyStateHash(){
+        long full = computeStateHash();
+        if( full != state_hash.get() )
+            throw new IllegalStateException(String.format("State hash mismatch on turn %d! incremental=%016x full=%016x", turn, state_hash.get(), full));
+    }
+    
+    /**
+     * @return the number of rounds that were played to the end
+     */
+    public int getRoundsPlayed() {
+        return results.size();
+    }
+    
+    /**
+     * Gets the score of a player on a round: its total power on board when the round ended.
+     * @param round the index of the round, from 0
+     * @param seat the index of the player
+     * @return the score
+     */
+    public int getRoundScore( int round, int seat ) {
+        return results.score(round, seat);
+    }
+    
+    /**
+     * @param round the index of the round, from 0
+     * @return the number of turns the round lasted
+     */
+    public int getRoundTurns( int round ) {
+        return results.turns(round);
+    }
+    
+    /**
+     * @param round the index of the round, from 0
+     * @return the number of cards destroyed during the round
+     */
+    public int getRoundCardsDestroyed( int round ) {
+        return results.destroyed(round);
+    }
+    
+    /**
+     * @param round the index of the round, from 0
+     * @return the number of timed attributes that triggered during the round
+     */
+    public int getRoundTimedTriggered( int round ) {
+        return results.timed(round);
+    }
+    
+    /**
+     * @param round the index of the round, from 0
+     * @param seat the index of the player
+     * @return the faction the player played the round with, null if it was not a preset deck
+     */
+    public DeckFaction getRoundFaction( int round, int seat ) {
+        return results.faction(round, seat);
+    }
+    
+    /**
+     * @param round the index of the round, from 0
+     * @param seat the index of the player
+     * @return if the player won the round (every player with the best score wins it)
+     */
+    public boolean isRoundWinner( int round, int seat ) {
+        return results.isWinner(round, seat);
+    }
+    
+    /**
+     * @return the index of the player that won the most rounds, -1 if more than one did
+     */
+    public int getWinner() {
+        int winner = -1;
+        int max = Integer.MIN_VALUE;
+        for( int i = 0; i < n_players; i++ ){
+            int rwon = players[i].getRoundsWon();
+            if( rwon > max ){
+                max = rwon;
+                winner = i;
+            }else if( rwon == max ){
+                winner = -1;
+            }
+        }
+        return winner;
+    }
+    
     /**
      * Starts the game logic.
      * Starts the game-setup and game-phase stages.
      * After calling this method, expect a long runtime for the calling thread. 
      */
     public void start(){
-        // Music
-        Util.print("Turn on music? [Y/N]");
-        if( in.nextLine().equalsIgnoreCase("y") ){
-            try {
-                music();
-            } catch (LineUnavailableException | IOException | UnsupportedAudioFileException e) {
-                Util.printError("Unable to start music! Lets just ignore that...");
-            }
-        }
-        
-        // Wait a bit for user to process what is going on
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        boolean was_muted = Util.isMuted();
+        if( headless ){
+            Util.setMuted(true);
+        }else{
+            setUp();
         }
         
-        if( game_mode )
-            Util.clearConsole();
-        
-        // Introduction
-        Util.printSeparator2("Welcome to 'Not A Rip-off GWENT' - A Card Game - COMP213 Assesement 1 - By Paulo Santos");
-        introduction();
-        if( game_mode )
-            Util.clearConsole();
-        
-        // Player Setup
-        Util.printSeparator2("A game has started! ID: " + id + " #Players: " + n_players);
-        setUpPlayers();
-        
         while( is_active ){ // Allows re matches with new decks for the same players!
             if( game_mode )
                 Util.clearConsoleConfirm(in);
@@ -181,8 +355,13 @@ public class Game {
             current_round++;
             turn = 0;
             
-            // Board/Deck Setup
-            board = new Board(this, players);
+            // Board/Deck Setup, reused from the last round if there was one
+            state_hash.reset();
+            if( board == null )
+                board = new Board(this, players);
+            else
+                board.reset();
+            spectators.resync(); // new board, spectators need the whole of it
             Util.printSeparator2("Deck selection!");
             deckSelection();
             
@@ -213,23 +392,121 @@ public class Game {
         gameOver();
         
         // close stream
-        in.close();
+        if( music != null )
+            music.close();
+        if( headless )
+            Util.setMuted(was_muted);
+        else
+            in.close();
+    }
+    
+    /**
+     * Runs the interactive setup of the game: music, introduction and players.
+     */
+    private void setUp(){
+        // Music
+        Util.print("Turn on music? [Y/N]");
+        if( in.nextLine().equalsIgnoreCase("y") )
+            music();
+        
+        // Wait a bit for user to process what is going on
+        if( !fast_start ){
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        
+        if( game_mode )
+            Util.clearConsole();
+        
+        // Introduction, only built if it is going to be read on a fast start
+        Util.printSeparator2("Welcome to 'Not A Rip-off GWENT' - A Card Game - COMP213 Assesement 1 - By Paulo Santos");
+        if( !fast_start ){
+            introduction();
+        }else{
+            Util.print("Read the introduction and game instructions? [Y/N]");
+            if( in.nextLine().equalsIgnoreCase("y") )
+                introduction();
+        }
+        if( game_mode )
+            Util.clearConsole();
+        
+        // Player Setup
+        Util.printSeparator2("A game has started! ID: " + id + " #Players: " + n_players);
+        setUpPlayers();
+    }
+    
+    /**
+     * Starts streaming the game, type .wav, music file in the background.
+     * The audio will play in a infinite loop, or not at all if there is no audio line.
+     */
+    private void music(){
+        music = AudioPlayer.play(Game.class.getResource("game_background.wav"), true);
+        Util.print("Music started!");
+    }
+    
+    /**
+     * Sets the game to start fast: no pause before the introduction, which is only shown if asked for.
+     * @param fast_start start fast?
+     */
+    void setFastStart( boolean fast_start ) {
+        this.fast_start = fast_start;
     }
     
     /**
-     * Loads and attempts to play the game, type .wav, music file.
-     * The audio will play in a infinite loop.
-     * @throws LineUnavailableException
-     * @throws IOException
-     * @throws UnsupportedAudioFileException
+     * Sets the number of cards each hand holds, set before the game starts.
+     * Every round starts with a card less than that in hand, so each turn draws to a full hand.
+     * @param hand_size the hand size, from 1 to Hand.MAX_HAND_SIZE
      */
-    private void music() throws LineUnavailableException, IOException, UnsupportedAudioFileException {
-        AudioInputStream audioIn = AudioSystem.getAudioInputStream(Game.class.getResource("game_background.wav"));
-        Clip clip = AudioSystem.getClip();
-        clip.open(audioIn);
-        clip.loop(Clip.LOOP_CONTINUOUSLY); // make it always play
-        clip.start();
-        Util.print("Music started! \n - Type: " + clip.getFormat() + "\n - Length in minutes: " + clip.getMicrosecondLength()/1000000/60);
+    public void setHandSize( int hand_size ) {
+        if ( hand_size < 1 || hand_size > Hand.MAX_HAND_SIZE )
+            throw new IllegalArgumentException("The hand size must be from 1 to " + Hand.MAX_HAND_SIZE + "!");
+        this.hand_size = hand_size;
+    }
+    
+    /**
+     * @return the number of cards each hand holds
+     */
+    public int getHandSize() {
+        return hand_size;
+    }
+    
+    /**
+     * Keeps the versions of each round or not, set before the game starts. Interactive games keep them so
+     * players can take back moves, headless games do not unless asked to.
+     * @param keep keep the versions?
+     */
+    public void setHistory( boolean keep ) {
+        this.history = keep ? new GameHistory() : null;
+    }
+    
+    /**
+     * @return the versions of the round being played, null if they are not kept
+     */
+    public GameHistory getHistory() {
+        return history;
+    }
+    
+    /**
+     * Asks to take back the last move of the player to move, once its play returns.
+     * @return false if the versions of the round are not kept, nothing can be taken back
+     */
+    public boolean requestTakeBack() {
+        if( history == null ){
+            Util.print("Moves can not be taken back in this game!");
+            return false;
+        }
+        take_back = true;
+        return true;
+    }
+    
+    /**
+     * @return the music player of the game, null if the music was not turned on
+     */
+    public AudioPlayer getMusic() {
+        return music;
     }
     
     /**
@@ -241,7 +518,7 @@ public class Game {
         joiner.add("A Round based card game with 3 factions, attribute types and categories, multiple players, ai computers, hand, deck and graveyard data structures.");
         joiner.add(" 1. Player Setup:\n   - Here the user inputs the number of players participating in the game and decides if they are a Computer or a Human.");
         joiner.add(" 2. Deck Setup:\n   - Here the user picks each player's deck.");
-        joiner.add(" 3. Game Logic:\n   - The game round starts. Hand size = " + Hand.MAX_CARDS_IN_HAND +"\n   - Each turn a player plays a card.\n   - The player selects which attribute the card will be played with.\n   - There are 2 Categories of attributes TIMED and NON-TIMED. Each attribute can be on of the 3 types of attributes BUFF, INFLICT and RESILIANCE.\n   - The card selected will be played with an active attribute placed on the board\n   - Turns are repeated untill a player passes or runs out of cards\n   - Round winner is the player with the highest power on the board.\n   - Repeat until no more cards. \n   - Winner of the round is the player with most power on board.\n   - Repeat until max rounds. Game Winner is player with most round wins.");
+        joiner.add(" 3. Game Logic:\n   - The game round starts. Hand size = " + hand_size +"\n   - Each turn a player plays a card.\n   - The player selects which attribute the card will be played with.\n   - There are 2 Categories of attributes TIMED and NON-TIMED. Each attribute can be on of the 3 types of attributes BUFF, INFLICT and RESILIANCE.\n   - The card selected will be played with an active attribute placed on the board\n   - Turns are repeated untill a player passes or runs out of cards\n   - Round winner is the player with the highest power on the board.\n   - Repeat until no more cards. \n   - Winner of the round is the player with most power on board.\n   - Repeat until max rounds. Game Winner is player with most round wins.");
        
         joiner.add("\n===============[ Specifics - Factions ]===============");  
         for( DeckFaction v : DeckFaction.values() )
@@ -277,8 +554,14 @@ public class Game {
             }else if( ans.equalsIgnoreCase("computer") ){
                 ComputerType dif = null;
                 ComputerType.printDescription();
-                String difstr = (String) Util.promptInputValidationByValue("[COMPUTER SETUP] Please enter Computer difficulty level:", in, ComputerType.getTypesAsStrings() );
-                dif = ComputerType.getFromString(difstr.toUpperCase());
+                while( dif == null ){
+                    String difstr = (String) Util.promptInputValidationByValue("[COMPUTER SETUP] Please enter Computer difficulty level:", in, ComputerType.getTypesAsStrings() );
+                    dif = ComputerType.getFromString(difstr.toUpperCase());
+                    if( n_players > dif.getMaxPlayers() ){
+                        Util.printError("%s computers can only play at tables of up to %d players! Please choose another level.", dif.getName(), dif.getMaxPlayers());
+                        dif = null;
+                    }
+                }
                 players[i] = new Computer( i, "PC"+i+"-"+dif.getName(), dif );
             }else{
                 throw new Error("Invalid input processed!");
@@ -291,15 +574,30 @@ public class Game {
      * Sets up the decks that each player will use.
      */
     private void deckSelection() {
+        if( headless ){
+            DeckFaction[] all = DeckFaction.values();
+            for( Player ply : players ){
+                if( decks != null ){
+                    ply.loadDeck(decks[ply.getId()]);
+                }else{
+                    DeckFaction faction = factions[ply.getId()];
+                    ply.loadDeck(faction != null ? faction : all[rng.nextInt(all.length)]);
+                }
+                ply.shuffleDeck();
+                if( ply.getGraveyard() == null )
+                    ply.setGraveyard(new Graveyard());
+            }
+            return;
+        }
+        
         Util.print("[DECK SELECTION] For each of the players, please select the faction they are going to play with. Factions:\n - Elves\n - Pirates\n - Kingdom");
         for( Player ply : players ){
             Util.printSeparator("DECK SELECTION - " + ply.getName());
             String ans = (String) Util.promptInputValidationByValue("[DECK SELECTION]["+ply.getName()+"][ID: "+ply.getId()+"] Please select a faction for the player!", in, new Object[]{"ELVES", "PIRATES", "KINGDOM", "elves", "pirates", "kingdom", "Elves", "Pirates", "Kingdom"} );
-            ply.setFaction(DeckFaction.getFromString(ans.toUpperCase()));
-            ply.setDeck(Deck.loadPresetDeck(ply.getFaction()));
-            ply.getDeck().setOwner(ply);
+            ply.loadDeck(DeckFaction.getFromString(ans.toUpperCase()));
             ply.shuffleDeck();
-            ply.setGraveyard(new Graveyard());
+            if( ply.getGraveyard() == null )
+                ply.setGraveyard(new Graveyard());
         }
     }
     
@@ -308,13 +606,18 @@ public class Game {
      */
     private void setUpHand(){
         for( Player ply : players ){
-            ply.setHand(new Hand());
+            if( ply.getHand() == null || ply.getHand().getSize() != hand_size )
+                ply.setHand(new Hand(hand_size)); // emptied at the end of every round, only made once
             Util.printSeparator("Initial Card for '" + ply.getName() + "'");
-            // draw first card, so the hand always has 2
-            if( game_mode && ply instanceof Computer )
-                ply.drawCard().printCardHidden();
-            else
-                ply.drawCard().printCard(); 
+            // draw all but one card, so the hand is full after the draw of every turn
+            for( int i = 0; i < hand_size - 1 && ply.getDeck().getCardsLeft() > 0; i++ ){
+                if( headless )
+                    ply.drawCard();
+                else if( game_mode && ply instanceof Computer )
+                    ply.drawCard().printCardHidden();
+                else
+                    ply.drawCard().printCard(); 
+            }
         }
     }
     
@@ -325,33 +628,48 @@ public class Game {
      * per round. This makes it simple to call.
      */
     private void logic(){
-        while( everyoneHasNotPassed() ){
-            for( Player ply : players ){
-                if ( !ply.hasPassed() ){
-                    // Confirmation telling players the next turn is about to be computed:
-                    turn++;
+        active.set(0, n_players);
+        if( history != null ){
+            history.clear();
+            state_hash.setTracking(true);
+        }
+        while( !active.isEmpty() ){
+            // only the seats still playing are visited: a turn costs the same however many players have passed
+            for( int seat = active.nextSetBit(0); seat >= 0; seat = active.nextSetBit(seat + 1) ){
+                Player ply = players[seat];
+                if( history != null )
+                    record(seat);
+                // Confirmation telling players the next turn is about to be computed:
+                turn++;
+                state_hash.setToMove(ply.getId());
+                if( !headless ){
                     Util.print("[NEXT TURN ALERT][#%d] Type anything to move on to the next turn.. whenever you are ready!", turn);
                     in.nextLine();
-                    
-                    // Check if player can play this turn!
-                    if( ply.getCardsLeft() == 0 ){
-                        ply.setPassed(true);
-                        Util.print("Player %s has no more cards! He has passed. Total power: %d\nSkipping turn!", ply.getName(), board.getTotalPlayerPower(ply));
-                        continue;
-                    } 
-                    
-                    // Check if the player can draw a card from deck to hand
-                    if( ply.getDeck().getCardsLeft() == 0 ) {
-                        Util.print("Player %s has no more cards in the deck! Unable to draw!", ply.getName());
-                    } else {
-                        // Player draws a card from deck
-                        Util.printSeparator("Card drawn by '" + ply.getName() + "'");
-                        if( game_mode && ply instanceof Computer )
-                            ply.drawCard().printCardHidden();
-                        else
-                            ply.drawCard().printCard();
-                    }
-                    
+                }
+                
+                // Check if player can play this turn!
+                if( ply.getCardsLeft() == 0 ){
+                    ply.setPassed(true);
+                    active.clear(seat);
+                    Util.print("Player %s has no more cards! He has passed. Total power: %d\nSkipping turn!", ply.getName(), board.getTotalPlayerPower(ply));
+                    continue;
+                } 
+                
+                // Check if the player can draw a card from deck to hand
+                if( ply.getDeck().getCardsLeft() == 0 ) {
+                    Util.print("Player %s has no more cards in the deck! Unable to draw!", ply.getName());
+                } else {
+                    // Player draws a card from deck
+                    Util.printSeparator("Card drawn by '" + ply.getName() + "'");
+                    if( headless )
+                        ply.drawCard();
+                    else if( game_mode && ply instanceof Computer )
+                        ply.drawCard().printCardHidden();
+                    else
+                        ply.drawCard().printCard();
+                }
+                
+                if( !headless ){
                     // Prints to console cards in hand
                     Util.printSeparator("Hand for '" + ply.getName() + "'");
                     if( game_mode && ply instanceof Computer )
@@ -363,20 +681,29 @@ public class Game {
                     Util.print("Type anything to show board... whenever you are ready!");
                     in.nextLine();
                     board.printBoard();
-                    
-                    // Call abstract method that runs the logic depending on the instance of Player. Run-time Polymorphism!
-                    // Store data in a ADT for easy access and use.
-                    Player.PlayData pdata = ply.play(in, players, board);
-                    
-                    // Check if the player passed 
-                    if ( ply.hasPassed() ) {
-                        continue;
-                    } else {
-                        // Move on to board logic
-                        board.playBoard(pdata);
-                    }
-                }else{
-                    Util.print("Player %s has passed. Skipping turn!", ply.getName());
+                }
+                
+                // Call abstract method that runs the logic depending on the instance of Player. Run-time Polymorphism!
+                // Store data in a ADT for easy access and use.
+                Player.PlayData pdata = ply.play(in, players, board);
+                
+                // Did the player ask to take back their last move?
+                if( take_back ){
+                    take_back = false;
+                    seat = takeBack(seat) - 1; // the loop moves on to the seat to move in the restored version
+                    continue;
+                }
+                
+                // Check if the player passed 
+                if ( ply.hasPassed() ) {
+                    active.clear(seat);
+                    continue;
+                } else {
+                    // Move on to board logic
+                    board.playBoard(pdata);
+                    spectators.publishTurn(board, players, turn);
+                    if( Zobrist.DEBUG )
+                        verifyStateHash();
                 }
                 
                 if( game_mode )
@@ -384,38 +711,96 @@ public class Game {
             }
         }
         
+        if( history != null )
+            state_hash.setTracking(false);
+        
         // Store and calculate round data
-        round_data[current_round-1] = new Round();
+        int r = results.record(board, players, turn);
         Util.printSeparator2("Round Winner");
 
-        if( round_data[current_round-1].draw ){
-            Util.print("There was a draw! Consiting of %d players! These players get a round win!", round_data[current_round-1].winners.length);
-            for ( Player winner : round_data[current_round-1].winners ) {
-                Util.print("One of the winners of this round was %s with a total power of %d", winner.getName(), board.getTotalPlayerPower(winner));
-                winner.setRoundsWon(winner.getRoundsWon() + 1);
-            }
-        }else{
-            Player winner = round_data[current_round-1].winners[0];
-            Util.print("The winner of this round was %s with a total power of %d", winner.getName(), board.getTotalPlayerPower(winner));
+        boolean draw = results.isDraw(r);
+        if( draw )
+            Util.print("There was a draw! Consiting of %d players! These players get a round win!", results.winners(r));
+        for( int i = 0; i < n_players; i++ ){
+            if( !results.isWinner(r, i) )
+                continue;
+            Player winner = players[i];
+            if( draw )
+                Util.print("One of the winners of this round was %s with a total power of %d", winner.getName(), results.score(r, i));
+            else
+                Util.print("The winner of this round was %s with a total power of %d", winner.getName(), results.score(r, i));
             winner.setRoundsWon(winner.getRoundsWon() + 1);
         }
+        for( int i = 0; i < n_players; i++ ){
+            if( results.isWinner(r, i) ){
+                events.roundEnded(i, results.winners(r), results.score(r, i));
+                break;
+            }
+        }
         
         // reset player states
         for( Player ply : players ) 
             ply.resetGameState();
     }
     
+    /**
+     * Commits the version of the round at the start of a turn, made from the changes of the turn before.
+     * @param seat the seat to move
+     */
+    private void record( int seat ){
+        if( restored ){ // the version was restored, it is in the history already
+            restored = false;
+            return;
+        }
+        if( history.size() == 0 )
+            history.commit(GameState.capture(this, board, seat));
+        else
+            history.commit(history.current().next(this, board, seat));
+    }
+    
+    /**
+     * Takes back the last move of a player: puts the round back to the start of their previous turn, undoing
+     * the moves played since. If they did not move yet this round, their current turn starts again.
+     * The history cursor only moves back, the undone versions are dropped when the next one is committed.
+     * @param seat the seat of the player
+     * @return the seat to move in the restored version
+     */
+    private int takeBack( int seat ){
+        int index = history.lastIndexOf(seat);
+        GameState state = index >= 0 ? history.moveTo(index) : history.current();
+        boolean was_muted = Util.isMuted();
+        Util.setMuted(true);
+        state.restore(this, board);
+        Util.setMuted(was_muted);
+        
+        turn = state.getTurn();
+        active.clear();
+        for( int i = 0; i < n_players; i++ )
+            if( !players[i].hasPassed() )
+                active.set(i);
+        state_hash.setTracking(true); // the restore is the version itself, not a change
+        restored = true;
+        spectators.resync();
+        if( Zobrist.DEBUG )
+            verifyStateHash();
+        
+        if( index >= 0 )
+            Util.print("Player %s took back their last move! Back to turn #%d", players[seat].getName(), turn + 1);
+        else
+            Util.print("Player %s has not moved yet this round, the turn starts again!", players[seat].getName());
+        return state.getSeat();
+    }
+    
     /**
      * Ends the game and calculates and displays the winner of the game.
      */
     private void gameOver(){
         Util.printSeparator2("Game is over! Round(s) results:");
-        for( Round round : round_data ){
-            System.out.println("----------[ Round: " + round.number + " ]------------");
-            for (Entry<Player, Integer> entry : round.score.entrySet()) {
-                Player ply = entry.getKey();
-                int value = entry.getValue();
-                System.out.println("[" + ply.getName() + "]: " + value );
+        if( !headless ){
+            for( int r = 0; r < results.size(); r++ ){
+                System.out.println("----------[ Round: " + (r + 1) + " ]------------");
+                for( int i = 0; i < n_players; i++ )
+                    System.out.println("[" + players[i].getName() + "]: " + results.score(r, i) );
             }
         }
         
@@ -426,7 +811,7 @@ public class Game {
         Player winner = null;
         for( Player ply : players ){
             int rwon = ply.getRoundsWon();
-            if( max_count == 0 || ply.getRoundsWon() > max ){
+            if( max_count == 0 || rwon > max ){
                 max = rwon;
                 winner = ply;
                 max_count = 1;
@@ -436,10 +821,12 @@ public class Game {
         }
         
         if ( max_count > 1 ) {
-            Util.printInBox("There was a overall game draw! Consiting of %d players! No one wins the game!", round_data[current_round-1].winners.length);
+            Util.printInBox("There was a overall game draw! Consiting of %d players! No one wins the game!", max_count);
         }else{
             Util.printInBox("The winner of the game is: %s with %d round wins!", winner.getName(), winner.getRoundsWon());
         }
+        
+        ComputerType.printStats();
     }
     
     /**
@@ -458,17 +845,6 @@ public class Game {
         }
     }
     
-    /**
-     * @return whether everyone has passed or not on the round.
-     */
-    private boolean everyoneHasNotPassed(){ 
-        for( Player ply : players )
-            if( ply.hasPassed() == false )
-                return true;
-        
-        return false;
-    }
-    
     /**
      * @return if the game instance is in game-mode.
      */
@@ -0,0 +1,198 @@
+package game;
+
+/**
+ * ADT - GameEvent class.
+ * Something that happened in a game, as published on its event bus. Events are slots of the ring of the bus, made
+ * once and written again for every event: a handler gets the same object for every event it handles, and must copy
+ * what it keeps before returning. Only names and numbers are held, never the live cards or players, so an event
+ * can be read on any thread.
+ * Which fields are set depends on the type, see {@link Type}; the others are -1 or null.
+ * @see {@link GameEventBus}
+ * @author paulo
+ */
+public final class GameEvent {
+    static final long WRITING = -1; // sequence of a slot being written
+
+    /**
+     * Types of events and the fields they set (besides sequence, game, round and turn).
+     * @author paulo
+     */
+    public enum Type {
+        /** A card was played to the board: seat, card, attribute, target_seat, slot (on the board of the seat). */
+        CARD_PLAYED,
+        /** An attribute was applied to a card: seat, card, attribute, target_seat, target_card, power and resiliance (of the target after it). */
+        ATTRIBUTE_ACTIVATED,
+        /** A card was destroyed and sent to the graveyard: seat (the owner), card, slot (it left on the board, -1 if it was not on it). */
+        CARD_DESTROYED,
+        /** A timed attribute was queued: seat, card, attribute, target_seat, value (the turn it deploys on). */
+        TIMED_ATTRIBUTE_QUEUED,
+        /** A round ended: seat (the winner, the first one on a draw), value (the power of the winner), slot (the number of winners). */
+        ROUND_ENDED
+    }
+
+    // written by the publisher while the sequence is WRITING, read by the subscribers around two reads of the sequence
+    volatile long sequence;
+    private volatile Type type;
+    private volatile int game;
+    private volatile int round;
+    private volatile int turn;
+    private volatile int seat;
+    private volatile String card;
+    private volatile String attribute;
+    private volatile int target_seat;
+    private volatile String target_card;
+    private volatile int slot;
+    private volatile int power;
+    private volatile int resiliance;
+    private volatile int value;
+
+    /**
+     * Constructor. Creates an empty slot.
+     */
+    GameEvent(){
+        sequence = WRITING;
+    }
+
+    /**
+     * Sets every field of the event.
+     */
+    void set( Type type, int game, int round, int turn, int seat, String card, String attribute, int target_seat,
+            String target_card, int slot, int power, int resiliance, int value ){
+        this.type = type;
+        this.game = game;
+        this.round = round;
+        this.turn = turn;
+        this.seat = seat;
+        this.card = card;
+        this.attribute = attribute;
+        this.target_seat = target_seat;
+        this.target_card = target_card;
+        this.slot = slot;
+        this.power = power;
+        this.resiliance = resiliance;
+        this.value = value;
+    }
+
+    /**
+     * Copies the fields of another event.
+     * @param e the event
+     */
+    void copyFrom( GameEvent e ){
+        set(e.type, e.game, e.round, e.turn, e.seat, e.card, e.attribute, e.target_seat, e.target_card, e.slot, e.power, e.resiliance, e.value);
+    }
+
+    /**
+     * @return the number of the event in its game, from 0
+     */
+    public long getSequence(){
+        return sequence;
+    }
+
+    /**
+     * @return the type of the event
+     */
+    public Type getType(){
+        return type;
+    }
+
+    /**
+     * @return the id of the game
+     */
+    public int getGame(){
+        return game;
+    }
+
+    /**
+     * @return the round of the game
+     */
+    public int getRound(){
+        return round;
+    }
+
+    /**
+     * @return the turn of the round
+     */
+    public int getTurn(){
+        return turn;
+    }
+
+    /**
+     * @return the seat of the player the event is about
+     */
+    public int getSeat(){
+        return seat;
+    }
+
+    /**
+     * @return the name of the card the event is about, null if none
+     */
+    public String getCard(){
+        return card;
+    }
+
+    /**
+     * @return the name of the attribute, null if none
+     */
+    public String getAttribute(){
+        return attribute;
+    }
+
+    /**
+     * @return the seat of the targeted player, -1 if none
+     */
+    public int getTargetSeat(){
+        return target_seat;
+    }
+
+    /**
+     * @return the name of the targeted card, null if none
+     */
+    public String getTargetCard(){
+        return target_card;
+    }
+
+    /**
+     * @return the board slot, or the number of winners of a round, -1 if none
+     */
+    public int getSlot(){
+        return slot;
+    }
+
+    /**
+     * @return the power of the targeted card after the attribute, -1 if none
+     */
+    public int getPower(){
+        return power;
+    }
+
+    /**
+     * @return the resiliance of the targeted card after the attribute, -1 if none
+     */
+    public int getResiliance(){
+        return resiliance;
+    }
+
+    /**
+     * @return the deploy turn of a timed attribute or the power of the winner of a round, -1 if none
+     */
+    public int getValue(){
+        return value;
+    }
+
+    @Override
+    public String toString(){
+        String where = String.format("#%d game %d round %d turn %d", sequence, game, round, turn);
+        switch( type ){
+            case CARD_PLAYED:
+                return String.format("%s %s seat %d played %s with %s on seat %d (slot %d)", where, type, seat, card, attribute, target_seat, slot);
+            case ATTRIBUTE_ACTIVATED:
+                return String.format("%s %s seat %d %s %s -> seat %d %s power %d resiliance %d", where, type, seat, card, attribute, target_seat, target_card, power, resiliance);
+            case CARD_DESTROYED:
+                return String.format("%s %s seat %d lost %s (slot %d)", where, type, seat, card, slot);
+            case TIMED_ATTRIBUTE_QUEUED:
+                return String.format("%s %s seat %d queued %s of %s on seat %d, deploys on turn %d", where, type, seat, attribute, card, target_seat, value);
+            default: // ROUND_ENDED
+                return String.format("%s %s winner seat %d with %d power (%d winners)", where, type, seat, value, slot);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package game;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import cards.Attribute;
+import cards.Card;
+import players.Player;
+import utility.Util;
+
+/**
+ * ADT - GameEventBus class.
+ * Publishes the events of a game (cards played, attributes activated, cards destroyed, timed attributes queued,
+ * rounds ended) to subscribers running on their own threads, so what they do (rendering, writing a journal,
+ * metrics) never holds the game up.
+ * The events are written in a ring of slots made once, by the game thread only (single producer), and every
+ * subscriber reads the ring at its own pace (multiple consumers). There are no locks: the game thread never waits
+ * for a subscriber, it writes over the oldest slot. A subscriber copies a slot and checks its sequence was not
+ * changed meanwhile; if it fell a whole ring behind, the events it missed are counted as dropped, as slow
+ * spectators are (see {@link Spectator}).
+ * The ring is only made when the first handler subscribes, so a game nobody watches (headless games, balance runs)
+ * costs an empty bus, and with no subscribers publishing costs a check. The ring holds -Dcardgame.events.capacity
+ * events (1024 by default).
+ * A Game HAS-A GameEventBus.
+ * @see {@link GameEvent}
+ * @see {@link GameEventHandler}
+ * @author paulo
+ */
+public final class GameEventBus {
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("cardgame.events.capacity", 1024);
+    // looks a subscriber with nothing to handle spins before it parks, none on a single core where it would hold up the game
+    private static final int IDLE_SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1000 : 0;
+    private static final long IDLE_NANOS = 100_000;   // how long it parks before looking again
+
+    private final Game game;
+    private final int capacity;   // of the ring, a power of 2
+    private GameEvent[] ring;     // made by the first subscribe, before the subscription is added
+    private int mask;
+    private final CopyOnWriteArrayList<Subscription> subscriptions;
+    private volatile long cursor; // sequence of the last event published, -1 if none
+    private long next;            // sequence of the next event, only used by the game thread
+
+    /**
+     * A subscriber of the bus, with its thread.
+     * @author paulo
+     */
+    public final class Subscription implements AutoCloseable {
+        private final GameEvent[] ring;
+        private final int mask;
+        private final GameEventHandler handler;
+        private final GameEvent event; // copy of the slot handed to the handler, reused
+        private final Thread thread;
+        private volatile boolean closing;
+        private volatile long handled;
+        private volatile long dropped;
+        private long next_read;        // sequence of the next event to read, only used by the subscriber thread
+
+        /**
+         * Constructor. The subscriber starts with the next event published.
+         * @param name the name of the subscriber, for its thread
+         * @param handler the handler of the events
+         */
+        private Subscription( String name, GameEventHandler handler ){
+            this.ring = GameEventBus.this.ring;
+            this.mask = GameEventBus.this.mask;
+            this.handler = handler;
+            this.event = new GameEvent();
+            this.next_read = cursor + 1;
+            this.thread = new Thread(this::run, "game-" + game.getId() + "-events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Loop of the subscriber thread: hands every event published to the handler until closed.
+         */
+        private void run(){
+            int idle = 0;
+            while( true ){
+                long available = cursor;
+                if( next_read > available ){
+                    if( closing && next_read > cursor ) // read after closing: every event published was handled
+                        return;
+                    if( ++idle < IDLE_SPINS ) // events come in bursts (a play), the next one is likely close
+                        Thread.onSpinWait();
+                    else
+                        LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                idle = 0;
+                if( available - next_read >= ring.length ) // a whole ring behind, the oldest events were written over
+                    lose(available - ring.length + 1 - next_read);
+
+                GameEvent slot = ring[(int) next_read & mask];
+                if( slot.sequence == next_read ){
+                    event.copyFrom(slot);
+                    if( slot.sequence == next_read ){ // not written over while copying
+                        event.sequence = next_read;
+                        next_read++;
+                        handle();
+                        continue;
+                    }
+                }
+                lose(1);
+            }
+        }
+
+        /**
+         * Hands the copied event to the handler. A failing handler is reported and keeps the next events.
+         */
+        private void handle(){
+            try {
+                handler.onEvent(event);
+            } catch (RuntimeException e) {
+                Util.printError("Event handler %s failed on event #%d: %s", thread.getName(), event.getSequence(), e);
+            }
+            handled++;
+        }
+
+        /**
+         * Skips events that were written over before they were read.
+         * @param count the number of events skipped
+         */
+        private void lose( long count ){
+            next_read += count;
+            dropped += count;
+            handler.onDropped(count);
+        }
+
+        /**
+         * @return the number of events handled
+         */
+        public long getHandled(){
+            return handled;
+        }
+
+        /**
+         * @return the number of events lost because the handler was too slow
+         */
+        public long getDropped(){
+            return dropped;
+        }
+
+        /**
+         * Unsubscribes: waits for the handler to handle the events already published, then stops its thread.
+         * Called from outside the game thread, or once the game is over.
+         */
+        @Override
+        public void close(){
+            closing = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            subscriptions.remove(this);
+        }
+    }
+
+    /**
+     * Constructor. Creates a bus with no subscribers, its ring is made by the first subscribe.
+     * @param game the game publishing on the bus
+     * @param capacity the least number of events a subscriber can fall behind before losing some
+     */
+    public GameEventBus( Game game, int capacity ){
+        if( capacity < 1 )
+            throw new IllegalArgumentException("Event bus capacity must be at least 1!");
+        int cap = Integer.highestOneBit(capacity);
+        if( cap < capacity )
+            cap <<= 1;
+        this.game = game;
+        this.capacity = cap;
+        this.subscriptions = new CopyOnWriteArrayList<Subscription>();
+        this.cursor = -1;
+        this.next = 0;
+    }
+
+    /**
+     * Subscribes a handler on a new thread of its own. It gets the events published from now on.
+     * @param name the name of the subscriber
+     * @param handler the handler of the events
+     * @return the subscription, closed to unsubscribe
+     */
+    public synchronized Subscription subscribe( String name, GameEventHandler handler ){
+        if( ring == null ){ // the game thread only reads it once it sees a subscription, added after
+            GameEvent[] slots = new GameEvent[capacity];
+            for( int i = 0; i < capacity; i++ )
+                slots[i] = new GameEvent();
+            mask = capacity - 1;
+            ring = slots;
+        }
+        Subscription sub = new Subscription(name, handler);
+        subscriptions.add(sub);
+        sub.thread.start();
+        return sub;
+    }
+
+    /**
+     * @return the number of subscribers
+     */
+    public int getSubscriberCount(){
+        return subscriptions.size();
+    }
+
+    /**
+     * @return the number of events published
+     */
+    public long getPublished(){
+        return next;
+    }
+
+    /**
+     * Writes an event in the next slot of the ring and publishes it. Game thread only.
+     */
+    private void publish( GameEvent.Type type, int seat, String card, String attribute, int target_seat, String target_card,
+            int slot, int power, int resiliance, int value ){
+        long seq = next;
+        GameEvent e = ring[(int) seq & mask];
+        e.sequence = GameEvent.WRITING; // subscribers copying the old event see it changed
+        e.set(type, game.getId(), game.getCurrentRound(), game.getTurn(), seat, card, attribute, target_seat, target_card, slot, power, resiliance, value);
+        e.sequence = seq;
+        cursor = seq;
+        next = seq + 1;
+    }
+
+    /**
+     * Publishes that a card was played to the board.
+     * @param ply the player
+     * @param card the card
+     * @param attribute the attribute it was played with
+     * @param target the targeted player
+     * @param slot the slot of the card on the board
+     */
+    void cardPlayed( Player ply, Card card, Attribute attribute, Player target, int slot ){
+        if( !subscriptions.isEmpty() )
+            publish(GameEvent.Type.CARD_PLAYED, ply.getId(), card.getName(), attribute.getName(), target.getId(), null, slot, -1, -1, -1);
+    }
+
+    /**
+     * Publishes that an attribute was applied to a card.
+     * @param ply the player of the activator
+     * @param card the activator
+     * @param attribute the attribute
+     * @param target the targeted player
+     * @param tcard the targeted card, after the attribute
+     */
+    void attributeActivated( Player ply, Card card, Attribute attribute, Player target, Card tcard ){
+        if( !subscriptions.isEmpty() )
+            publish(GameEvent.Type.ATTRIBUTE_ACTIVATED, ply.getId(), card.getName(), attribute.getName(), target.getId(), tcard.getName(), -1,
+                tcard.getPower(), tcard.getResiliance(), -1);
+    }
+
+    /**
+     * Publishes that a card was destroyed.
+     * @param ply the owner of the card
+     * @param card the card
+     * @param slot the slot it left on the board, -1 if it was not on it
+     */
+    void cardDestroyed( Player ply, Card card, int slot ){
+        if( !subscriptions.isEmpty() )
+            publish(GameEvent.Type.CARD_DESTROYED, ply.getId(), card.getName(), null, -1, null, slot, -1, -1, -1);
+    }
+
+    /**
+     * Publishes that a timed attribute was queued.
+     * @param ply the player
+     * @param card the card the attribute belongs to
+     * @param attribute the attribute
+     * @param target the targeted player
+     * @param deploy_turn the turn it deploys on
+     */
+    void timedAttributeQueued( Player ply, Card card, Attribute attribute, Player target, int deploy_turn ){
+        if( !subscriptions.isEmpty() )
+            publish(GameEvent.Type.TIMED_ATTRIBUTE_QUEUED, ply.getId(), card.getName(), attribute.getName(), target.getId(), null, -1, -1, -1, deploy_turn);
+    }
+
+    /**
+     * Publishes that a round ended.
+     * @param winner the seat of the winner, the first one on a draw
+     * @param winners the number of winners
+     * @param power the power of the winner
+     */
+    void roundEnded( int winner, int winners, int power ){
+        if( !subscriptions.isEmpty() )
+            publish(GameEvent.Type.ROUND_ENDED, winner, null, null, -1, null, winners, -1, -1, power);
+    }
+}
@@ -0,0 +1,22 @@
+package game;
+
+/**
+ * Functional interface. A subscriber of the events of a game (renderer, journal, metrics...), called on its own thread.
+ * @see {@link GameEventBus}
+ * @author paulo
+ */
+@FunctionalInterface
+public interface GameEventHandler {
+    /**
+     * Handles an event. The event object is reused for the next one, copy what is kept.
+     * @param event the event
+     */
+    void onEvent( GameEvent event );
+
+    /**
+     * Called when events were lost because the handler fell too far behind the game. Does nothing by default.
+     * @param count the number of events lost
+     */
+    default void onDropped( long count ){
+    }
+}
@@ -0,0 +1,123 @@
+package game;
+import java.util.ArrayList;
+
+/**
+ * A data structure. The versions of the round being played, oldest first, and a cursor on the version the game is at.
+ * The versions share their structure (see {@link GameState}), so keeping every turn of a round costs memory for
+ * the changes of each turn only. Moving the cursor back (undo) or forward (redo) is O(1), nothing is copied;
+ * committing a version with the cursor moved back drops the versions ahead of it, as an editor does.
+ * A Game HAS-A GameHistory when its moves can be taken back.
+ * @see {@link Game}
+ * @author paulo
+ */
+public final class GameHistory {
+    private final ArrayList<GameState> versions;
+    private int cursor; // index of the version the game is at, -1 if there is none
+
+    /**
+     * Constructor. Creates an empty history.
+     */
+    public GameHistory(){
+        versions = new ArrayList<GameState>();
+        cursor = -1;
+    }
+
+    /**
+     * Forgets every version. Used when a new round starts.
+     */
+    public void clear(){
+        versions.clear();
+        cursor = -1;
+    }
+
+    /**
+     * Adds a version after the one the game is at, which becomes the current version.
+     * The versions that were ahead of the cursor (undone) are dropped.
+     * @param state the version
+     */
+    public void commit( GameState state ){
+        if( cursor + 1 < versions.size() )
+            versions.subList(cursor + 1, versions.size()).clear();
+        versions.add(state);
+        cursor++;
+    }
+
+    /**
+     * @return the version the game is at, null if there is none
+     */
+    public GameState current(){
+        return cursor < 0 ? null : versions.get(cursor);
+    }
+
+    /**
+     * @return if there is a version before the current one
+     */
+    public boolean canUndo(){
+        return cursor > 0;
+    }
+
+    /**
+     * @return if there is a version after the current one
+     */
+    public boolean canRedo(){
+        return cursor + 1 < versions.size();
+    }
+
+    /**
+     * Moves back to the previous version.
+     * @return the previous version
+     */
+    public GameState undo(){
+        if( !canUndo() )
+            throw new IllegalStateException("There is no version to undo to!");
+        return versions.get(--cursor);
+    }
+
+    /**
+     * Moves forward to the next version, one that was undone.
+     * @return the next version
+     */
+    public GameState redo(){
+        if( !canRedo() )
+            throw new IllegalStateException("There is no version to redo to!");
+        return versions.get(++cursor);
+    }
+
+    /**
+     * Moves to a version.
+     * @param index the index of the version, from 0 (the start of the round) to size()-1
+     * @return the version
+     */
+    public GameState moveTo( int index ){
+        if( index < 0 || index >= versions.size() )
+            throw new IllegalArgumentException("There is no version " + index + " in a history of " + versions.size() + "!");
+        cursor = index;
+        return versions.get(index);
+    }
+
+    /**
+     * Finds the last version before the current one where a seat was to move, the start of its previous turn.
+     * @param seat the seat
+     * @return the index of the version, -1 if the seat did not move since the round started
+     */
+    public int lastIndexOf( int seat ){
+        for( int i = cursor - 1; i >= 0; i-- )
+            if( versions.get(i).getSeat() == seat )
+                return i;
+        return -1;
+    }
+
+    /**
+     * @return the number of versions kept
+     */
+    public int size(){
+        return versions.size();
+    }
+
+    /**
+     * @return the index of the version the game is at, -1 if there is none
+     */
+    public int getCursor(){
+        return cursor;
+    }
+}
@@ -0,0 +1,263 @@
+package game;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import cards.Attribute;
+import cards.Card;
+import cards.Deck;
+import cards.Graveyard;
+import players.Player;
+import utility.PersistentVector;
+
+/**
+ * ADT - GameState class.
+ * Immutable version of the state of a round: every card (where it is, its power, resiliance and active attribute),
+ * the timed attributes waiting, who passed, the turn and the counters of the round.
+ * The state is held in persistent vectors, so the next version is made from the cards the last turn changed
+ * (the state hash tracks them) and shares everything else with the version it was made from: a version costs
+ * time and memory for its changes only, however many cards are on the table.
+ * A version can be restored into the live game, which is how moves are taken back.
+ * @see {@link GameHistory}
+ * @see {@link PersistentVector}
+ * @author paulo
+ */
+public final class GameState {
+    private final Round round;
+    private final PersistentVector<CardState> cards;                 // by card id
+    private final PersistentVector<Board.TimedAttribute> timed;      // in the order they were queued
+    private final PersistentVector<Boolean> passed;                  // by seat
+    private final int turn;
+    private final int seat;     // the seat to move
+    private final int to_move;  // the player to move in the state hash
+    private final int cards_destroyed;
+    private final int timed_triggered;
+
+    /**
+     * The cards of a round and their ids, fixed when the round starts and shared by all its versions.
+     * @author paulo
+     */
+    private static final class Round {
+        private final Card[] cards;
+        private final int[] owner;  // seat of the owner of each card
+        private final IdentityHashMap<Card, Integer> ids;
+
+        /**
+         * Constructor. Gives an id to every card the decks of the players are filled with.
+         * @param players the players of the game
+         */
+        private Round( Player[] players ){
+            ArrayList<Card> all = new ArrayList<Card>();
+            ArrayList<Integer> seats = new ArrayList<Integer>();
+            for( Player ply : players ){
+                Deck deck = ply.getDeck();
+                for( int i = 0; i < deck.getCardsFilled(); i++ ){
+                    all.add(deck.getFilledCard(i));
+                    seats.add(ply.getId());
+                }
+            }
+            cards = all.toArray(new Card[all.size()]);
+            owner = new int[cards.length];
+            ids = new IdentityHashMap<Card, Integer>(cards.length);
+            for( int i = 0; i < cards.length; i++ ){
+                owner[i] = seats.get(i);
+                ids.put(cards[i], i);
+            }
+        }
+    }
+
+    /**
+     * The state of a card in a version, immutable.
+     * @author paulo
+     */
+    private static final class CardState {
+        private final int location;  // Zobrist location
+        private final int slot;
+        private final int board_id;
+        private final int power;
+        private final int resiliance;
+        private final Attribute active;
+
+        /**
+         * Constructor. Copies the current state of a card.
+         * @param card the card
+         */
+        private CardState( Card card ){
+            location = card.getHashLocation();
+            slot = card.getHashSlot();
+            board_id = card.getBoardId();
+            power = card.getPower();
+            resiliance = card.getResiliance();
+            active = card.getActiveAttribute();
+        }
+
+        /**
+         * @param card a card
+         * @return if the card is in this state
+         */
+        private boolean sameAs( Card card ){
+            return location == card.getHashLocation() && slot == card.getHashSlot() && board_id == card.getBoardId()
+                && power == card.getPower() && resiliance == card.getResiliance() && active == card.getActiveAttribute();
+        }
+
+        /**
+         * Puts a card back in this state. Its containers are restored apart.
+         * @param card the card
+         */
+        private void applyTo( Card card ){
+            card.setPower(power);
+            card.setResiliance(resiliance);
+            card.setActiveAttribute(active);
+            card.setBoardId(board_id);
+            card.setInGraveyard(location == Zobrist.GRAVEYARD);
+        }
+    }
+
+    /**
+     * Constructor.
+     */
+    private GameState( Round round, PersistentVector<CardState> cards, PersistentVector<Board.TimedAttribute> timed,
+            PersistentVector<Boolean> passed, int turn, int seat, int to_move, int cards_destroyed, int timed_triggered ){
+        this.round = round;
+        this.cards = cards;
+        this.timed = timed;
+        this.passed = passed;
+        this.turn = turn;
+        this.seat = seat;
+        this.to_move = to_move;
+        this.cards_destroyed = cards_destroyed;
+        this.timed_triggered = timed_triggered;
+    }
+
+    /**
+     * Captures the whole state of a round, once when it starts. O(cards).
+     * The state hash of the game must be tracking changes from now on, for the next versions.
+     * @param game the game
+     * @param board the board of the round
+     * @param seat the seat to move
+     * @return the first version of the round
+     */
+    static GameState capture( Game game, Board board, int seat ){
+        Player[] players = game.getPlayers();
+        Round round = new Round(players);
+        PersistentVector<CardState> cards = PersistentVector.empty();
+        for( Card card : round.cards )
+            cards = cards.add(new CardState(card));
+        PersistentVector<Boolean> passed = PersistentVector.empty();
+        for( Player ply : players )
+            passed = passed.add(ply.hasPassed());
+        game.getStateHash().drainTimedTouched();
+        return new GameState(round, cards, PersistentVector.of(board.getTimedAttributes()), passed, game.getTurn(),
+            seat, game.getStateHash().getToMove(), board.getCardsDestroyed(), board.getTimedTriggered());
+    }
+
+    /**
+     * Makes the next version from this one and the changes the state hash tracked since this one was made.
+     * Only the changed cards are copied, the timed attributes only if some were queued or deployed.
+     * @param game the game
+     * @param board the board of the round
+     * @param seat the seat to move
+     * @return the next version
+     */
+    GameState next( Game game, Board board, int seat ){
+        Zobrist zh = game.getStateHash();
+        ArrayList<Card> touched = new ArrayList<Card>();
+        zh.drainTouched(touched);
+        PersistentVector<CardState> next_cards = cards;
+        for( int i = 0; i < touched.size(); i++ ){
+            Card card = touched.get(i);
+            Integer id = round.ids.get(card);
+            if( id != null && !next_cards.get(id).sameAs(card) )
+                next_cards = next_cards.set(id, new CardState(card));
+        }
+        PersistentVector<Board.TimedAttribute> next_timed = timed;
+        if( zh.drainTimedTouched() )
+            next_timed = PersistentVector.of(board.getTimedAttributes());
+        // only the seat that moved since this version can have passed
+        PersistentVector<Boolean> next_passed = passed.set(this.seat, game.getPlayers()[this.seat].hasPassed());
+        return new GameState(round, next_cards, next_timed, next_passed, game.getTurn(), seat, zh.getToMove(),
+            board.getCardsDestroyed(), board.getTimedTriggered());
+    }
+
+    /**
+     * Puts the game back in this version: cards, hands, decks, graveyards, board, passes and state hash.
+     * Prints what the containers print, the caller mutes it. The turn and seats still playing are set by the game.
+     * @param game the game
+     * @param board the board of the round
+     */
+    void restore( Game game, Board board ){
+        Player[] players = game.getPlayers();
+        int n = players.length;
+        int[] in_deck = new int[n];
+        int[] on_board = new int[n];
+        int[] in_yard = new int[n];
+        for( int i = 0; i < round.cards.length; i++ ){
+            int location = cards.get(i).location;
+            if( location == Zobrist.DECK )
+                in_deck[round.owner[i]]++;
+            else if( location == Zobrist.BOARD )
+                on_board[round.owner[i]]++;
+            else if( location == Zobrist.GRAVEYARD )
+                in_yard[round.owner[i]]++;
+        }
+        Card[][] hands = new Card[n][];
+        Card[][] boards = new Card[n][];
+        Card[][] yards = new Card[n][];
+        for( int p = 0; p < n; p++ ){
+            hands[p] = new Card[players[p].getHand().getSize()];
+            boards[p] = new Card[on_board[p]];
+            yards[p] = new Card[in_yard[p]];
+        }
+        for( int i = 0; i < round.cards.length; i++ ){
+            Card card = round.cards[i];
+            CardState cs = cards.get(i);
+            cs.applyTo(card);
+            if( cs.location == Zobrist.HAND )
+                hands[round.owner[i]][cs.slot] = card;
+            else if( cs.location == Zobrist.BOARD )
+                boards[round.owner[i]][cs.slot] = card;
+            else if( cs.location == Zobrist.GRAVEYARD )
+                yards[round.owner[i]][cs.slot] = card;
+        }
+
+        for( int p = 0; p < n; p++ ){
+            Player ply = players[p];
+            ply.getHand().restore(hands[p]);
+            ply.getDeck().rewind(in_deck[p]);
+            Graveyard yard = ply.getGraveyard();
+            yard.clear();
+            for( Card card : yards[p] )
+                yard.addCard(card);
+            ply.setPassed(passed.get(p));
+        }
+        board.restore(boards, timed, cards_destroyed, timed_triggered);
+
+        // the containers moved the keys of the cards around, the hash is rebuilt from the version instead
+        Zobrist zh = game.getStateHash();
+        for( Card card : round.cards )
+            card.setHashState(0, Zobrist.NONE, -1);
+        zh.reset();
+        for( int i = 0; i < round.cards.length; i++ ){
+            CardState cs = cards.get(i);
+            if( cs.location != Zobrist.NONE )
+                zh.place(round.cards[i], cs.location, cs.slot);
+        }
+        for( Board.TimedAttribute ta : timed )
+            zh.toggleTimed(ta.card, ta.attribute, ta.turn, ta.target);
+        if( to_move >= 0 )
+            zh.setToMove(to_move);
+    }
+
+    /**
+     * @return the number of turns played before this version
+     */
+    public int getTurn(){
+        return turn;
+    }
+
+    /**
+     * @return the seat to move in this version
+     */
+    public int getSeat(){
+        return seat;
+    }
+}
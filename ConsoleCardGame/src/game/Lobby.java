@@ -0,0 +1,331 @@
+package game;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import cards.DeckFaction;
+import players.Computer;
+import players.ComputerType;
+import players.Player;
+import ratings.RatingStore;
+import utility.Util;
+
+/**
+ * Matchmaking service.
+ * Queues incoming players and groups them into tables of the same requested player count,
+ * round count and faction preference. Once a table is full a headless Game is started for it on a worker pool.
+ * Queues are lock-free: each table key has its own queue and a counter that is claimed with a CAS
+ * by whoever completes a table.
+ * @see {@link Game}
+ * @author paulo
+ */
+public class Lobby {
+    private final ConcurrentHashMap<TableKey, TableQueue> queues;
+    private final ExecutorService workers;
+    private final AtomicInteger next_game_id;
+    private final long seed;
+    private final long created_at;
+
+    // statistics
+    private final LongAdder tables_formed;
+    private final LongAdder games_finished;
+    private final LongAdder players_matched;
+    private final LongAdder total_wait;
+    private final AtomicLong max_wait;
+    private volatile RatingStore ratings;
+
+    /**
+     * A player waiting in the lobby for a table.
+     * @author paulo
+     */
+    public static final class Ticket {
+        public final String name;
+        public final ComputerType type;
+        public final int n_players;
+        public final int rounds;
+        public final DeckFaction faction;
+        private final long enqueued_at;
+        private final CompletableFuture<Game> game;
+
+        /**
+         * Creates a ticket for the lobby.
+         * @param name the name of the player
+         * @param type the type of computer playing the seat
+         * @param n_players the requested number of players of the table
+         * @param rounds the requested number of rounds of the game
+         * @param faction the preferred faction, null if any faction will do
+         */
+        public Ticket( String name, ComputerType type, int n_players, int rounds, DeckFaction faction ){
+            if( n_players < 2 || rounds < 1 )
+                throw new IllegalArgumentException("A table needs at least 2 players and 1 round!");
+            if( n_players > type.getMaxPlayers() )
+                throw new IllegalArgumentException(String.format("%s computers can only play at tables of up to %d players, not %d!", type.getName(), type.getMaxPlayers(), n_players));
+
+            this.name = name;
+            this.type = type;
+            this.n_players = n_players;
+            this.rounds = rounds;
+            this.faction = faction;
+            this.enqueued_at = System.nanoTime();
+            this.game = new CompletableFuture<Game>();
+        }
+
+        /**
+         * @return a future completed with the game this ticket played in, once it is over
+         */
+        public CompletableFuture<Game> getGame() {
+            return game;
+        }
+    }
+
+    /**
+     * Key of a table queue. Tickets are only matched with tickets of an equal key.
+     * @author paulo
+     */
+    private static final class TableKey {
+        private final int n_players;
+        private final int rounds;
+        private final DeckFaction faction;
+
+        private TableKey( Ticket ticket ){
+            this.n_players = ticket.n_players;
+            this.rounds = ticket.rounds;
+            this.faction = ticket.faction;
+        }
+
+        @Override
+        public boolean equals( Object obj ){
+            if( !(obj instanceof TableKey) )
+                return false;
+            TableKey other = (TableKey) obj;
+            return n_players == other.n_players && rounds == other.rounds && faction == other.faction;
+        }
+
+        @Override
+        public int hashCode(){
+            return (n_players * 31 + rounds) * 31 + (faction == null ? 0 : faction.ordinal() + 1);
+        }
+    }
+
+    /**
+     * Queue of tickets waiting for the same kind of table.
+     * The counter is incremented after a ticket is queued, so claiming N from the counter
+     * guarantees N tickets can be polled from the queue.
+     * @author paulo
+     */
+    private static final class TableQueue {
+        private final ConcurrentLinkedQueue<Ticket> tickets = new ConcurrentLinkedQueue<Ticket>();
+        private final AtomicInteger size = new AtomicInteger();
+    }
+
+    /**
+     * Constructor. Creates a lobby with a worker pool of a fixed size.
+     * @param n_workers the number of games that can run at the same time
+     * @param seed the seed used to make the seeds of the games started by the lobby
+     */
+    public Lobby( int n_workers, long seed ){
+        this.queues = new ConcurrentHashMap<TableKey, TableQueue>();
+        this.workers = Executors.newFixedThreadPool(n_workers, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ){
+                Thread t = new Thread(r, "lobby-worker-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.next_game_id = new AtomicInteger(1);
+        this.seed = seed;
+        this.created_at = System.nanoTime();
+        this.tables_formed = new LongAdder();
+        this.games_finished = new LongAdder();
+        this.players_matched = new LongAdder();
+        this.total_wait = new LongAdder();
+        this.max_wait = new AtomicLong();
+    }
+
+    /**
+     * Queues a player in the lobby. If the player completes a table, the game is started right away.
+     * @param ticket the ticket of the player
+     * @return the same ticket, to wait on its game
+     */
+    public Ticket join( Ticket ticket ){
+        TableQueue queue = queues.computeIfAbsent(new TableKey(ticket), k -> new TableQueue());
+        queue.tickets.offer(ticket);
+
+        int n = ticket.n_players;
+        int size = queue.size.incrementAndGet();
+        while( size >= n ){
+            if( queue.size.compareAndSet(size, size-n) ){
+                Ticket[] table = new Ticket[n];
+                for( int i = 0; i < n; i++ )
+                    table[i] = queue.tickets.poll(); // never null, they were claimed
+                startTable(table);
+            }
+            size = queue.size.get();
+        }
+        return ticket;
+    }
+
+    /**
+     * Creates the game of a complete table and submits it to the worker pool.
+     * The future of every ticket is always finished: with the game once it is over, or with the failure
+     * if the game could not be created, could not be submitted (lobby shut down) or crashed.
+     * @param table the tickets seated at the table
+     */
+    private void startTable( Ticket[] table ){
+        long now = System.nanoTime();
+        Player[] players = new Player[table.length];
+        DeckFaction[] factions = new DeckFaction[table.length];
+        for( int i = 0; i < table.length; i++ ){
+            long wait = now - table[i].enqueued_at;
+            total_wait.add(wait);
+            long max = max_wait.get();
+            while( wait > max && !max_wait.compareAndSet(max, wait) )
+                max = max_wait.get();
+
+            players[i] = new Computer(i, table[i].name, table[i].type);
+            factions[i] = table[i].faction;
+        }
+        players_matched.add(table.length);
+        tables_formed.increment();
+
+        int game_id = next_game_id.getAndIncrement();
+        final Game game;
+        try {
+            game = new Game(game_id, players, factions, table[0].rounds, seed ^ (game_id * 0x9E3779B97F4A7C15L));
+            workers.execute(() -> {
+                try {
+                    game.start();
+                    games_finished.increment();
+                    rate(game);
+                    for( Ticket t : table )
+                        t.game.complete(game);
+                } catch (Throwable e) { // Errors too, the repo signals invalid states with them
+                    Util.printError("Game %d crashed: %s", game_id, e);
+                    fail(table, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Util.printError("Game %d was not started, the lobby is shut down", game_id);
+            fail(table, e);
+        } catch (RuntimeException e) {
+            Util.printError("Game %d could not be created: %s", game_id, e);
+            fail(table, e);
+        }
+    }
+
+    /**
+     * Rates a finished game in the rating store, if there is one. A failure to rate is only printed:
+     * the game itself finished normally.
+     * @param game the game, once over
+     */
+    private void rate( Game game ){
+        RatingStore store = ratings;
+        if( store == null )
+            return;
+        try {
+            store.recordGame(game);
+        } catch (IOException | IllegalArgumentException e) {
+            Util.printError("Game %d could not be rated: %s", game.getId(), e);
+        }
+    }
+
+    /**
+     * Finishes the futures of the tickets of a table with a failure.
+     * @param table the tickets seated at the table
+     * @param cause the failure
+     */
+    private static void fail( Ticket[] table, Throwable cause ){
+        for( Ticket t : table )
+            t.game.completeExceptionally(cause);
+    }
+
+    /**
+     * Sets the store every game finished is rated in.
+     * @param ratings the rating store, null to not rate games
+     */
+    public void setRatingStore( RatingStore ratings ){
+        this.ratings = ratings;
+    }
+
+    /**
+     * @return the number of players waiting for a table
+     */
+    public int getWaitingPlayers(){
+        int waiting = 0;
+        for( TableQueue queue : queues.values() )
+            waiting += queue.size.get();
+        return waiting;
+    }
+
+    /**
+     * @return the number of tables formed since the lobby was created
+     */
+    public long getTablesFormed(){
+        return tables_formed.sum();
+    }
+
+    /**
+     * @return the number of games that ended since the lobby was created
+     */
+    public long getGamesFinished(){
+        return games_finished.sum();
+    }
+
+    /**
+     * @return the number of tables formed per second since the lobby was created
+     */
+    public double getMatchesPerSecond(){
+        double seconds = (System.nanoTime() - created_at) / 1e9;
+        return seconds > 0 ? tables_formed.sum() / seconds : 0;
+    }
+
+    /**
+     * @return the average time a matched player waited in queue, in milliseconds
+     */
+    public double getAverageWaitMillis(){
+        long matched = players_matched.sum();
+        return matched == 0 ? 0 : total_wait.sum() / 1e6 / matched;
+    }
+
+    /**
+     * @return the longest time a matched player waited in queue, in milliseconds
+     */
+    public double getMaxWaitMillis(){
+        return max_wait.get() / 1e6;
+    }
+
+    /**
+     * Prints the statistics of the lobby.
+     */
+    public void printStats(){
+        Util.printSeparator("LOBBY");
+        Util.print("Waiting players: %d", getWaitingPlayers());
+        Util.print("Tables formed: %d (%.2f per second)", getTablesFormed(), getMatchesPerSecond());
+        Util.print("Games finished: %d", getGamesFinished());
+        Util.print("Queue wait: average %.3f ms, max %.3f ms", getAverageWaitMillis(), getMaxWaitMillis());
+    }
+
+    /**
+     * Stops accepting games and waits for the running ones to end.
+     * @param timeout how long to wait
+     * @param unit the unit of the timeout
+     * @return true if every game ended before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown( long timeout, TimeUnit unit ) throws InterruptedException {
+        workers.shutdown();
+        return workers.awaitTermination(timeout, unit);
+    }
+}
@@ -1,30 +1,203 @@
 package game;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
+import cards.DeckFaction;
+import cards.Hand;
+import players.Computer;
+import players.ComputerType;
+import players.Player;
+import ratings.Leaderboard;
+import ratings.Rating;
+import ratings.RatingStore;
 import utility.Util;
 
 public class Main {
+    public static final String FIRST_PROMPT = "Would you like to start a new game? [Y/N]";
+    public static final String FIRST_TURN = "[NEXT TURN ALERT][#1]";
+    private static final String RATINGS_DIR = "ratings";
+    private static final int TRAIN_GAMES = 200;
+
     /**
      * Main method. Execution of the program starts here.
      * It request information needed to start the game object.
+     * Options:
+     *  --fast        start fast: no pause and the introduction only if asked for;
+     *  --no-ratings  do not rate the game;
+     *  --hand=N      hands hold N cards (2 by default, 7 to 10 for competitive play);
+     *  --journal=F   write the events of the game to the file F, see EventJournal;
+     *  --train       play a scripted game and some headless games, then exit. Used to record the classes
+     *                of a run in an AppCDS archive (-XX:ArchiveClassesAtExit), see the README.
      * @param args
      */
     public static void main(String[] args) {
-        Game game;
-        final Scanner in = new Scanner(System.in); // this will be the only scanner object that handles all our input stream through out the game
-        Character ans = (Character) Util.promptInputValidationByValue( "Would you like to start a new game? [Y/N]", in, new Object[]{ 'n', 'y', 'Y', 'N' } );
-        
+        boolean fast = false;
+        boolean rated = true;
+        boolean train = false;
+        int hand_size = Hand.DEFAULT_HAND_SIZE;
+        Path journal = null;
+        for( String arg : args ){
+            switch( arg ){
+                case "--fast":
+                    fast = true;
+                    break;
+                case "--no-ratings":
+                    rated = false;
+                    break;
+                case "--train":
+                    train = true;
+                    break;
+                default:
+                    if( arg.startsWith("--hand=") ){
+                        hand_size = parseHandSize(arg.substring("--hand=".length()), hand_size);
+                        break;
+                    }
+                    if( arg.startsWith("--journal=") ){
+                        journal = Paths.get(arg.substring("--journal=".length()));
+                        break;
+                    }
+                    Util.printError("Unknown option '%s' ignored", arg);
+            }
+        }
+
+        if( train ){
+            train();
+        }else{
+            final Scanner in = new Scanner(System.in); // this will be the only scanner object that handles all our input stream through out the game
+            play(in, fast, rated, hand_size, journal);
+            in.close();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Reads the hand size option.
+     * @param value the value of the option
+     * @param fallback the hand size kept if the value is not valid
+     * @return the hand size
+     */
+    private static int parseHandSize( String value, int fallback ){
+        try {
+            int size = Integer.parseInt(value);
+            if( size >= 1 && size <= Hand.MAX_HAND_SIZE )
+                return size;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        Util.printError("Invalid hand size '%s' ignored, it must be from 1 to %d", value, Hand.MAX_HAND_SIZE);
+        return fallback;
+    }
+    
+    /**
+     * Asks for the game settings and plays the game.
+     * @param in the input of the game
+     * @param fast start the game fast?
+     * @param rated rate the game?
+     * @param hand_size the number of cards each hand holds
+     * @param journal the file the events of the game are written to, null for none
+     */
+    private static void play( Scanner in, boolean fast, boolean rated, int hand_size, Path journal ){
+        Character ans = (Character) Util.promptInputValidationByValue( FIRST_PROMPT, in, new Object[]{ 'n', 'y', 'Y', 'N' } );
+
         if( Character.toLowerCase(ans) == 'y' ){
             final Integer int_plys = (Integer) Util.promptInputValidationByRange( "How many players will this game have? [INT]", in, 2, Integer.MAX_VALUE); //clean
-            final Integer int_rounds = (Integer) Util.promptInputValidationByClass( "How many rounds will this game have? [INT]", in, Integer.class ); 
+            final Integer int_rounds = (Integer) Util.promptInputValidationByClass( "How many rounds will this game have? [INT]", in, Integer.class );
             final Boolean game_mode = (Boolean) Util.promptInputValidationByClass( "Would you like the game to handle clearing console output and hide computer cards for a more imersive game? [BOOLEAN]\n (Note: If correcting the assignment, set as false to get a clear view of how the game works!)", in, Boolean.class );
-            game = new Game(1, int_plys, int_rounds, game_mode, new Scanner(System.in));
-            game.start();
+            Game game = new Game(1, int_plys, int_rounds, game_mode, in);
+            game.setFastStart(fast);
+            game.setHandSize(hand_size);
+            if( journal != null )
+                playJournaled(game, journal);
+            else
+                game.start();
+            if( rated )
+                rate(game);
         }else{
             Util.print("Ending progran...");
         }
-        
-        in.close();
-        System.exit(0);
+    }
+
+    /**
+     * Plays a game writing its events to a journal file. The game is played anyway if the file can not be written.
+     * @param game the game
+     * @param journal the file of the journal
+     */
+    private static void playJournaled( Game game, Path journal ){
+        EventJournal writer;
+        try {
+            writer = new EventJournal(journal);
+        } catch (IOException e) {
+            Util.printError("Could not write the journal: %s", e);
+            game.start();
+            return;
+        }
+        try( EventJournal w = writer ){
+            GameEventBus.Subscription sub = game.getEvents().subscribe("journal", w);
+            try {
+                game.start();
+            } finally {
+                sub.close(); // the journal gets the last events before it is closed
+            }
+        }catch( IOException e ){
+            Util.printError("Could not write the journal: %s", e);
+        }
+    }
+    
+    /**
+     * Makes the input of a one round game between two computers, answering every prompt up to its last turn.
+     * @param fast the input of a fast start?
+     * @param turns the number of turns to answer for
+     * @return the input, one answer per line
+     */
+    public static String script( boolean fast, int turns ){
+        StringBuilder sb = new StringBuilder();
+        sb.append("y\n2\n1\nfalse\n");                 // new game, players, rounds, game mode
+        sb.append("N\n");                              // music
+        sb.append(fast ? "N\n" : "\n");                // introduction
+        sb.append("Computer\nLOGICAL\nComputer\nRANDOM\n");
+        sb.append("Elves\nKingdom\n");
+        for( int i = 0; i < turns; i++ )
+            sb.append("\n");
+        return sb.toString();
+    }
+
+    /**
+     * Training run: plays a scripted game and headless games of every kind of computer, so every class a run
+     * uses is loaded.
+     */
+    private static void train(){
+        long start = System.nanoTime();
+        play(new Scanner(script(true, 64)), true, false, Hand.DEFAULT_HAND_SIZE, null);
+        ComputerType[] types = ComputerType.values();
+        for( int g = 0; g < TRAIN_GAMES; g++ ){
+            ComputerType a = types[g % types.length];
+            ComputerType b = types[(g / types.length) % types.length];
+            if( g >= types.length * types.length && (a.getMoveBudgetMillis() > 0 || b.getMoveBudgetMillis() > 0) )
+                continue; // computers with a time budget only play a few games, they are slow
+            Player[] players = { new Computer(0, "train-a", a), new Computer(1, "train-b", b) };
+            new Game(g, players, new DeckFaction[2], 2, g).start();
+        }
+        Util.print("Training run done in %.1fs", (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Rates the players of a finished game in the rating store of the working directory and prints their ratings and ranks.
+     * @param game the game, once over
+     */
+    private static void rate( Game game ){
+        try( RatingStore store = new RatingStore(Paths.get(RATINGS_DIR)) ){
+            Leaderboard board = Leaderboard.byRating();
+            board.attach(store);
+            store.recordGame(game);
+            Util.printSeparator(" RATINGS ");
+            for( Player ply : game.getPlayers() ){
+                Rating r = store.get(ply.getName());
+                Util.print("#%d/%d %s", board.getRank(ply.getName()), board.size(), r);
+            }
+        }catch( IOException | IllegalArgumentException e ){
+            Util.printError("Could not save the ratings: %s", e);
+        }
     }
 }
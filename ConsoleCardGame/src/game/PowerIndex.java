@@ -0,0 +1,135 @@
+package game;
+
+/**
+ * A data structure. Indexed max heap of the player seats by their total power on board (equal power: lower seat first).
+ * The position of every seat in the heap is kept, so the power of a seat is changed in O(log n) without searching
+ * for it, and the strongest seat, or the strongest other than a given one, is read in O(1).
+ * A Board HAS-A PowerIndex.
+ * @see {@link Board}
+ * @author paulo
+ */
+public final class PowerIndex {
+    private final int[] heap;  // seats, heap[0] is the strongest
+    private final int[] pos;   // position of each seat in the heap
+    private final int[] power; // power of each seat
+
+    /**
+     * Constructor. Every seat starts with no power.
+     * @param n_seats the number of seats
+     */
+    public PowerIndex( int n_seats ){
+        heap = new int[n_seats];
+        pos = new int[n_seats];
+        power = new int[n_seats];
+        reset();
+    }
+
+    /**
+     * Sets every seat back to no power.
+     */
+    public void reset(){
+        for( int i = 0; i < heap.length; i++ ){
+            heap[i] = i;
+            pos[i] = i;
+            power[i] = 0;
+        }
+    }
+
+    /**
+     * @param a a seat
+     * @param b another seat
+     * @return if seat a ranks above seat b
+     */
+    private boolean above( int a, int b ){
+        return power[a] > power[b] || (power[a] == power[b] && a < b);
+    }
+
+    /**
+     * Sets the power of a seat and moves it to its place in the heap.
+     * @param seat the seat
+     * @param value its total power
+     */
+    public void update( int seat, int value ){
+        int old = power[seat];
+        power[seat] = value;
+        if( value > old )
+            siftUp(pos[seat]);
+        else if( value < old )
+            siftDown(pos[seat]);
+    }
+
+    /**
+     * Moves the seat at a position up while it ranks above its parent.
+     * @param i the position
+     */
+    private void siftUp( int i ){
+        int seat = heap[i];
+        while( i > 0 ){
+            int parent = (i - 1) >>> 1;
+            if( !above(seat, heap[parent]) )
+                break;
+            place(heap[parent], i);
+            i = parent;
+        }
+        place(seat, i);
+    }
+
+    /**
+     * Moves the seat at a position down while a child ranks above it.
+     * @param i the position
+     */
+    private void siftDown( int i ){
+        int seat = heap[i];
+        int n = heap.length;
+        while( true ){
+            int child = 2 * i + 1;
+            if( child >= n )
+                break;
+            if( child + 1 < n && above(heap[child + 1], heap[child]) )
+                child++;
+            if( !above(heap[child], seat) )
+                break;
+            place(heap[child], i);
+            i = child;
+        }
+        place(seat, i);
+    }
+
+    /**
+     * Puts a seat at a position of the heap.
+     */
+    private void place( int seat, int i ){
+        heap[i] = seat;
+        pos[seat] = i;
+    }
+
+    /**
+     * @param seat a seat
+     * @return the power of the seat
+     */
+    public int getPower( int seat ){
+        return power[seat];
+    }
+
+    /**
+     * @return the strongest seat
+     */
+    public int getStrongest(){
+        return heap[0];
+    }
+
+    /**
+     * Gets the strongest seat other than a given one: the top of the heap, or the best of its children if the top is the seat.
+     * @param seat the seat left out
+     * @return the strongest other seat, -1 if there is none
+     */
+    public int getStrongestExcept( int seat ){
+        if( heap.length < 2 )
+            return -1;
+        if( heap[0] != seat )
+            return heap[0];
+        if( heap.length == 2 || above(heap[1], heap[2]) )
+            return heap[1];
+        return heap[2];
+    }
+}
@@ -0,0 +1,149 @@
+package game;
+import cards.DeckFaction;
+import players.Player;
+
+/**
+ * A data structure. The results of the rounds of a game, in flat arrays allocated once for every round the game can have.
+ * The score of a player on a round is at round * n_players + seat. A round only stores its best score and how many
+ * players reached it: a player won the round if its score is the best one, the round is a draw if more than one did.
+ * A Game HAS-A RoundResults.
+ * @see {@link Game}
+ * @author paulo
+ */
+final class RoundResults {
+    private final int n_players;
+    private final int[] scores;
+    private final DeckFaction[] factions; // null for decks that are not presets
+    private final int[] best;
+    private final int[] n_winners;
+    private final int[] turns;
+    private final int[] destroyed;
+    private final int[] timed;
+    private int size;
+
+    /**
+     * Constructor. Creates an empty results block.
+     * @param max_rounds the max number of rounds
+     * @param n_players the number of players
+     */
+    RoundResults( int max_rounds, int n_players ){
+        this.n_players = n_players;
+        this.scores = new int[max_rounds * n_players];
+        this.factions = new DeckFaction[max_rounds * n_players];
+        this.best = new int[max_rounds];
+        this.n_winners = new int[max_rounds];
+        this.turns = new int[max_rounds];
+        this.destroyed = new int[max_rounds];
+        this.timed = new int[max_rounds];
+        this.size = 0;
+    }
+
+    /**
+     * Records the round that just ended: the score of each player is its total power on board.
+     * The best score and the number of players that reached it are found in the same pass.
+     * @param board the board, before it is reset
+     * @param players the players, ordered by seat
+     * @param turn the turn the round ended on
+     * @return the index of the round recorded
+     */
+    int record( Board board, Player[] players, int turn ){
+        if( size == best.length )
+            throw new IllegalStateException("Every round of the game was already recorded!");
+        int r = size;
+        int base = r * n_players;
+        int max = Integer.MIN_VALUE;
+        int count = 0;
+        for( int i = 0; i < n_players; i++ ){
+            int tpower = board.getTotalPlayerPower(players[i]);
+            scores[base + i] = tpower;
+            factions[base + i] = players[i].getFaction();
+            if( count == 0 || tpower > max ){
+                max = tpower;
+                count = 1;
+            }else if( tpower == max ){
+                count++;
+            }
+        }
+        best[r] = max;
+        n_winners[r] = count;
+        turns[r] = turn;
+        destroyed[r] = board.getCardsDestroyed();
+        timed[r] = board.getTimedTriggered();
+        size++;
+        return r;
+    }
+
+    /**
+     * @return the number of rounds recorded
+     */
+    int size(){
+        return size;
+    }
+
+    /**
+     * @param r the index of the round
+     * @param seat the index of the player
+     * @return the score of the player on the round
+     */
+    int score( int r, int seat ){
+        return scores[r * n_players + seat];
+    }
+
+    /**
+     * @param r the index of the round
+     * @param seat the index of the player
+     * @return the faction the player played the round with, null if it was not a preset deck
+     */
+    DeckFaction faction( int r, int seat ){
+        return factions[r * n_players + seat];
+    }
+
+    /**
+     * @param r the index of the round
+     * @param seat the index of the player
+     * @return if the player has the best score of the round
+     */
+    boolean isWinner( int r, int seat ){
+        return scores[r * n_players + seat] == best[r];
+    }
+
+    /**
+     * @param r the index of the round
+     * @return the number of players with the best score of the round
+     */
+    int winners( int r ){
+        return n_winners[r];
+    }
+
+    /**
+     * @param r the index of the round
+     * @return if more than one player had the best score of the round
+     */
+    boolean isDraw( int r ){
+        return n_winners[r] > 1;
+    }
+
+    /**
+     * @param r the index of the round
+     * @return the number of turns the round lasted
+     */
+    int turns( int r ){
+        return turns[r];
+    }
+
+    /**
+     * @param r the index of the round
+     * @return the number of cards destroyed during the round
+     */
+    int destroyed( int r ){
+        return destroyed[r];
+    }
+
+    /**
+     * @param r the index of the round
+     * @return the number of timed attributes that triggered during the round
+     */
+    int timed( int r ){
+        return timed[r];
+    }
+}
@@ -0,0 +1,103 @@
+package game;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ADT - Spectator class.
+ * A subscriber of a game broadcast. Holds a bounded queue of frames that a consumer (for example a network writer)
+ * drains at its own pace. If the consumer falls behind and the queue fills up, the queued deltas are dropped
+ * and replaced by a single keyframe on the next publish.
+ * @see {@link SpectatorBroadcaster}
+ * @author paulo
+ */
+public class Spectator {
+    private final ArrayBlockingQueue<SpectatorFrame> queue;
+    private volatile boolean needs_keyframe;
+    private volatile long dropped;
+
+    /**
+     * Constructor. Creates a spectator with a bounded queue.
+     * @param capacity the max number of frames waiting for the consumer
+     */
+    Spectator( int capacity ){
+        if( capacity < 1 )
+            throw new IllegalArgumentException("Spectator queue capacity must be at least 1!");
+
+        this.queue = new ArrayBlockingQueue<SpectatorFrame>(capacity);
+        this.needs_keyframe = true; // a new spectator knows nothing about the board
+        this.dropped = 0;
+    }
+
+    /**
+     * Delivers a frame to the spectator. Never blocks the publisher.
+     * @param delta the delta frame of the turn
+     * @param keyframe the keyframe of the turn (may be null if no one needed it)
+     * @return false if the spectator was too slow and its queued frames were dropped
+     */
+    boolean deliver( SpectatorFrame delta, SpectatorFrame keyframe ){
+        if( needs_keyframe ){
+            if( keyframe == null ) // subscribed while publishing, it gets the keyframe of the next turn
+                return true;
+
+            if( queue.offer(keyframe) ){
+                needs_keyframe = false;
+                return true;
+            }
+        }else if( queue.offer(delta) ){
+            return true;
+        }
+
+        // Slow consumer, coalesce everything waiting into the next keyframe
+        dropped = dropped + queue.size() + 1;
+        queue.clear();
+        needs_keyframe = true;
+        return false;
+    }
+
+    /**
+     * @return if the spectator is waiting for a keyframe
+     */
+    boolean needsKeyframe() {
+        return needs_keyframe;
+    }
+
+    /**
+     * Makes the spectator wait for a keyframe before receiving any more deltas.
+     */
+    void requestKeyframe() {
+        needs_keyframe = true;
+    }
+
+    /**
+     * Takes the next frame without waiting.
+     * @return the next frame or null if there is none
+     */
+    public SpectatorFrame poll(){
+        return queue.poll();
+    }
+
+    /**
+     * Takes the next frame, waiting up to the timeout.
+     * @param timeout how long to wait
+     * @param unit the unit of the timeout
+     * @return the next frame or null if the timeout passed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public SpectatorFrame poll( long timeout, TimeUnit unit ) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * @return the number of frames waiting for the consumer
+     */
+    public int getPending(){
+        return queue.size();
+    }
+
+    /**
+     * @return the number of frames that were dropped because the consumer was too slow
+     */
+    public long getDropped(){
+        return dropped;
+    }
+}
@@ -0,0 +1,108 @@
+package game;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import players.Player;
+
+/**
+ * ADT - SpectatorBroadcaster class.
+ * Fans out board changes of a game to its spectators.
+ * Every turn the board delta is encoded ONCE into an immutable frame and that same frame is handed to every spectator.
+ * A keyframe (whole board) is only encoded on turns where at least one spectator needs it.
+ * A Game HAS-A SpectatorBroadcaster.
+ * @see {@link Spectator}
+ * @see {@link BoardDelta}
+ * @author paulo
+ */
+public class SpectatorBroadcaster {
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+    private final int game_id;
+    private final CopyOnWriteArrayList<Spectator> spectators;
+    private long sequence;
+
+    /**
+     * Constructor. Creates a broadcaster with no spectators.
+     * @param game_id the id of the game being broadcast
+     */
+    public SpectatorBroadcaster( int game_id ){
+        this.game_id = game_id;
+        this.spectators = new CopyOnWriteArrayList<Spectator>();
+        this.sequence = 0;
+    }
+
+    /**
+     * Subscribes a new spectator with the default queue capacity.
+     * @return the spectator
+     */
+    public Spectator subscribe(){
+        return subscribe(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Subscribes a new spectator.
+     * @param capacity the max number of frames queued for the spectator before it is considered slow
+     * @return the spectator
+     */
+    public Spectator subscribe( int capacity ){
+        Spectator spec = new Spectator(capacity);
+        spectators.add(spec);
+        return spec;
+    }
+
+    /**
+     * Removes a spectator from the broadcast.
+     * @param spec the spectator to remove
+     */
+    public void unsubscribe( Spectator spec ){
+        spectators.remove(spec);
+    }
+
+    /**
+     * @return the number of spectators subscribed
+     */
+    public int getSpectatorCount(){
+        return spectators.size();
+    }
+
+    /**
+     * Makes every spectator wait for a keyframe. Used when the board is replaced, for example on a new round.
+     */
+    void resync(){
+        for( Spectator spec : spectators )
+            spec.requestKeyframe();
+    }
+
+    /**
+     * Encodes the changes of the turn and pushes them to every spectator.
+     * The delta of the board is cleared afterwards.
+     * @param board the board of the game
+     * @param players the players part of the game
+     * @param turn the turn that just ended
+     * @return the number of spectators that were too slow and got their updates coalesced
+     */
+    int publishTurn( Board board, Player[] players, int turn ){
+        BoardDelta delta = board.getDelta();
+        if( spectators.isEmpty() ){
+            delta.clear();
+            return 0;
+        }
+
+        sequence++;
+        SpectatorFrame dframe = new SpectatorFrame(SpectatorFrame.DELTA, game_id, sequence, turn, delta.encode());
+        delta.clear();
+
+        SpectatorFrame kframe = null;
+        for( Spectator spec : spectators ){
+            if( spec.needsKeyframe() ){
+                kframe = new SpectatorFrame(SpectatorFrame.KEYFRAME, game_id, sequence, turn, BoardDelta.encodeKeyframe(board, players));
+                break;
+            }
+        }
+
+        int slow = 0;
+        for( Spectator spec : spectators ){
+            if( !spec.deliver(dframe, kframe) )
+                slow++;
+        }
+        return slow;
+    }
+}
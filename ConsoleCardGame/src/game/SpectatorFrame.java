@@ -0,0 +1,87 @@
+package game;
+import java.nio.ByteBuffer;
+
+/**
+ * ADT - SpectatorFrame class.
+ * Immutable, already encoded update of a game. The same instance is handed to every spectator,
+ * so the board is only ever serialized once per turn no matter how many are watching.
+ * @see {@link SpectatorBroadcaster}
+ * @see {@link BoardDelta}
+ * @author paulo
+ */
+public final class SpectatorFrame {
+    // Frame types
+    public static final byte DELTA = 0;
+    public static final byte KEYFRAME = 1;
+
+    private final byte type;
+    private final int game_id;
+    private final long sequence;
+    private final int turn;
+    private final byte[] payload;
+
+    /**
+     * Constructor. Creates a new frame.
+     * @param type DELTA or KEYFRAME
+     * @param game_id the id of the game the frame belongs to
+     * @param sequence the sequence number of the frame, shared by a delta and the keyframe of the same turn
+     * @param turn the turn of the game the frame was made on
+     * @param payload the encoded data, must not be modified after
+     */
+    SpectatorFrame( byte type, int game_id, long sequence, int turn, byte[] payload ){
+        this.type = type;
+        this.game_id = game_id;
+        this.sequence = sequence;
+        this.turn = turn;
+        this.payload = payload;
+    }
+
+    /**
+     * @return the type of the frame, DELTA or KEYFRAME
+     */
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * @return if this frame holds the whole board instead of changes
+     */
+    public boolean isKeyframe() {
+        return type == KEYFRAME;
+    }
+
+    /**
+     * @return the id of the game the frame belongs to
+     */
+    public int getGameId() {
+        return game_id;
+    }
+
+    /**
+     * @return the sequence number of the frame
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the turn of the game the frame was made on
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * @return the size of the encoded data in bytes
+     */
+    public int getSize() {
+        return payload.length;
+    }
+
+    /**
+     * @return a read only view of the encoded data (no copy is made)
+     */
+    public ByteBuffer getPayload() {
+        return ByteBuffer.wrap(payload).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,244 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import cards.Attribute;
+import cards.Card;
+import players.Player;
+
+/**
+ * ADT - Zobrist class.
+ * Incremental 64 bit hash of the state of a game, used as a key for transposition tables.
+ * Every card contributes a single key built from its owner, definition, location (deck, hand, board or graveyard),
+ * slot in that location, power and resiliance. Queued timed attributes and the player to move contribute a key each.
+ * The containers (Deck, Hand, Board, Graveyard) and Attribute.activate keep the hash up to date with O(1) XORs,
+ * a full recompute is only used as a debug check.
+ * Being the one place every change of a card goes through, it can also track the cards changed since it was last
+ * asked, which is what the game history stores a new version of (see {@link GameState}).
+ * Keys are not stored in tables, they are mixed on the fly from the features (SplitMix64 finalizer).
+ * A Game HAS-A Zobrist.
+ * @see {@link Game}
+ * @author paulo
+ */
+public final class Zobrist {
+    // Card locations
+    public static final int NONE = 0;
+    public static final int DECK = 1;
+    public static final int HAND = 2;
+    public static final int BOARD = 3;
+    public static final int GRAVEYARD = 4;
+
+    // Enable with -Dcardgame.zobrist.debug=true to check the hash against a full recompute every turn
+    public static final boolean DEBUG = Boolean.getBoolean("cardgame.zobrist.debug");
+
+    private static final long TIMED_SALT = 0x5DEECE66DL;
+    private static final long TURN_SALT = 0x2545F4914F6CDD1DL;
+
+    private long hash;
+    private int to_move;
+    private ArrayList<Card> touched; // cards changed since the last drain, null when not tracking
+    private boolean timed_touched;   // timed attributes queued or deployed since the last drain
+
+    /**
+     * Constructor. Creates the hash of an empty state.
+     */
+    public Zobrist(){
+        reset();
+    }
+
+    /**
+     * Resets the hash to the empty state. Used when a new round starts.
+     */
+    public void reset(){
+        hash = 0;
+        to_move = -1;
+    }
+
+    /**
+     * @return the current hash
+     */
+    public long get(){
+        return hash;
+    }
+
+    /**
+     * Places a card on a location, removing the key of its previous location if it had one.
+     * @param card the card
+     * @param location the new location of the card
+     * @param slot the slot of the card on the new location
+     */
+    public void place( Card card, int location, int slot ){
+        if( card.getHashLocation() != NONE )
+            hash ^= card.getHashKey();
+        long key = cardKey(card, location, slot);
+        hash ^= key;
+        card.setHashState(key, location, slot);
+        if( touched != null )
+            touched.add(card);
+    }
+
+    /**
+     * Removes the key of a card, the card is now nowhere (for example in between deck and hand).
+     * @param card the card
+     */
+    public void remove( Card card ){
+        if( card.getHashLocation() == NONE )
+            return;
+        hash ^= card.getHashKey();
+        card.setHashState(0, NONE, -1);
+        if( touched != null )
+            touched.add(card);
+    }
+
+    /**
+     * Updates the key of a card after its power or resiliance changed.
+     * @param card the card
+     */
+    public void rehash( Card card ){
+        if( card.getHashLocation() == NONE )
+            return;
+        place(card, card.getHashLocation(), card.getHashSlot());
+    }
+
+    /**
+     * Toggles the key of a timed attribute. Called once when it is queued and once when it deploys.
+     * @param card the card the attribute belongs to
+     * @param attribute the timed attribute
+     * @param turn the turn the attribute deploys on
+     * @param target the targeted player
+     */
+    public void toggleTimed( Card card, Attribute attribute, int turn, Player target ){
+        hash ^= timedKey(card, attribute, turn, target);
+        timed_touched = true;
+    }
+
+    /**
+     * Starts or stops tracking the cards that change. Anything tracked before is forgotten.
+     * @param on track the changes?
+     */
+    public void setTracking( boolean on ){
+        touched = on ? new ArrayList<Card>() : null;
+        timed_touched = false;
+    }
+
+    /**
+     * @return if the cards that change are tracked
+     */
+    public boolean isTracking(){
+        return touched != null;
+    }
+
+    /**
+     * Moves the cards changed since the last drain to a collection. A card changed several times is
+     * added as many times.
+     * @param into the collection the cards are added to
+     */
+    public void drainTouched( Collection<? super Card> into ){
+        if( touched == null )
+            return;
+        into.addAll(touched);
+        touched.clear();
+    }
+
+    /**
+     * @return if a timed attribute was queued or deployed since the last call
+     */
+    public boolean drainTimedTouched(){
+        boolean t = timed_touched;
+        timed_touched = false;
+        return t;
+    }
+
+    /**
+     * Sets the player to move.
+     * @param player_id the id of the player to move
+     */
+    public void setToMove( int player_id ){
+        if( to_move == player_id )
+            return;
+        if( to_move >= 0 )
+            hash ^= turnKey(to_move);
+        to_move = player_id;
+        hash ^= turnKey(player_id);
+    }
+
+    /**
+     * @return the id of the player to move, -1 if none
+     */
+    public int getToMove(){
+        return to_move;
+    }
+
+    /**
+     * Computes the key of a card on a location.
+     * @param card the card
+     * @param location the location of the card
+     * @param slot the slot of the card on the location
+     * @return the key
+     */
+    public static long cardKey( Card card, int location, int slot ){
+        int owner = card.getOwner() == null ? -1 : card.getOwner().getId();
+        long h = mix(((long)owner << 32) ^ card.getName().hashCode());
+        h = mix(h ^ ((long)location << 32 | (slot & 0xFFFFFFFFL)));
+        h = mix(h ^ ((long)card.getPower() << 32 | (card.getResiliance() & 0xFFFFFFFFL)));
+        return h;
+    }
+
+    /**
+     * Computes the key of a queued timed attribute.
+     * @param card the card the attribute belongs to
+     * @param attribute the timed attribute
+     * @param turn the turn the attribute deploys on
+     * @param target the targeted player
+     * @return the key
+     */
+    public static long timedKey( Card card, Attribute attribute, int turn, Player target ){
+        int owner = card.getOwner() == null ? -1 : card.getOwner().getId();
+        long h = mix(TIMED_SALT ^ ((long)owner << 32) ^ card.getName().hashCode());
+        h = mix(h ^ ((long)card.getAttributeIndex(attribute) << 48) ^ ((long)target.getId() << 32) ^ turn);
+        return h;
+    }
+
+    /**
+     * Computes the key of the player to move.
+     * @param player_id the id of the player
+     * @return the key
+     */
+    public static long turnKey( int player_id ){
+        return mix(TURN_SALT + player_id);
+    }
+
+    /**
+     * Mixes two values into a key. Used to hash states that are not made of cards, like search models.
+     * @param a the first value
+     * @param b the second value
+     * @return the key
+     */
+    public static long mixKey( long a, long b ){
+        return mix(mix(a) ^ b);
+    }
+
+    /**
+     * Gets the hash a card is tracked by, through the game of its owner.
+     * @param card the card
+     * @return the hash or null if the card is not part of a game yet
+     */
+    public static Zobrist of( Card card ){
+        Player owner = card.getOwner();
+        if( owner == null || owner.getGame() == null )
+            return null;
+        return owner.getGame().getStateHash();
+    }
+
+    /**
+     * SplitMix64 finalizer. Spreads the bits of a value so every input bit affects every output bit.
+     * @param z the value
+     * @return the mixed value
+     */
+    private static long mix( long z ){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
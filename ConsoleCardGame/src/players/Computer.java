@@ -20,6 +20,7 @@ import utility.Util;
 public class Computer extends Player {
     // instance constant
     private final ComputerType type;
+    private SearchEngine engine; // created on first use by the search types
     
     /**
      * Constructor
@@ -41,19 +42,57 @@ public class Computer extends Player {
     
     /**
      * Process the logic involved with the computer's turn play.
-     * The reason this method was not split into 3 subclass is because of lack of functionality.
-     * The classes would only have 1 method the overriding one.
+     * The move is decided within the move budget of the computer's type.
      * @param in The scanner used by the game for input.
      * @param players The players part of the game.
      * @param board The board that the game has.
+     * @see {@link ComputerType#getMoveBudgetMillis()}
      */
     @Override
     public PlayData play(Scanner in, Player[] players, Board board) {
+        return play(players, board, System.nanoTime() + type.getMoveBudgetMillis() * 1000000L);
+    }
+    
+    /**
+     * Process the logic involved with the computer's turn play, with a hard deadline.
+     * Searching types keep improving their move until the deadline and then play the best found so far.
+     * The reason this method was not split into 3 subclass is because of lack of functionality.
+     * The classes would only have 1 method the overriding one.
+     * @param players The players part of the game.
+     * @param board The board that the game has.
+     * @param deadline the System.nanoTime() by which the move must be decided
+     * @return the play data of the move
+     */
+    public PlayData play(Player[] players, Board board, long deadline) {
+        long start = System.nanoTime();
+        boolean deadline_hit = false;
+        long work = 0;
         Card card_played = null;
         Attribute at_played = null;
         Player targeted_ply = null;
         int[] targetids = null;
-        switch ( type ) {
+        
+        // searching types search first, and play as the logical computer if the state is too large to search
+        ComputerType kind = type;
+        SearchState state = null;
+        SearchEngine.Move move = null;
+        if( type == ComputerType.SEARCH || type == ComputerType.PARALLEL_SEARCH ){
+            if( SearchState.canModel(players) ){
+                if( engine == null )
+                    engine = new SearchEngine(type == ComputerType.PARALLEL_SEARCH);
+                state = SearchState.of(this, players, board);
+                move = engine.search(state, deadline);
+                deadline_hit = engine.wasDeadlineHit();
+                work = engine.getLastNodes();
+                Util.printDebug("%s searched %d nodes to depth %d in %.1f ms (%.0f nodes/s, table hit rate %.2f)", getName(), engine.getLastNodes(), engine.getLastDepth(), engine.getLastMillis(), engine.getLastNodesPerSecond(), engine.getTableHitRate());
+            }
+            if( move == null ){
+                Util.printDebug("%s can not search this state, it plays as a logical computer", getName());
+                kind = ComputerType.LOGICAL;
+            }
+        }
+        
+        switch ( kind ) {
             case LOGICAL:
                 int cindex0 = getHand().getFirstCardIndexFromHand();
                 card_played = getHand().getCardFromHand(cindex0);
@@ -63,8 +102,8 @@ public class Computer extends Player {
                 at_played = card_played.getAttributes()[1];
                 Util.print("%s has selected the attribute %s for the card %s!", getName(), at_played.getName(), card_played.getName());
                 
-                // always a enemy player (very basic but works)
-                targeted_ply = (players[0] == this) ? players[1] : players[0];
+                // always the enemy player with the most power on board, read from the board's power index
+                targeted_ply = board.getStrongestOpponent(this);
                 Util.print("%s has targeted the player %s's board!", getName(), targeted_ply.getName());
                 
                 // remove card from hand - always first card, dumb computer.
@@ -86,15 +125,15 @@ public class Computer extends Player {
                 }
                 break;
             case RANDOM:
-                Random rn = new Random();
+                Random rn = getGame().getRandom();
                 int nhand = getHand().getCardsInHand();
                 
-                // deal with the case there is only 1 card in hand but can be in either index 1 or 0
+                // pick any of the cards in hand, wherever its slot is
                 int cindex = -1;
                 if ( nhand < 2 ){
                     cindex = getHand().getFirstCardIndexFromHand();
                 } else {
-                    cindex = rn.nextInt(nhand); 
+                    cindex = getHand().getCardIndex(rn.nextInt(nhand)); 
                 }
                 
                 card_played = getHand().getCardFromHand(cindex);
@@ -153,9 +192,30 @@ public class Computer extends Player {
                     }
                 }
                 break;
+            case SEARCH:
+            case PARALLEL_SEARCH:
+                int cindex2 = state.root_hand_slots[move.hand_index];
+                card_played = getHand().getCardFromHand(cindex2);
+                Util.print("%s has selected the card %s to play!", getName(), card_played.getName());
+                
+                at_played = card_played.getAttributes()[move.at];
+                Util.print("%s has selected the attribute %s for the card %s!", getName(), at_played.getName(), card_played.getName());
+                
+                targeted_ply = players[move.target_ply];
+                Util.print("%s has targeted the player %s's board!", getName(), targeted_ply.getName());
+                
+                playCard(cindex2);
+                
+                targetids = move.targets;
+                if( targetids.length == 0 )
+                    Util.print("There are no cards on %s's board! Placing your card on your board with base power!", targeted_ply.getName());
+                for( int tindex : targetids )
+                    Util.print("%s has selected the target index %d's on %s board!", getName(), tindex, targeted_ply.getName());
+                break;
             default:
                 throw new Error("Invalid ComputerType when trying to play with the computer. Method: Computer.play()");
         }
+        type.getStats().record(System.nanoTime() - start, deadline_hit, work);
         return new PlayData(this, card_played, at_played, targeted_ply, targetids);
     }
 }
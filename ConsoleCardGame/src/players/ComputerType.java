@@ -8,21 +8,29 @@ import utility.Util;
  * @author paulo
  */
 public enum ComputerType {
-    LOGICAL( "Logical", "This computer tries to play in a 'smart' way." ),
-    RANDOM( "Random", "This player will play randomly." ),
-    DUMB( "Dumb", "This player will play in a tunnel vision manner." );
+    LOGICAL( "Logical", "This computer tries to play in a 'smart' way.", 0 ),
+    RANDOM( "Random", "This player will play randomly.", 0 ),
+    DUMB( "Dumb", "This player will play in a tunnel vision manner.", 0 ),
+    SEARCH( "Search", "This computer looks ahead at the possible plays and draws to pick the best one.", 50 ),
+    PARALLEL_SEARCH( "Parallel_Search", "Same as Search, but looks ahead on every core of the machine.", 50 );
     
     private final String name;
     private final String description;
+    private final DecisionStats stats;
+    private volatile long budget_millis;
     
     /**
      * Constructor for the enum
      * @param name the name of the enum
      * @param description the description of the enum
+     * @param budget_millis the default time a computer of this type may take to decide a move,
+     *        can be overridden with -Dcardgame.ai.budget.TYPE=millis
      */
-    ComputerType( String name, String description ){
+    ComputerType( String name, String description, long budget_millis ){
         this.name = name;
         this.description = description;
+        this.stats = new DecisionStats();
+        this.budget_millis = Long.getLong("cardgame.ai.budget." + name(), budget_millis);
     }
     
     /**
@@ -37,7 +45,11 @@ public enum ComputerType {
             case "RANDOM":
                 return RANDOM;
             case "DUMB":
-                return DUMB;   
+                return DUMB;
+            case "SEARCH":
+                return SEARCH;
+            case "PARALLEL_SEARCH":
+                return PARALLEL_SEARCH;
             default:
                 throw new Error("Invalid conversion from string " + str + " to Difficulty enum!");
         }
@@ -57,6 +69,51 @@ public enum ComputerType {
         return name;
     }
     
+    /**
+     * @return the time a computer of this type may take to decide a move, in milliseconds
+     */
+    public long getMoveBudgetMillis() {
+        return budget_millis;
+    }
+    
+    /**
+     * Sets the time a computer of this type may take to decide a move.
+     * Game hosts running many computers at once can lower it to keep turns short.
+     * @param budget_millis the budget in milliseconds
+     */
+    public void setMoveBudgetMillis( long budget_millis ) {
+        if( budget_millis < 0 )
+            throw new IllegalArgumentException("The move budget can't be negative!");
+        this.budget_millis = budget_millis;
+    }
+    
+    /**
+     * @return the most players a table with a computer of this type can seat. The search types hold the
+     *         targeted player of their moves in a fixed number of bits, the others play at any table.
+     * @see {@link MoveGenerator#MAX_PLAYERS}
+     */
+    public int getMaxPlayers() {
+        return this == SEARCH || this == PARALLEL_SEARCH ? MoveGenerator.MAX_PLAYERS : Integer.MAX_VALUE;
+    }
+    
+    /**
+     * @return the statistics of the moves decided by computers of this type
+     */
+    public DecisionStats getStats() {
+        return stats;
+    }
+    
+    /**
+     * Prints the decision statistics of every Computer type that decided a move.
+     */
+    public static void printStats() {
+        Util.printSeparator("Computer Decisions");
+        for ( ComputerType typ : ComputerType.values() ) {
+            if ( typ.stats.getDecisions() > 0 )
+                typ.stats.print(typ.getName());
+        }
+    }
+    
     /**
      * Prints the description for the Computer types.
      */
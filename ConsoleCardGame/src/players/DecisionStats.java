@@ -0,0 +1,148 @@
+package players;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import utility.Util;
+
+/**
+ * ADT - DecisionStats class.
+ * Thread safe statistics of the moves decided by computers of one type:
+ * how many, how often the deadline was hit, how much work was done and how long they took.
+ * Latencies are kept in a log-linear histogram (4 buckets per power of 2 of microseconds),
+ * so percentiles cost fixed memory no matter how many moves are recorded.
+ * A ComputerType HAS-A DecisionStats.
+ * @see {@link ComputerType}
+ * @author paulo
+ */
+public final class DecisionStats {
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 40 * SUB_BUCKETS;
+
+    private final LongAdder decisions;
+    private final LongAdder deadline_hits;
+    private final LongAdder nodes;
+    private final LongAdder total_nanos;
+    private final AtomicLong max_nanos;
+    private final AtomicLongArray histogram;
+
+    /**
+     * Constructor. Creates empty statistics.
+     */
+    DecisionStats(){
+        decisions = new LongAdder();
+        deadline_hits = new LongAdder();
+        nodes = new LongAdder();
+        total_nanos = new LongAdder();
+        max_nanos = new AtomicLong();
+        histogram = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Records a decided move.
+     * @param nanos the time it took to decide
+     * @param deadline_hit if the search was stopped by the deadline
+     * @param work the nodes searched (0 for computers that do not search)
+     */
+    void record( long nanos, boolean deadline_hit, long work ){
+        decisions.increment();
+        if( deadline_hit )
+            deadline_hits.increment();
+        nodes.add(work);
+        total_nanos.add(nanos);
+        long max = max_nanos.get();
+        while( nanos > max && !max_nanos.compareAndSet(max, nanos) )
+            max = max_nanos.get();
+        histogram.incrementAndGet(bucketOf(nanos / 1000));
+    }
+
+    /**
+     * @param micros a latency in microseconds
+     * @return the bucket of the latency
+     */
+    private static int bucketOf( long micros ){
+        if( micros < SUB_BUCKETS )
+            return (int) micros;
+        int log = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int)(micros >>> (log - 2)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, (log - 1) * SUB_BUCKETS + sub);
+    }
+
+    /**
+     * @param bucket a bucket
+     * @return the highest latency in microseconds that falls in the bucket
+     */
+    private static long upperBoundOf( int bucket ){
+        if( bucket < SUB_BUCKETS )
+            return bucket;
+        int log = bucket / SUB_BUCKETS + 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long)(SUB_BUCKETS + sub + 1) << (log - 2)) - 1;
+    }
+
+    /**
+     * @return the number of moves decided
+     */
+    public long getDecisions(){
+        return decisions.sum();
+    }
+
+    /**
+     * @return the number of moves whose search was stopped by the deadline
+     */
+    public long getDeadlineHits(){
+        return deadline_hits.sum();
+    }
+
+    /**
+     * @return the number of nodes searched over every move
+     */
+    public long getNodes(){
+        return nodes.sum();
+    }
+
+    /**
+     * @return the average time to decide a move, in milliseconds
+     */
+    public double getAverageMillis(){
+        long n = decisions.sum();
+        return n == 0 ? 0 : total_nanos.sum() / 1e6 / n;
+    }
+
+    /**
+     * @return the longest time to decide a move, in milliseconds
+     */
+    public double getMaxMillis(){
+        return max_nanos.get() / 1e6;
+    }
+
+    /**
+     * Gets a percentile of the time to decide a move. Precise to a quarter of a power of 2.
+     * @param percentile the percentile, between 0 and 1
+     * @return the latency in milliseconds
+     */
+    public double getPercentileMillis( double percentile ){
+        long n = decisions.sum();
+        if( n == 0 )
+            return 0;
+        long rank = (long) Math.ceil(percentile * n);
+        long seen = 0;
+        for( int b = 0; b < BUCKETS; b++ ){
+            seen += histogram.get(b);
+            if( seen >= rank )
+                return Math.min(upperBoundOf(b) / 1e3, getMaxMillis());
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Prints the statistics.
+     * @param name the name of the computer type the statistics belong to
+     */
+    public void print( String name ){
+        long n = getDecisions();
+        Util.print("%s: %d moves, deadline hit %d times (%.1f%%), %d nodes, latency avg %.2f ms p50 %.2f ms p99 %.2f ms max %.2f ms",
+                name, n, getDeadlineHits(), n == 0 ? 0.0 : 100.0 * getDeadlineHits() / n, getNodes(),
+                getAverageMillis(), getPercentileMillis(0.5), getPercentileMillis(0.99), getMaxMillis());
+    }
+}
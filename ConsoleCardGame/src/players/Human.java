@@ -24,11 +24,14 @@ public class Human extends Player {
     @Override
     public PlayData play(Scanner in, Player[] players, Board board) {
         // Pass turn?
-        Util.print("%s, do you wish to pass this turn? (type 'pass' to pass anything else to ignore)", getName());
-        if( in.nextLine().equalsIgnoreCase("pass") ){
+        Util.print("%s, do you wish to pass this turn? (type 'pass' to pass, 'undo' to take back your last move, anything else to ignore)", getName());
+        String answer = in.nextLine();
+        if( answer.equalsIgnoreCase("pass") ){
             Util.print("Player %s has passed his turn - total power: %d\nSkipping turn!", getName(), board.getTotalPlayerPower(this));
             setPassed(true);
             return null;
+        }else if( answer.equalsIgnoreCase("undo") && getGame().requestTakeBack() ){
+            return null; // the game puts the round back
         }else{
             Util.print("Player %s has chosen to continue his turn!", getName());
         }
@@ -50,8 +53,9 @@ public class Human extends Player {
         Card card_played = null;
         Attribute at_played = null;
         while( true ){
-            // Prompt card select 
-            cindex = (Integer) Util.promptInputValidationByRange("[PROMPT MOVE]["+getName()+"][ID: "+getId()+"] Please select a card by index to play!", in, 0, getHand().getCardsInHand()-1);
+            // Prompt card select (by its index as printed, the hand may have free slots before it)
+            int cposition = (Integer) Util.promptInputValidationByRange("[PROMPT MOVE]["+getName()+"][ID: "+getId()+"] Please select a card by index to play!", in, 0, getHand().getCardsInHand()-1);
+            cindex = getHand().getCardIndex(cposition);
 
             card_played = getHand().getCardFromHand(cindex);
             card_played.printAttributes();
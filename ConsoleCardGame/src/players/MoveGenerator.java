@@ -0,0 +1,223 @@
+package players;
+
+/**
+ * A data structure. Generates the legal moves of a SearchState into a reusable buffer of encoded longs.
+ * Moves of nested searches are stacked on the same buffer: a node generates its moves on top of its
+ * parent's and truncates back when done, so after the buffer has grown to the deepest line searched
+ * no move is ever allocated again.
+ * A move packs, from the lowest bit: the hand index (16 bits), the attribute index (2 bits),
+ * the targeted player (16 bits) and the rank of its targets (20 bits). States with more players or a larger
+ * modelled hand than the fields hold are not searched (see {@link SearchState#canModel}). Targets are non decreasing
+ * sequences of board indices (the same targets in another order are the same play), ranked in
+ * lexicographic order, so they can be rebuilt from the rank and the size of the targeted board.
+ * @see {@link SearchState}
+ * @see {@link SearchEngine}
+ * @author paulo
+ */
+final class MoveGenerator {
+    private static final int HAND_BITS = 16;
+    private static final int AT_BITS = 2;
+    private static final int PLY_BITS = 16;
+    private static final int RANK_BITS = 20;
+    private static final int AT_SHIFT = HAND_BITS;
+    private static final int PLY_SHIFT = AT_SHIFT + AT_BITS;
+    private static final int RANK_SHIFT = PLY_SHIFT + PLY_BITS;
+    static final int MAX_HAND = 1 << HAND_BITS;     // most cards a modelled hand can hold
+    static final int MAX_ATTRIBUTES = 1 << AT_BITS; // most attributes a card can have
+    static final int MAX_PLAYERS = 1 << PLY_BITS;   // most players a state can have
+    static final int MAX_RANK = 1 << RANK_BITS;     // most target sets of one attribute on one board
+
+    // multichoose[n][k] = number of non decreasing sequences of length k over n values, saturated at MAX_RANK.
+    // Larger n and k are worked out when needed.
+    private static final int MAX_N = 64;
+    private static final int MAX_K = 32;
+    private static final int[][] MULTICHOOSE = new int[MAX_N + 1][MAX_K + 1];
+    static {
+        for( int n = 0; n <= MAX_N; n++ ){
+            for( int k = 0; k <= MAX_K; k++ ){
+                if( k == 0 )
+                    MULTICHOOSE[n][k] = 1;
+                else if( n == 0 )
+                    MULTICHOOSE[n][k] = 0;
+                else // sequences starting with the first value + sequences not using it
+                    MULTICHOOSE[n][k] = (int) Math.min(MAX_RANK, (long) MULTICHOOSE[n][k-1] + MULTICHOOSE[n-1][k]);
+            }
+        }
+    }
+
+    private long[] buffer;
+    private int size;
+
+    /**
+     * Constructor. Creates an empty generator.
+     */
+    MoveGenerator(){
+        buffer = new long[1024];
+    }
+
+    /**
+     * Appends every legal move of the player to move to the buffer.
+     * Identical cards in hand are only tried once. If the targeted board is empty the attribute
+     * does nothing, so only one attribute is tried. An attribute with MAX_RANK target sets or more on a
+     * board is not tried on it (no search could visit that many moves of one node anyway, and their ranks
+     * would not fit the encoding).
+     * @param s the state
+     * @return the end of the moves generated, they are found from the size before the call up to it
+     */
+    int generate( SearchState s ){
+        int p = s.to_move;
+        int[] hand = s.hand[p];
+        for( int h = 0; h < s.hand_count[p]; h++ ){
+            boolean seen = false;
+            for( int h2 = 0; h2 < h && !seen; h2++ )
+                seen = hand[h2] == hand[h];
+            if( seen )
+                continue;
+
+            int def = hand[h];
+            for( int tp = 0; tp < s.n_players; tp++ ){
+                int b = s.board_count[tp];
+                if( b == 0 ){
+                    push(encode(h, 0, tp, 0));
+                    continue;
+                }
+                for( int at = 0; at < s.defs.at_targets[def].length; at++ ){
+                    int sets = multichoose(b, s.defs.at_targets[def][at]);
+                    if( sets >= MAX_RANK )
+                        continue;
+                    for( int rank = 0; rank < sets; rank++ )
+                        push(encode(h, at, tp, rank));
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Appends a move, growing the buffer if needed.
+     * @param move the encoded move
+     */
+    private void push( long move ){
+        if( size == buffer.length ){
+            long[] grown = new long[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, size);
+            buffer = grown;
+        }
+        buffer[size++] = move;
+    }
+
+    /**
+     * @param i an index of the buffer
+     * @return the move at the index
+     */
+    long get( int i ){
+        return buffer[i];
+    }
+
+    /**
+     * @return the number of moves on the buffer
+     */
+    int size(){
+        return size;
+    }
+
+    /**
+     * Drops the moves from an index on, used by a node when it is done with its moves.
+     * @param size the new size
+     */
+    void truncate( int size ){
+        this.size = size;
+    }
+
+    /**
+     * Copies a range of the buffer out, for moves that must outlive the node that generated them.
+     * @param from the first index
+     * @param to the end index
+     * @return the moves
+     */
+    long[] copy( int from, int to ){
+        long[] moves = new long[to - from];
+        System.arraycopy(buffer, from, moves, 0, moves.length);
+        return moves;
+    }
+
+    /**
+     * Encodes a move.
+     * @param hand_index the index in the modelled hand of the card played
+     * @param at the attribute index
+     * @param target_ply the targeted player
+     * @param rank the rank of the targets
+     * @return the encoded move
+     */
+    static long encode( int hand_index, int at, int target_ply, int rank ){
+        return hand_index | ((long) at << AT_SHIFT) | ((long) target_ply << PLY_SHIFT) | ((long) rank << RANK_SHIFT);
+    }
+
+    /**
+     * @param move an encoded move
+     * @return the index in the modelled hand of the card played
+     */
+    static int handIndex( long move ){
+        return (int) (move & (MAX_HAND - 1));
+    }
+
+    /**
+     * @param move an encoded move
+     * @return the attribute index
+     */
+    static int attribute( long move ){
+        return (int) ((move >>> AT_SHIFT) & (MAX_ATTRIBUTES - 1));
+    }
+
+    /**
+     * @param move an encoded move
+     * @return the targeted player
+     */
+    static int targetPlayer( long move ){
+        return (int) ((move >>> PLY_SHIFT) & (MAX_PLAYERS - 1));
+    }
+
+    /**
+     * Decodes the targets of a move, on the state it was generated for.
+     * @param move an encoded move
+     * @param s the state
+     * @param out filled with the targeted board indices
+     * @return the number of targets, 0 if the targeted board is empty
+     */
+    static int targets( long move, SearchState s, int[] out ){
+        int b = s.board_count[targetPlayer(move)];
+        if( b == 0 )
+            return 0;
+        int k = s.defs.at_targets[s.hand[s.to_move][handIndex(move)]][attribute(move)];
+        int rank = (int) (move >>> RANK_SHIFT);
+        int min = 0;
+        for( int pos = 0; pos < k; pos++ ){
+            // skip the values whose sequences all rank below
+            int left = k - pos - 1;
+            while( rank >= multichoose(b - min, left) ){
+                rank -= multichoose(b - min, left);
+                min++;
+            }
+            out[pos] = min;
+        }
+        return k;
+    }
+
+    /**
+     * @param n the number of values
+     * @param k the length of the sequences
+     * @return the number of non decreasing sequences of length k over n values, at most MAX_RANK
+     */
+    private static int multichoose( int n, int k ){
+        if( n <= MAX_N && k <= MAX_K )
+            return MULTICHOOSE[n][k];
+        // C(n-1+k, k) built up one factor at a time, every step is an exact binomial
+        long r = 1;
+        for( int i = 1; i <= k; i++ ){
+            r = r * (n - 1 + i) / i;
+            if( r >= MAX_RANK )
+                return MAX_RANK;
+        }
+        return (int) r;
+    }
+}
@@ -1,4 +1,5 @@
 package players;
+import java.util.EnumMap;
 import java.util.Scanner;
 
 import cards.Attribute;
@@ -22,6 +23,7 @@ public abstract class Player {
     private DeckFaction faction;
     private boolean passed;
     private Game game;
+    private final EnumMap<DeckFaction, Deck> decks; // every deck loaded, reused on later rounds
     
     /**
      * Constructor. Creates a new player for the game.
@@ -34,6 +36,7 @@ public abstract class Player {
         
         passed = false;
         rounds_won = 0;
+        decks = new EnumMap<DeckFaction, Deck>(DeckFaction.class);
     }
     
     /**
@@ -80,6 +83,39 @@ public abstract class Player {
         return deck;
     }
 
+    /**
+     * Sets the faction of the player and its deck for a new round.
+     * The deck of a faction is loaded from the presets the first time, on later rounds the same
+     * deck is refilled with the same cards instead. The deck still has to be shuffled.
+     * @param faction the faction of the deck
+     */
+    public void loadDeck( DeckFaction faction ){
+        this.faction = faction;
+        deck = decks.get(faction);
+        if( deck == null ){
+            deck = Deck.loadPresetDeck(faction);
+            deck.setOwner(this);
+            decks.put(faction, deck);
+        }else{
+            deck.refill();
+        }
+    }
+    
+    /**
+     * Sets a deck of the player's own for a new round, for games that are not played with the preset decks.
+     * The player becomes the owner of the deck, if it already was the deck is refilled so the same
+     * deck can be given every round. The deck still has to be shuffled.
+     * @param deck the deck
+     */
+    public void loadDeck( Deck deck ){
+        this.faction = null;
+        this.deck = deck;
+        if( deck.getOwner() == this )
+            deck.refill();
+        else
+            deck.setOwner(this);
+    }
+    
     /**
      * @return the Graveyard ADT of the player
      */
@@ -171,7 +207,10 @@ public abstract class Player {
         if (deck == null)
             throw new NullPointerException("This method cannot be called without first setting a deck to the player.");
         Util.print("Player %s started shuffling deck..", name);
-        deck.shuffle();
+        if (game != null)
+            deck.shuffle(game.getRandom());
+        else
+            deck.shuffle();
     }
     
     /**
@@ -231,12 +270,15 @@ public abstract class Player {
     }
     
     /**
-     * Resets state of the player object
+     * Resets state of the player object.
+     * The hand and graveyard are emptied in place and the decks kept, to be reused on the next round.
      */
     public void resetGameState() {
-        hand = null;
+        if( hand != null )
+            hand.clear();
+        if( graveyard != null )
+            graveyard.clear();
         deck = null;
-        graveyard = null;
         faction = null;
         passed = false;
         Util.printDebug("Player %s's game state was reset", name); 
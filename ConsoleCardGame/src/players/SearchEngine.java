@@ -0,0 +1,466 @@
+package players;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Search used by the SEARCH and PARALLEL_SEARCH computer types.
+ * Looks ahead on a SearchState with iterative deepening until its deadline, it can be stopped at any time
+ * and always answers with the best move of the deepest search done so far:
+ *  - the searching player maximizes, opponents minimize (with more than 2 players every opponent
+ *    is assumed to play against the searching player), with alpha-beta pruning;
+ *  - draws from the searching player's hidden deck are chance nodes, valued by their expected value (expectimax);
+ *  - decision nodes are cached in a fixed size transposition table kept between moves;
+ *  - each thread plays and undoes moves on its own copy of the root, with moves generated into
+ *    a reusable buffer, so nodes allocate nothing;
+ *  - in parallel mode the root moves are split over a fork-join pool, each thread with its own scratch table.
+ * @see {@link SearchState}
+ * @see {@link TranspositionTable}
+ * @author paulo
+ */
+final class SearchEngine {
+    // A fixed depth (-Dcardgame.search.depth=N) makes parallel searches reproducible as long as the depth fits the budget
+    private static final int MAX_DEPTH = Integer.getInteger("cardgame.search.depth", 32);
+    private static final int TABLE_BITS = 18;
+    private static final int WORKER_TABLE_BITS = 16;
+
+    // Shared by every parallel engine, created on first use
+    private static ForkJoinPool pool;
+
+    private final boolean parallel;
+    private final Worker main;
+    private final ThreadLocal<Worker> workers;
+
+    // current search, read by the workers
+    private long deadline;
+    private long search_id;
+    private volatile boolean aborted;
+    private volatile boolean cut_by_depth;
+    private final LongAdder worker_nodes;
+
+    // last search statistics
+    private int last_depth;
+    private boolean last_deadline_hit;
+    private long last_nodes;
+    private long last_nanos;
+
+    /**
+     * A move of the model: the card played, its attribute and targets.
+     * Only made for the move chosen, the search itself works on encoded moves.
+     * @author paulo
+     */
+    static final class Move {
+        final int hand_index;
+        final int at;
+        final int target_ply;
+        final int[] targets;
+
+        Move( int hand_index, int at, int target_ply, int[] targets ){
+            this.hand_index = hand_index;
+            this.at = at;
+            this.target_ply = target_ply;
+            this.targets = targets;
+        }
+
+        /**
+         * Decodes a move.
+         * @param move the encoded move
+         * @param s the state the move was generated for
+         * @return the move
+         */
+        static Move of( long move, SearchState s ){
+            int[] targets = new int[s.max_targets];
+            int n = MoveGenerator.targets(move, s, targets);
+            int[] exact = new int[n];
+            System.arraycopy(targets, 0, exact, 0, n);
+            return new Move(MoveGenerator.handIndex(move), MoveGenerator.attribute(move), MoveGenerator.targetPlayer(move), exact);
+        }
+    }
+
+    /**
+     * Thrown to unwind the search when the time budget runs out.
+     */
+    private static final class Timeout extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Timeout(){
+            super(null, null, false, false); // no stack trace, thrown often
+        }
+    }
+    private static final Timeout TIMEOUT = new Timeout();
+
+    /**
+     * Constructor. Creates an engine with an empty transposition table.
+     * @param parallel if true the root moves are searched in parallel on a fork-join pool
+     */
+    SearchEngine( boolean parallel ){
+        this.parallel = parallel;
+        this.main = new Worker(TABLE_BITS, false);
+        // each pool thread gets its own table and counters, nothing is shared while searching
+        this.workers = ThreadLocal.withInitial(() -> new Worker(WORKER_TABLE_BITS, true));
+        this.worker_nodes = new LongAdder();
+    }
+
+    /**
+     * @return the pool used by parallel engines, one thread per core
+     */
+    private static synchronized ForkJoinPool pool(){
+        if( pool == null )
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        return pool;
+    }
+
+    /**
+     * Searches for the best move of the searching player.
+     * @param root the state, with the searching player to move
+     * @param deadline the System.nanoTime() at which the search must stop
+     * @return the best move found, null if there is no move small enough to search
+     */
+    Move search( SearchState root, long deadline ){
+        long start = System.nanoTime();
+        this.deadline = deadline;
+        search_id++;
+        main.begin(search_id, root);
+        worker_nodes.reset();
+
+        long[] moves = generateMoves(root);
+        if( moves.length == 0 ){ // every target set was too large to try
+            last_depth = 0;
+            last_deadline_hit = false;
+            last_nodes = 0;
+            last_nanos = System.nanoTime() - start;
+            return null;
+        }
+        int best = 0;
+        int depth_done = 0;
+        boolean deadline_hit = false;
+        for( int depth = 1; depth <= MAX_DEPTH; depth++ ){
+            if( System.nanoTime() >= deadline ){
+                deadline_hit = true;
+                break;
+            }
+            cut_by_depth = false;
+            int iteration_best = parallel ? parallelIteration(root, moves, depth) : serialIteration(moves, depth);
+            if( iteration_best < 0 ){
+                deadline_hit = true;
+                break;
+            }
+            if( aborted ){
+                best = iteration_best; // partial, but at least as good as the previous best
+                deadline_hit = true;
+                break;
+            }
+
+            depth_done = depth;
+            long m = moves[iteration_best]; // search the best first on the next iteration
+            System.arraycopy(moves, 0, moves, 1, iteration_best);
+            moves[0] = m;
+            best = 0;
+            if( !cut_by_depth )
+                break; // the whole round was searched, deeper is the same
+        }
+
+        last_depth = depth_done;
+        last_deadline_hit = deadline_hit;
+        last_nodes = main.nodes + worker_nodes.sum();
+        last_nanos = System.nanoTime() - start;
+        return Move.of(moves[best], root);
+    }
+
+    /**
+     * Searches every root move one after the other, sharing alpha between them.
+     * @param moves the root moves, previous best first
+     * @param depth the depth of the iteration
+     * @return the index of the best move, -1 if the time ran out before the first move was searched
+     */
+    private int serialIteration( long[] moves, int depth ){
+        aborted = false;
+        int iteration_best = -1;
+        double alpha = Double.NEGATIVE_INFINITY;
+        try {
+            for( int i = 0; i < moves.length; i++ ){
+                double v = main.searchMove(moves[i], depth, alpha);
+                if( iteration_best < 0 || v > alpha ){
+                    alpha = v;
+                    iteration_best = i;
+                }
+            }
+        } catch (Timeout t) {
+            aborted = true; // the previous best is searched first, anything that beat it is at least as good
+        }
+        return iteration_best;
+    }
+
+    /**
+     * Searches the root moves in parallel. Every move is searched with a full window so its value does
+     * not depend on which moves were searched before it, then the best is picked by value and, on ties,
+     * by position in the move list. The chosen move does not depend on thread timing.
+     * An iteration that runs out of time is thrown away.
+     * @param root the root state
+     * @param moves the root moves, previous best first
+     * @param depth the depth of the iteration
+     * @return the index of the best move, -1 if the time ran out
+     */
+    private int parallelIteration( SearchState root, long[] moves, int depth ){
+        aborted = false;
+        double[] values = new double[moves.length];
+        pool().invoke(new RootTask(root, moves, depth, values, 0, moves.length));
+        if( aborted )
+            return -1;
+
+        int best = 0;
+        for( int i = 1; i < values.length; i++ )
+            if( values[i] > values[best] )
+                best = i;
+        return best;
+    }
+
+    /**
+     * Fork-join task searching a range of root moves. Ranges are split in halves so idle threads can steal them.
+     * @author paulo
+     */
+    private final class RootTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final SearchState root;
+        private final long[] moves;
+        private final int depth;
+        private final double[] values;
+        private final int from;
+        private final int to;
+
+        RootTask( SearchState root, long[] moves, int depth, double[] values, int from, int to ){
+            this.root = root;
+            this.moves = moves;
+            this.depth = depth;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if( to - from > 1 ){
+                int mid = (from + to) >>> 1;
+                invokeAll(new RootTask(root, moves, depth, values, from, mid), new RootTask(root, moves, depth, values, mid, to));
+                return;
+            }
+            if( aborted )
+                return;
+
+            Worker w = workers.get();
+            w.begin(search_id, root);
+            long before = w.nodes;
+            try {
+                values[from] = w.searchMove(moves[from], depth, Double.NEGATIVE_INFINITY);
+            } catch (Timeout t) {
+                aborted = true;
+            }
+            worker_nodes.add(w.nodes - before);
+        }
+    }
+
+    /**
+     * The scratch data of a thread searching: its own transposition table, counters,
+     * copy of the root state and move buffer.
+     * @author paulo
+     */
+    private final class Worker {
+        private final TranspositionTable table;
+        private final boolean same_depth_only;
+        private final MoveGenerator generator;
+        private SearchState state;
+        private long nodes;
+        private long search;
+
+        /**
+         * @param table_bits the worker table holds 2^table_bits entries
+         * @param same_depth_only if true, only table entries of the exact same depth are used, so values
+         *        do not depend on what the worker searched before (needed for deterministic parallel results)
+         */
+        Worker( int table_bits, boolean same_depth_only ){
+            this.table = new TranspositionTable(table_bits);
+            this.same_depth_only = same_depth_only;
+            this.generator = new MoveGenerator();
+        }
+
+        /**
+         * Prepares the worker for a search, once per search.
+         * A search cut by the deadline leaves the copy half played, it is only used again after a new copy.
+         * @param id the id of the search
+         * @param root the root state of the search
+         */
+        void begin( long id, SearchState root ){
+            if( search == id )
+                return;
+            search = id;
+            nodes = 0;
+            state = root.copy();
+            table.newSearch();
+        }
+
+        /**
+         * Searches a root move.
+         * @param move the encoded move
+         * @param depth the depth of the iteration
+         * @param alpha the best value already found at the root
+         * @return the value of the move
+         */
+        double searchMove( long move, int depth, double alpha ){
+            generator.truncate(0);
+            state.applyMove(move);
+            double v = search(depth-1, alpha, Double.POSITIVE_INFINITY);
+            state.undoMove();
+            return v;
+        }
+
+        /**
+         * Recursive search, on the state of the worker.
+         * @param depth the plies left to search
+         * @param alpha the best value the searching player is sure of
+         * @param beta the best value the opponents are sure of
+         * @return the value of the state
+         */
+        private double search( int depth, double alpha, double beta ){
+            SearchState s = state;
+            nodes++;
+            if( aborted || System.nanoTime() > deadline ) // nodes cost microseconds, checking the clock every node is cheap
+                throw TIMEOUT;
+
+            if( s.isOver() )
+                return s.evaluate();
+            if( depth == 0 ){
+                cut_by_depth = true;
+                return s.evaluate();
+            }
+
+            // chance node: the searching player draws from its hidden deck
+            if( s.needsDraw() ){
+                double expected = 0;
+                int[] pool = s.deck_pool[s.to_move];
+                int count = s.deck_count[s.to_move];
+                for( int def = 0; def < pool.length; def++ ){
+                    if( pool[def] == 0 )
+                        continue;
+                    double chance = (double) pool[def] / count;
+                    s.draw(def);
+                    expected += chance * search(depth, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+                    s.undoMove();
+                }
+                return expected;
+            }
+
+            long key = s.hash();
+            int best_index = -1;
+            int entry = table.probe(key);
+            if( entry >= 0 ){
+                best_index = table.getBestMove(entry);
+                int entry_depth = table.getDepth(entry);
+                if( same_depth_only ? entry_depth == depth : entry_depth >= depth ){
+                    double v = table.getValue(entry);
+                    byte flag = table.getFlag(entry);
+                    if( flag == TranspositionTable.EXACT )
+                        return v;
+                    if( flag == TranspositionTable.LOWER )
+                        alpha = Math.max(alpha, v);
+                    else
+                        beta = Math.min(beta, v);
+                    if( alpha >= beta )
+                        return v;
+                }
+            }
+
+            int from = generator.size();
+            int n_moves = generator.generate(s) - from;
+            boolean maximizing = s.to_move == s.root;
+            double alpha0 = alpha;
+            double beta0 = beta;
+            double best = maximizing ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            int best_found = -1;
+            for( int k = -1; k < n_moves; k++ ){
+                // tried first: best move of the table
+                int i = k < 0 ? best_index : k;
+                if( i < 0 || i >= n_moves || (k >= 0 && k == best_index) )
+                    continue;
+
+                s.applyMove(generator.get(from + i));
+                double v = search(depth-1, alpha, beta);
+                s.undoMove();
+                if( maximizing ? v > best : v < best ){
+                    best = v;
+                    best_found = i;
+                }
+                if( maximizing )
+                    alpha = Math.max(alpha, v);
+                else
+                    beta = Math.min(beta, v);
+                if( alpha >= beta )
+                    break;
+            }
+            generator.truncate(from);
+
+            byte flag;
+            if( best <= alpha0 )
+                flag = TranspositionTable.UPPER;
+            else if( best >= beta0 )
+                flag = TranspositionTable.LOWER;
+            else
+                flag = TranspositionTable.EXACT;
+            table.store(key, depth, best, flag, best_found);
+            return best;
+        }
+    }
+
+    /**
+     * Generates every legal move of the player to move at the root.
+     * @param s the state
+     * @return the encoded moves
+     * @see {@link MoveGenerator}
+     */
+    private long[] generateMoves( SearchState s ){
+        MoveGenerator generator = main.generator;
+        generator.truncate(0);
+        return generator.copy(0, generator.generate(s));
+    }
+
+    /**
+     * @return the depth fully searched by the last search
+     */
+    int getLastDepth(){
+        return last_depth;
+    }
+
+    /**
+     * @return if the last search was stopped by its deadline rather than by running out of things to search
+     */
+    boolean wasDeadlineHit(){
+        return last_deadline_hit;
+    }
+
+    /**
+     * @return the nodes visited by the last search
+     */
+    long getLastNodes(){
+        return last_nodes;
+    }
+
+    /**
+     * @return the time taken by the last search in milliseconds
+     */
+    double getLastMillis(){
+        return last_nanos / 1e6;
+    }
+
+    /**
+     * @return the nodes per second of the last search
+     */
+    double getLastNodesPerSecond(){
+        return last_nanos == 0 ? 0 : last_nodes * 1e9 / last_nanos;
+    }
+
+    /**
+     * @return the hit rate of the transposition table
+     */
+    double getTableHitRate(){
+        return main.table.getHitRate();
+    }
+}
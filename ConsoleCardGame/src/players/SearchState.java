@@ -0,0 +1,686 @@
+package players;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import cards.Attribute;
+import cards.AttributeType;
+import cards.Card;
+import cards.Hand;
+import game.Board;
+import game.Zobrist;
+
+/**
+ * ADT - SearchState class.
+ * A compact model of a round used by the search computer to look ahead.
+ * It follows the same rules as Game.logic, Board.playBoard and Attribute.activate, but holds
+ * only primitives so it can be copied and played on without printing or touching the real game.
+ * Moves are played in place and undone: every write is logged on a trail, so applyMove and
+ * undoMove allocate nothing once the trail has grown to the deepest line searched.
+ * What a player cannot see is modelled as such: the searching player's deck is a pool of cards
+ * drawn at random, and each opponent may play any card it has not shown yet (its hand and deck pool).
+ * @see {@link SearchEngine}
+ * @author paulo
+ */
+final class SearchState {
+    // Card definitions, shared by every copy of a state
+    final Defs defs;
+
+    // Cards on board, indexed by a card id given when the card is played
+    int[] power;
+    int[] resiliance;
+    int[] card_def;
+    int[] card_owner;
+    boolean[] alive;
+    int n_cards;
+
+    // Players
+    final int n_players;
+    final int root;
+    int[][] hand;          // card definitions in hand (for opponents every card not shown yet)
+    int[] hand_count;
+    int[][] deck_pool;     // count of each card definition left in deck (root player only)
+    int[] deck_count;
+    int[][] board;         // card ids on each board, in board order
+    int[] board_count;
+    boolean[] passed;
+    int[] root_hand_slots; // real hand slot of each modelled hand index of the searching player, at the root
+    int hand_size;         // cards a hand holds
+
+    // Turn data
+    int to_move;
+    int turn;
+
+    // Timed attributes waiting to deploy, in the order they were queued
+    int[] timed_turn;
+    int[] timed_activator;
+    int[] timed_def;
+    int[] timed_at;
+    int[] timed_target_ply;
+    int[] timed_targets;   // card ids, max_targets per entry
+    int[] timed_n_targets;
+    boolean[] timed_done;
+    int timed_count;
+    final int max_targets;
+
+    // Undo log: the array written, the index and the old value of every write
+    private Object[] trail_arrays;
+    private int[] trail_index;
+    private int[] trail_old;
+    private int trail_size;
+    // Undo frames: the trail size and the scalars before each move or draw
+    private int[] frames;
+    private int frame_size;
+    private static final int FRAME = 5;
+
+    // Scratch for the targets of the move being played
+    private final int[] move_targets;
+    private final int[] move_tids;
+
+    /**
+     * Card definitions known by a search. Built once from the real cards.
+     * @author paulo
+     */
+    static final class Defs {
+        final ArrayList<Card> cards = new ArrayList<Card>();
+        int[] base_power = new int[0];
+        int[][] at_type;
+        int[][] at_value;
+        int[][] at_targets;
+        int[][] at_turns; // 0 if not timed
+        long[] key;       // same for equal cards on every search, unlike the ids
+
+        /**
+         * Gets the definition id of a card, adding it if new. Cards with the same name are the same definition.
+         * @param card the card
+         * @return the definition id
+         */
+        int idOf( Card card ){
+            for( int i = 0; i < cards.size(); i++ )
+                if( cards.get(i).getName().equals(card.getName()) )
+                    return i;
+            cards.add(card);
+            return cards.size()-1;
+        }
+
+        /**
+         * Builds the primitive tables from the cards added.
+         */
+        void build(){
+            int n = cards.size();
+            base_power = new int[n];
+            at_type = new int[n][Card.MAX_CARD_ATTRIBUTE];
+            at_value = new int[n][Card.MAX_CARD_ATTRIBUTE];
+            at_targets = new int[n][Card.MAX_CARD_ATTRIBUTE];
+            at_turns = new int[n][Card.MAX_CARD_ATTRIBUTE];
+            key = new long[n];
+            for( int i = 0; i < n; i++ ){
+                Card c = cards.get(i);
+                base_power[i] = c.getPower();
+                key[i] = c.getName().hashCode();
+                Attribute[] ats = c.getAttributes();
+                for( int a = 0; a < ats.length; a++ ){
+                    at_type[i][a] = ats[a].getType().ordinal(); // an attribute with its own script is judged as its type
+                    at_value[i][a] = ats[a].getValue();
+                    at_targets[i][a] = ats[a].getNumTargets();
+                    at_turns[i][a] = ats[a].isTimed() ? ats[a].getTurns() : 0;
+                }
+            }
+        }
+
+        /**
+         * @return the number of definitions
+         */
+        int size(){
+            return base_power.length;
+        }
+    }
+
+    /**
+     * Constructor. Creates an empty state.
+     * @param defs the card definitions
+     * @param n_players the number of players
+     * @param root the index of the searching player
+     * @param max_cards the max number of cards that can be on the board at once
+     * @param max_timed the max number of timed attributes that can be queued in the round
+     */
+    private SearchState( Defs defs, int n_players, int root, int max_cards, int max_timed ){
+        this.defs = defs;
+        this.n_players = n_players;
+        this.root = root;
+        power = new int[max_cards];
+        resiliance = new int[max_cards];
+        card_def = new int[max_cards];
+        card_owner = new int[max_cards];
+        alive = new boolean[max_cards];
+        hand = new int[n_players][];
+        hand_count = new int[n_players];
+        deck_pool = new int[n_players][];
+        deck_count = new int[n_players];
+        board = new int[n_players][];
+        board_count = new int[n_players];
+        passed = new boolean[n_players];
+
+        int targets = 1;
+        for( int d = 0; d < defs.size(); d++ )
+            for( int t : defs.at_targets[d] )
+                targets = Math.max(targets, t);
+        max_targets = targets;
+        timed_turn = new int[max_timed];
+        timed_activator = new int[max_timed];
+        timed_def = new int[max_timed];
+        timed_at = new int[max_timed];
+        timed_target_ply = new int[max_timed];
+        timed_targets = new int[max_timed * max_targets];
+        timed_n_targets = new int[max_timed];
+        timed_done = new boolean[max_timed];
+
+        trail_arrays = new Object[256];
+        trail_index = new int[256];
+        trail_old = new int[256];
+        frames = new int[16 * FRAME];
+        move_targets = new int[max_targets];
+        move_tids = new int[max_targets];
+    }
+
+    /**
+     * Checks the moves of a state of the players fit the move encoding: at most MoveGenerator.MAX_PLAYERS players,
+     * each with at most MoveGenerator.MAX_HAND cards left (the hand of an opponent is modelled as its hand and deck).
+     * @param players the players part of the game
+     * @return if a state of the players can be searched
+     * @see {@link MoveGenerator}
+     */
+    static boolean canModel( Player[] players ){
+        if( players.length > MoveGenerator.MAX_PLAYERS || Card.MAX_CARD_ATTRIBUTE > MoveGenerator.MAX_ATTRIBUTES )
+            return false;
+        for( Player ply : players )
+            if( ply.getCardsLeft() > MoveGenerator.MAX_HAND )
+                return false;
+        return true;
+    }
+
+    /**
+     * Builds the model of the current state of a round, as seen by a player.
+     * Must be called at the start of the player's play, after its draw.
+     * @param me the searching player
+     * @param players the players part of the game
+     * @param board the board of the game
+     * @return the state
+     * @throws IllegalArgumentException if the state can not be modelled, see canModel
+     */
+    static SearchState of( Player me, Player[] players, Board board ){
+        if( !canModel(players) )
+            throw new IllegalArgumentException("A state of " + players.length + " players and their cards does not fit the move encoding!");
+        Defs defs = new Defs();
+        int n = players.length;
+        int root = -1;
+        int max_cards = 0;
+        for( int p = 0; p < n; p++ ){
+            if( players[p] == me )
+                root = p;
+            max_cards += board.getCardsOnBoard(players[p]) + players[p].getCardsLeft();
+        }
+
+        // register every definition first, so the tables can be built once.
+        // Cards not played yet first, their power is still the base power.
+        for( int p = 0; p < n; p++ ){
+            Hand h = players[p].getHand();
+            for( int i = 0; h != null && i < h.getSize(); i++ )
+                if( h.hasCardOnIndex(i) )
+                    defs.idOf(h.getCardFromHand(i));
+            if( players[p].getDeck() != null )
+                for( Card c : players[p].getDeck() )
+                    defs.idOf(c);
+        }
+        int[][] board_defs = new int[n][];
+        for( int p = 0; p < n; p++ ){
+            board_defs[p] = new int[board.getCardsOnBoard(players[p])];
+            for( int i = 0; i < board_defs[p].length; i++ )
+                board_defs[p][i] = defs.idOf(board.getCard(players[p], i));
+        }
+        defs.build();
+
+        // every card played can queue at most one more timed attribute
+        int[] queued = new int[1];
+        board.forEachTimedAttribute((turn, activator, attribute, target, targets) -> queued[0]++);
+
+        SearchState s = new SearchState(defs, n, root, Math.max(max_cards, 1), queued[0] + max_cards);
+        IdentityHashMap<Card, Integer> ids = new IdentityHashMap<Card, Integer>();
+        for( int p = 0; p < n; p++ ){
+            Player ply = players[p];
+            s.passed[p] = ply.hasPassed();
+            s.board[p] = new int[max_cards];
+            for( int i = 0; i < board_defs[p].length; i++ ){
+                Card c = board.getCard(ply, i);
+                int id = s.n_cards++;
+                s.power[id] = c.getPower();
+                s.resiliance[id] = c.getResiliance();
+                s.card_def[id] = board_defs[p][i];
+                s.card_owner[id] = p;
+                s.alive[id] = true;
+                s.board[p][s.board_count[p]++] = id;
+                ids.put(c, id);
+            }
+
+            s.hand[p] = new int[Math.max(ply.getCardsLeft(), 1)];
+            s.deck_pool[p] = new int[defs.size()];
+            if( ply.getHand() == null || ply.getDeck() == null )
+                continue;
+
+            if( p == root )
+                s.root_hand_slots = new int[ply.getHand().getSize()];
+            for( int i = 0; i < ply.getHand().getSize(); i++ ){
+                if( ply.getHand().hasCardOnIndex(i) ){
+                    if( p == root )
+                        s.root_hand_slots[s.hand_count[p]] = i;
+                    s.hand[p][s.hand_count[p]++] = defs.idOf(ply.getHand().getCardFromHand(i));
+                }
+            }
+            for( Card c : ply.getDeck() ){
+                if( p == root ){
+                    s.deck_pool[p][defs.idOf(c)]++;
+                    s.deck_count[p]++;
+                }else{
+                    s.hand[p][s.hand_count[p]++] = defs.idOf(c); // hidden, may be played at any time
+                }
+            }
+        }
+
+        s.to_move = root;
+        s.turn = me.getGame().getTurn();
+        s.hand_size = me.getHand() != null ? me.getHand().getSize() : Hand.DEFAULT_HAND_SIZE;
+        board.forEachTimedAttribute((turn, activator, attribute, target, targets) -> {
+            Integer act = ids.get(activator);
+            if( act == null )
+                return; // activator no longer on board, it only hits one target anyway
+            int t = s.timed_count++;
+            s.timed_turn[t] = turn;
+            s.timed_activator[t] = act;
+            s.timed_def[t] = s.card_def[act];
+            s.timed_at[t] = activator.getAttributeIndex(attribute);
+            s.timed_target_ply[t] = indexOf(players, target);
+            s.timed_n_targets[t] = Math.min(targets.length, s.max_targets);
+            for( int i = 0; i < s.timed_n_targets[t]; i++ )
+                s.timed_targets[t * s.max_targets + i] = ids.containsKey(targets[i]) ? ids.get(targets[i]) : -1;
+        });
+        return s;
+    }
+
+    /**
+     * @return a deep copy of the state, with an empty undo log
+     */
+    SearchState copy(){
+        SearchState s = new SearchState(defs, n_players, root, power.length, timed_turn.length);
+        System.arraycopy(power, 0, s.power, 0, n_cards);
+        System.arraycopy(resiliance, 0, s.resiliance, 0, n_cards);
+        System.arraycopy(card_def, 0, s.card_def, 0, n_cards);
+        System.arraycopy(card_owner, 0, s.card_owner, 0, n_cards);
+        System.arraycopy(alive, 0, s.alive, 0, n_cards);
+        s.n_cards = n_cards;
+        for( int p = 0; p < n_players; p++ ){
+            s.hand[p] = hand[p].clone();
+            s.deck_pool[p] = deck_pool[p].clone();
+            s.board[p] = board[p].clone();
+        }
+        System.arraycopy(hand_count, 0, s.hand_count, 0, n_players);
+        System.arraycopy(deck_count, 0, s.deck_count, 0, n_players);
+        System.arraycopy(board_count, 0, s.board_count, 0, n_players);
+        System.arraycopy(passed, 0, s.passed, 0, n_players);
+        s.root_hand_slots = root_hand_slots;
+        s.hand_size = hand_size;
+        s.to_move = to_move;
+        s.turn = turn;
+        System.arraycopy(timed_turn, 0, s.timed_turn, 0, timed_count);
+        System.arraycopy(timed_activator, 0, s.timed_activator, 0, timed_count);
+        System.arraycopy(timed_def, 0, s.timed_def, 0, timed_count);
+        System.arraycopy(timed_at, 0, s.timed_at, 0, timed_count);
+        System.arraycopy(timed_target_ply, 0, s.timed_target_ply, 0, timed_count);
+        System.arraycopy(timed_targets, 0, s.timed_targets, 0, timed_count * max_targets);
+        System.arraycopy(timed_n_targets, 0, s.timed_n_targets, 0, timed_count);
+        System.arraycopy(timed_done, 0, s.timed_done, 0, timed_count);
+        s.timed_count = timed_count;
+        return s;
+    }
+
+    /**
+     * @return if every player has passed, the round is over
+     */
+    boolean isOver(){
+        for( int p = 0; p < n_players; p++ )
+            if( !passed[p] )
+                return false;
+        return true;
+    }
+
+    /**
+     * @param p the player index
+     * @return the number of cards the player can still play
+     */
+    int cardsLeft( int p ){
+        return hand_count[p] + deck_count[p];
+    }
+
+    /**
+     * Plays a move for the player to move and moves the turn to the next player, in place.
+     * @param move the move, encoded by the MoveGenerator on this state
+     * @see {@link MoveGenerator}
+     */
+    void applyMove( long move ){
+        pushFrame();
+        int n = MoveGenerator.targets(move, this, move_targets);
+        play(MoveGenerator.handIndex(move), MoveGenerator.attribute(move), MoveGenerator.targetPlayer(move), move_targets, n);
+        nextTurn();
+    }
+
+    /**
+     * Undoes the last applyMove or draw not undone yet.
+     */
+    void undoMove(){
+        int f = (--frame_size) * FRAME;
+        int mark = frames[f];
+        while( trail_size > mark ){
+            trail_size--;
+            Object array = trail_arrays[trail_size];
+            trail_arrays[trail_size] = null;
+            if( array instanceof int[] )
+                ((int[]) array)[trail_index[trail_size]] = trail_old[trail_size];
+            else
+                ((boolean[]) array)[trail_index[trail_size]] = trail_old[trail_size] != 0;
+        }
+        n_cards = frames[f+1];
+        to_move = frames[f+2];
+        turn = frames[f+3];
+        timed_count = frames[f+4];
+    }
+
+    /**
+     * Saves the trail size and the scalars of the state, to be restored by undoMove.
+     */
+    private void pushFrame(){
+        if( (frame_size + 1) * FRAME > frames.length ){
+            int[] grown = new int[frames.length * 2];
+            System.arraycopy(frames, 0, grown, 0, frames.length);
+            frames = grown;
+        }
+        int f = (frame_size++) * FRAME;
+        frames[f] = trail_size;
+        frames[f+1] = n_cards;
+        frames[f+2] = to_move;
+        frames[f+3] = turn;
+        frames[f+4] = timed_count;
+    }
+
+    /**
+     * Writes a value, logging the old one on the trail.
+     * @param array the array written
+     * @param i the index
+     * @param value the new value
+     */
+    private void set( int[] array, int i, int value ){
+        log(array, i, array[i]);
+        array[i] = value;
+    }
+
+    /**
+     * Writes a value, logging the old one on the trail.
+     * @param array the array written
+     * @param i the index
+     * @param value the new value
+     */
+    private void set( boolean[] array, int i, boolean value ){
+        log(array, i, array[i] ? 1 : 0);
+        array[i] = value;
+    }
+
+    /**
+     * Appends a write to the trail, growing it if needed.
+     * @param array the array written
+     * @param i the index
+     * @param old the old value
+     */
+    private void log( Object array, int i, int old ){
+        if( trail_size == trail_index.length ){
+            int size = trail_index.length * 2;
+            Object[] arrays = new Object[size];
+            int[] index = new int[size];
+            int[] olds = new int[size];
+            System.arraycopy(trail_arrays, 0, arrays, 0, trail_size);
+            System.arraycopy(trail_index, 0, index, 0, trail_size);
+            System.arraycopy(trail_old, 0, olds, 0, trail_size);
+            trail_arrays = arrays;
+            trail_index = index;
+            trail_old = olds;
+        }
+        trail_arrays[trail_size] = array;
+        trail_index[trail_size] = i;
+        trail_old[trail_size] = old;
+        trail_size++;
+    }
+
+    /**
+     * Moves the turn to the next player that has not passed, like Game.logic does.
+     * The turn counter is incremented and players with no cards left pass on their turn.
+     * Does nothing if every player passed.
+     */
+    private void nextTurn(){
+        for( int i = 0; i < n_players && !isOver(); i++ ){
+            to_move = (to_move + 1) % n_players;
+            if( passed[to_move] )
+                continue;
+            turn++;
+            if( cardsLeft(to_move) == 0 ){
+                set(passed, to_move, true);
+                continue;
+            }
+            return;
+        }
+    }
+
+    /**
+     * @return if the player to move has to draw from its hidden deck before playing
+     */
+    boolean needsDraw(){
+        return deck_count[to_move] > 0 && hand_count[to_move] < hand_size;
+    }
+
+    /**
+     * Draws a specific card definition from the deck pool of the player to move, in place.
+     * Undone by undoMove.
+     * @param def the definition drawn
+     */
+    void draw( int def ){
+        pushFrame();
+        int p = to_move;
+        set(deck_pool[p], def, deck_pool[p][def] - 1);
+        set(deck_count, p, deck_count[p] - 1);
+        set(hand[p], hand_count[p], def);
+        set(hand_count, p, hand_count[p] + 1);
+    }
+
+    /**
+     * Plays a card for the player to move. Does not move the turn.
+     * @param hand_index the index in the modelled hand of the card played
+     * @param at the attribute index
+     * @param target_ply the targeted player
+     * @param targets the targeted board indices
+     * @param n_targets the number of targets (0 if the targeted board was empty)
+     */
+    private void play( int hand_index, int at, int target_ply, int[] targets, int n_targets ){
+        int p = to_move;
+        int def = hand[p][hand_index];
+        set(hand_count, p, hand_count[p] - 1);
+        set(hand[p], hand_index, hand[p][hand_count[p]]);
+
+        // timed attributes deploy before the card is placed
+        for( int t = 0; t < timed_count; t++ ){
+            if( !timed_done[t] && timed_turn[t] == turn ){
+                activate(timed_activator[t], timed_def[t], timed_at[t], timed_target_ply[t], timed_targets, t * max_targets, timed_n_targets[t]);
+                set(timed_done, t, true);
+            }
+        }
+
+        // a new id is past n_cards, undoing the move forgets it without logging its fields
+        int id = n_cards++;
+        power[id] = defs.base_power[def];
+        resiliance[id] = 0;
+        card_def[id] = def;
+        card_owner[id] = p;
+        alive[id] = true;
+        set(board[p], board_count[p], id);
+        set(board_count, p, board_count[p] + 1);
+
+        if( n_targets == 0 )
+            return;
+
+        for( int i = 0; i < n_targets; i++ )
+            move_tids[i] = board[target_ply][targets[i]];
+
+        if( defs.at_turns[def][at] > 0 ){
+            int t = timed_count++;
+            timed_turn[t] = turn + defs.at_turns[def][at];
+            timed_activator[t] = id;
+            timed_def[t] = def;
+            timed_at[t] = at;
+            timed_target_ply[t] = target_ply;
+            System.arraycopy(move_tids, 0, timed_targets, t * max_targets, n_targets);
+            timed_n_targets[t] = n_targets;
+            timed_done[t] = false;
+        }else{
+            activate(id, def, at, target_ply, move_tids, 0, n_targets);
+        }
+    }
+
+    /**
+     * Applies an attribute on its targets. Same rules as Board.activateAttribute.
+     * @param activator the card id of the activator
+     * @param def the definition of the activator
+     * @param at the attribute index
+     * @param target_ply the targeted player
+     * @param tids the array holding the targeted card ids
+     * @param from the index of the first target in the array
+     * @param n the number of targets
+     */
+    private void activate( int activator, int def, int at, int target_ply, int[] tids, int from, int n ){
+        int value = defs.at_value[def][at];
+        int type = defs.at_type[def][at];
+        for( int i = from; i < from + n; i++ ){
+            int t = tids[i];
+            if( t < 0 || !alive[t] )
+                continue;
+
+            if( type == AttributeType.INFLICTING.ordinal() ){
+                int left = resiliance[t] - value;
+                if( left < 0 ){
+                    set(resiliance, t, 0);
+                    set(power, t, power[t] + left);
+                }else{
+                    set(resiliance, t, left);
+                }
+            }else if( type == AttributeType.BUFF.ordinal() ){
+                set(power, t, power[t] + value);
+            }else{
+                set(resiliance, t, resiliance[t] + value);
+            }
+
+            if( power[t] <= 0 )
+                destroy(t);
+
+            if( power[activator] <= 0 ){
+                if( alive[activator] )
+                    destroy(activator);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Removes a card from its board.
+     * @param id the card id
+     */
+    private void destroy( int id ){
+        int p = card_owner[id];
+        set(alive, id, false);
+        int[] b = board[p];
+        for( int i = 0; i < board_count[p]; i++ ){
+            if( b[i] == id ){
+                for( int j = i; j < board_count[p]-1; j++ )
+                    set(b, j, b[j+1]);
+                set(board_count, p, board_count[p] - 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param p the player index
+     * @return total power on the board of the player
+     */
+    int boardPower( int p ){
+        int t = 0;
+        for( int i = 0; i < board_count[p]; i++ )
+            t += power[board[p][i]];
+        return t;
+    }
+
+    /**
+     * Evaluates the state for the searching player: its expected final power minus the best opponent's.
+     * Cards not played yet count with their base power.
+     * @return the evaluation, higher is better for the searching player
+     */
+    int evaluate(){
+        int mine = 0;
+        int best_opp = Integer.MIN_VALUE;
+        for( int p = 0; p < n_players; p++ ){
+            int v = boardPower(p);
+            if( !passed[p] ){
+                for( int i = 0; i < hand_count[p]; i++ )
+                    v += defs.base_power[hand[p][i]];
+                for( int d = 0; d < deck_pool[p].length; d++ )
+                    v += deck_pool[p][d] * defs.base_power[d];
+            }
+            if( p == root )
+                mine = v;
+            else if( v > best_opp )
+                best_opp = v;
+        }
+        return mine - best_opp;
+    }
+
+    /**
+     * Computes the hash of the state, used as the transposition table key.
+     * @return the hash
+     */
+    long hash(){
+        long h = Zobrist.mixKey(turn, to_move);
+        for( int p = 0; p < n_players; p++ ){
+            for( int i = 0; i < board_count[p]; i++ ){
+                int id = board[p][i];
+                h ^= Zobrist.mixKey(((long)p << 40) ^ ((long)i << 32) ^ defs.key[card_def[id]], ((long)power[id] << 32) ^ (resiliance[id] & 0xFFFFFFFFL));
+            }
+            long hand_set = 0; // hands are unordered
+            for( int i = 0; i < hand_count[p]; i++ )
+                hand_set += Zobrist.mixKey(0x48414E44L + p, defs.key[hand[p][i]]);
+            h ^= hand_set;
+            for( int d = 0; d < deck_pool[p].length; d++ )
+                if( deck_pool[p][d] > 0 )
+                    h ^= Zobrist.mixKey(0x4445434BL + ((long)p << 32) + defs.key[d], deck_pool[p][d]);
+            if( passed[p] )
+                h ^= Zobrist.mixKey(0x50415353L, p);
+        }
+        for( int t = 0; t < timed_count; t++ )
+            if( !timed_done[t] )
+                h ^= Zobrist.mixKey(((long)timed_turn[t] << 32) ^ timed_activator[t], ((long)timed_at[t] << 32) ^ timed_target_ply[t]);
+        return h;
+    }
+
+    /**
+     * @param players the players
+     * @param ply the player to find
+     * @return the index of the player
+     */
+    private static int indexOf( Player[] players, Player ply ){
+        for( int i = 0; i < players.length; i++ )
+            if( players[i] == ply )
+                return i;
+        return -1;
+    }
+}
@@ -0,0 +1,147 @@
+package players;
+
+/**
+ * A data structure. Fixed size hash table of search results, indexed by state hash.
+ * Used by the search computer to avoid searching the same state twice.
+ * Each key maps to a bucket of 2 entries. On a full bucket, the entry from an older search (age)
+ * is replaced first, then the one searched to the lowest depth.
+ * Entries are stored in parallel primitive arrays, the table never allocates after creation.
+ * @see {@link SearchEngine}
+ * @author paulo
+ */
+final class TranspositionTable {
+    // Bound types
+    static final byte EXACT = 0;
+    static final byte LOWER = 1; // value is at least the one stored (beta cutoff)
+    static final byte UPPER = 2; // value is at most the one stored (no move raised alpha)
+
+    private final long[] keys;
+    private final double[] values;
+    private final byte[] depths;
+    private final byte[] flags;
+    private final byte[] ages;
+    private final short[] best_moves;
+    private final int mask;
+    private byte age;
+
+    // statistics
+    private long probes;
+    private long hits;
+
+    /**
+     * Constructor. Creates an empty table.
+     * @param size_bits the table holds 2^size_bits entries
+     */
+    TranspositionTable( int size_bits ){
+        int size = 1 << size_bits;
+        keys = new long[size];
+        values = new double[size];
+        depths = new byte[size];
+        flags = new byte[size];
+        ages = new byte[size];
+        best_moves = new short[size];
+        mask = (size - 1) & ~1; // index of the first entry of a bucket
+        age = 1; // age 0 means empty
+    }
+
+    /**
+     * Starts a new search. Entries of older searches become the first to be replaced.
+     */
+    void newSearch(){
+        age++;
+        if( age == 0 )
+            age = 1;
+    }
+
+    /**
+     * Looks for the entry of a state.
+     * @param key the hash of the state
+     * @return the index of the entry or -1 if not found
+     */
+    int probe( long key ){
+        probes++;
+        int i = (int)(key ^ (key >>> 32)) & mask;
+        if( ages[i] != 0 && keys[i] == key ){
+            hits++;
+            return i;
+        }
+        if( ages[i+1] != 0 && keys[i+1] == key ){
+            hits++;
+            return i+1;
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the result of a state, replacing by age and depth.
+     * @param key the hash of the state
+     * @param depth the depth the state was searched to
+     * @param value the value found
+     * @param flag EXACT, LOWER or UPPER
+     * @param best_move the index of the best move found, -1 if none
+     */
+    void store( long key, int depth, double value, byte flag, int best_move ){
+        int i = (int)(key ^ (key >>> 32)) & mask;
+        int slot;
+        if( ages[i] == 0 || keys[i] == key ){
+            slot = i;
+        }else if( ages[i+1] == 0 || keys[i+1] == key ){
+            slot = i+1;
+        }else if( ages[i] != age && ages[i+1] == age ){
+            slot = i;
+        }else if( ages[i+1] != age && ages[i] == age ){
+            slot = i+1;
+        }else{
+            slot = depths[i] <= depths[i+1] ? i : i+1;
+        }
+
+        if( keys[slot] == key && ages[slot] == age && depths[slot] > depth )
+            return; // keep the deeper result of the same state
+
+        keys[slot] = key;
+        values[slot] = value;
+        depths[slot] = (byte) Math.min(depth, Byte.MAX_VALUE);
+        flags[slot] = flag;
+        ages[slot] = age;
+        best_moves[slot] = (short) best_move;
+    }
+
+    /**
+     * @param i the index of an entry
+     * @return the value of the entry
+     */
+    double getValue( int i ){
+        return values[i];
+    }
+
+    /**
+     * @param i the index of an entry
+     * @return the depth of the entry
+     */
+    int getDepth( int i ){
+        return depths[i];
+    }
+
+    /**
+     * @param i the index of an entry
+     * @return the bound type of the entry
+     */
+    byte getFlag( int i ){
+        return flags[i];
+    }
+
+    /**
+     * @param i the index of an entry
+     * @return the best move index of the entry, -1 if none
+     */
+    int getBestMove( int i ){
+        return best_moves[i];
+    }
+
+    /**
+     * @return the ratio of probes that found their state
+     */
+    double getHitRate(){
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+}
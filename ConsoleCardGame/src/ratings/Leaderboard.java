@@ -0,0 +1,312 @@
+package ratings;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A data structure. Leaderboard of player profiles ordered by a score of their rating, best first
+ * (equal scores by profile name).
+ * The entries are a persistent treap whose nodes know the size of their subtree, so the rank of a profile and
+ * the profile at a rank are found in O(log n). An update copies the path it changes and publishes the new root,
+ * nodes are never modified: readers take the root once and work on a snapshot without ever locking,
+ * only writers are serialized.
+ * The top CACHED profiles are cached and the cache is only dropped by updates that reach into it, an update
+ * further down the board leaves it alone.
+ * @see {@link RatingStore}
+ * @author paulo
+ */
+public final class Leaderboard {
+    public static final int CACHED = 100;
+
+    private final ToDoubleFunction<Rating> score;
+    private final ConcurrentHashMap<String, Node> entries; // current node of each profile
+    private volatile Node root;
+
+    // top cache, valid while its version is the current one
+    private volatile TopCache top;
+    private volatile long top_version;
+    private Node cutoff; // last entry of the cached top, or null if the board has fewer entries. Guarded by this
+
+    /**
+     * An immutable node of the treap.
+     * @author paulo
+     */
+    private static final class Node {
+        final Rating rating;
+        final double key;
+        final int priority;
+        final Node left;
+        final Node right;
+        final int size;
+
+        Node( Rating rating, double key, int priority, Node left, Node right ){
+            this.rating = rating;
+            this.key = key;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        /**
+         * @return a copy of the node with other children
+         */
+        Node with( Node left, Node right ){
+            return new Node(rating, key, priority, left, right);
+        }
+    }
+
+    /**
+     * The cached top of the board.
+     * @author paulo
+     */
+    private static final class TopCache {
+        final long version;
+        final List<Rating> top;
+
+        TopCache( long version, List<Rating> top ){
+            this.version = version;
+            this.top = top;
+        }
+    }
+
+    /**
+     * Constructor. Creates an empty leaderboard.
+     * @param score the score profiles are ordered by, higher is better
+     */
+    public Leaderboard( ToDoubleFunction<Rating> score ){
+        this.score = score;
+        this.entries = new ConcurrentHashMap<String, Node>();
+        this.root = null;
+        this.top = null;
+        this.top_version = 0;
+    }
+
+    /**
+     * @return an empty leaderboard by Elo rating
+     */
+    public static Leaderboard byRating(){
+        return new Leaderboard(Rating::getRating);
+    }
+
+    /**
+     * @return an empty leaderboard by rounds won
+     */
+    public static Leaderboard byRoundsWon(){
+        return new Leaderboard(r -> r.getRoundsWon());
+    }
+
+    /**
+     * Fills the leaderboard with the ratings of a store and keeps it up to date with its updates.
+     * @param store the rating store
+     */
+    public void attach( RatingStore store ){
+        store.addListener(this::update);
+        for( Rating r : store.getRatings() )
+            update(r);
+    }
+
+    /**
+     * @param n a node or null
+     * @return the size of the subtree of the node
+     */
+    private static int size( Node n ){
+        return n == null ? 0 : n.size;
+    }
+
+    /**
+     * Orders two entries: higher key first, then by profile name.
+     * @return negative if a comes before b, 0 if they are the same entry, positive otherwise
+     */
+    private static int compare( double key_a, String profile_a, Node b ){
+        int c = Double.compare(b.key, key_a);
+        return c != 0 ? c : profile_a.compareTo(b.rating.getProfile());
+    }
+
+    /**
+     * Adds or moves a profile on the board.
+     * @param rating the new rating of the profile
+     */
+    public synchronized void update( Rating rating ){
+        String profile = rating.getProfile();
+        Node old = entries.get(profile);
+        Node node = new Node(rating, score.applyAsDouble(rating), profile.hashCode() * 0x9E3779B9, null, null);
+        Node r = root;
+        if( old != null )
+            r = remove(r, old.key, profile);
+        r = insert(r, node);
+        entries.put(profile, node);
+        root = r;
+
+        // the cached top only changes if the entry was or is now in it
+        if( cutoff == null || (old != null && compare(old.key, profile, cutoff) <= 0) || compare(node.key, profile, cutoff) <= 0 ){
+            top_version++;
+            cutoff = size(r) >= CACHED ? select(r, CACHED - 1) : null;
+        }
+    }
+
+    /**
+     * Inserts a node, copying the path to it.
+     * @param t the subtree
+     * @param node the node, without children
+     * @return the new subtree
+     */
+    private static Node insert( Node t, Node node ){
+        if( t == null )
+            return node;
+        if( node.priority > t.priority ){
+            Node[] halves = split(t, node.key, node.rating.getProfile());
+            return node.with(halves[0], halves[1]);
+        }
+        if( compare(node.key, node.rating.getProfile(), t) < 0 )
+            return t.with(insert(t.left, node), t.right);
+        return t.with(t.left, insert(t.right, node));
+    }
+
+    /**
+     * Splits a subtree into the entries before a key and the ones after it, copying the paths split.
+     * @return the two subtrees
+     */
+    private static Node[] split( Node t, double key, String profile ){
+        if( t == null )
+            return new Node[2];
+        if( compare(key, profile, t) < 0 ){
+            Node[] halves = split(t.left, key, profile);
+            halves[1] = t.with(halves[1], t.right);
+            return halves;
+        }
+        Node[] halves = split(t.right, key, profile);
+        halves[0] = t.with(t.left, halves[0]);
+        return halves;
+    }
+
+    /**
+     * Removes an entry, copying the path to it.
+     * @return the new subtree
+     */
+    private static Node remove( Node t, double key, String profile ){
+        if( t == null )
+            return null;
+        int c = compare(key, profile, t);
+        if( c == 0 )
+            return merge(t.left, t.right);
+        if( c < 0 )
+            return t.with(remove(t.left, key, profile), t.right);
+        return t.with(t.left, remove(t.right, key, profile));
+    }
+
+    /**
+     * Merges two subtrees, every entry of a before every entry of b.
+     * @return the merged subtree
+     */
+    private static Node merge( Node a, Node b ){
+        if( a == null )
+            return b;
+        if( b == null )
+            return a;
+        if( a.priority > b.priority )
+            return a.with(a.left, merge(a.right, b));
+        return b.with(merge(a, b.left), b.right);
+    }
+
+    /**
+     * @param t a subtree
+     * @param i an index in it, from 0
+     * @return the node at the index
+     */
+    private static Node select( Node t, int i ){
+        while( t != null ){
+            int l = size(t.left);
+            if( i < l ){
+                t = t.left;
+            }else if( i == l ){
+                return t;
+            }else{
+                i -= l + 1;
+                t = t.right;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of profiles on the board
+     */
+    public int size(){
+        return size(root);
+    }
+
+    /**
+     * @param profile the name of a profile
+     * @return the rank of the profile, from 1, or 0 if it is not on the board
+     */
+    public int getRank( String profile ){
+        Node t = root;
+        Node node = entries.get(profile);
+        if( node == null )
+            return 0;
+        int before = 0;
+        while( t != null ){
+            int c = compare(node.key, profile, t);
+            if( c == 0 )
+                return before + size(t.left) + 1;
+            if( c < 0 ){
+                t = t.left;
+            }else{
+                before += size(t.left) + 1;
+                t = t.right;
+            }
+        }
+        return before + 1; // moved by an update since the root was read, rank of where it was
+    }
+
+    /**
+     * @param rank a rank, from 1
+     * @return the rating of the profile at the rank, null if there is none
+     */
+    public Rating getAt( int rank ){
+        Node n = rank < 1 ? null : select(root, rank - 1);
+        return n == null ? null : n.rating;
+    }
+
+    /**
+     * Gets the best profiles. Up to CACHED profiles are served from the cache while no update reached into it.
+     * @param k the number of profiles
+     * @return the ratings of the k best profiles (or fewer if the board is smaller), best first, read-only
+     */
+    public List<Rating> getTop( int k ){
+        if( k > CACHED )
+            return collect(root, k);
+
+        TopCache cache = top;
+        long version = top_version;
+        if( cache == null || cache.version != version ){
+            cache = new TopCache(version, collect(root, CACHED)); // root is read after the version: never older than it
+            top = cache;
+        }
+        return cache.top.size() <= k ? cache.top : cache.top.subList(0, k);
+    }
+
+    /**
+     * Collects the first entries of a snapshot, in order.
+     * @param t the root of the snapshot
+     * @param k the number of entries
+     * @return the ratings, read-only
+     */
+    private static List<Rating> collect( Node t, int k ){
+        ArrayList<Rating> out = new ArrayList<Rating>(Math.min(k, size(t)));
+        ArrayList<Node> stack = new ArrayList<Node>();
+        while( out.size() < k && (t != null || !stack.isEmpty()) ){
+            while( t != null ){
+                stack.add(t);
+                t = t.left;
+            }
+            t = stack.remove(stack.size() - 1);
+            out.add(t.rating);
+            t = t.right;
+        }
+        return Collections.unmodifiableList(out);
+    }
+}
@@ -0,0 +1,83 @@
+package ratings;
+
+/**
+ * ADT - Rating class.
+ * The rating of a player profile at some point in time. Immutable: every update makes a new one,
+ * so a rating read by one thread never changes under it.
+ * @see {@link RatingStore}
+ * @author paulo
+ */
+public final class Rating {
+    public static final double INITIAL = 1500;
+
+    private final String profile;
+    private final double rating;
+    private final long games;
+    private final long wins;
+    private final long rounds_won;
+
+    /**
+     * Constructor.
+     * @param profile the name of the profile
+     * @param rating the Elo rating
+     * @param games the number of games played
+     * @param wins the number of games won (alone)
+     * @param rounds_won the number of rounds won
+     */
+    public Rating( String profile, double rating, long games, long wins, long rounds_won ){
+        this.profile = profile;
+        this.rating = rating;
+        this.games = games;
+        this.wins = wins;
+        this.rounds_won = rounds_won;
+    }
+
+    /**
+     * Creates the rating of a profile that never played.
+     * @param profile the name of the profile
+     * @return the rating
+     */
+    public static Rating initial( String profile ){
+        return new Rating(profile, INITIAL, 0, 0, 0);
+    }
+
+    /**
+     * @return the name of the profile
+     */
+    public String getProfile(){
+        return profile;
+    }
+
+    /**
+     * @return the Elo rating
+     */
+    public double getRating(){
+        return rating;
+    }
+
+    /**
+     * @return the number of games played
+     */
+    public long getGames(){
+        return games;
+    }
+
+    /**
+     * @return the number of games won (alone)
+     */
+    public long getWins(){
+        return wins;
+    }
+
+    /**
+     * @return the number of rounds won
+     */
+    public long getRoundsWon(){
+        return rounds_won;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%s: %.1f (%d games, %d wins, %d rounds won)", profile, rating, games, wins, rounds_won);
+    }
+}
@@ -0,0 +1,455 @@
+package ratings;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import game.Game;
+import players.Player;
+import utility.Util;
+
+/**
+ * Persistent rating store.
+ * Keeps the Elo rating, games and rounds won of every player profile (by name) across runs:
+ *  - the current ratings are in an in-memory hash index, read without locks;
+ *  - every update appends the new rating of each profile to a log (length, profile, rating, counters, CRC32);
+ *  - on startup the log is replayed into the index, the last record of a profile wins. A torn record at the end
+ *    of the log (crash while writing) is cut off;
+ *  - updates are group committed: they are encoded into a pending buffer and a committer thread writes and
+ *    syncs everything pending at once, so a sync costs one fsync however many updates it holds;
+ *  - when the log holds many more records than there are profiles it is compacted: the index is written to
+ *    a new log which atomically replaces the old one.
+ * Updates return a sequence number, awaitDurable waits until that update is on disk.
+ * @see {@link Rating}
+ * @author paulo
+ */
+public class RatingStore implements Closeable {
+    public static final String LOG = "ratings.log";
+    public static final double K = 32;
+    private static final int MAX_PENDING = 16 << 20;
+    private static final long COMPACT_MIN_RECORDS = 100000;
+    private static final int COMPACT_RATIO = 4;
+
+    private final Path dir;
+    private final ConcurrentHashMap<String, Rating> index;
+    private final CopyOnWriteArrayList<Consumer<Rating>> listeners;
+    private final CRC32 crc;
+    private final Thread committer;
+    private FileChannel log;
+    private long log_records;
+
+    // guarded by this
+    private ByteBuffer pending;
+    private ByteBuffer writing;
+    private int pending_records;
+    private long appended;
+    private long durable;
+    private boolean compact_requested;
+    private boolean closing;
+    private IOException failure;
+
+    /**
+     * Constructor. Opens the store in a directory, creating it if needed, and replays its log.
+     * @param dir the directory of the store
+     * @throws IOException if the log can not be read or opened
+     */
+    public RatingStore( Path dir ) throws IOException {
+        Files.createDirectories(dir);
+        this.dir = dir;
+        this.index = new ConcurrentHashMap<String, Rating>();
+        this.listeners = new CopyOnWriteArrayList<Consumer<Rating>>();
+        this.crc = new CRC32();
+        this.pending = ByteBuffer.allocate(1 << 16);
+        this.writing = ByteBuffer.allocate(1 << 16);
+
+        Path file = dir.resolve(LOG);
+        long good = Files.exists(file) ? replay(file) : 0;
+        this.log = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if( log.size() > good ){
+            Util.printError("Rating log %s has a torn record at %d, cutting it off", file, good);
+            log.truncate(good);
+        }
+        log.position(good);
+
+        this.committer = new Thread(this::commitLoop, "rating-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Reads every record of the log into the index.
+     * @param file the log
+     * @return the offset after the last good record
+     * @throws IOException if the log can not be read
+     */
+    private long replay( Path file ) throws IOException {
+        long good = 0;
+        try( InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16)) ){
+            byte[] payload = new byte[256];
+            while( true ){
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if( length <= 0 || length > 1 << 20 )
+                    break;
+                if( payload.length < length )
+                    payload = new byte[length];
+                try {
+                    in.readFully(payload, 0, length);
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if( in.readInt() != (int) crc.getValue() )
+                        break;
+                } catch (EOFException e) {
+                    break;
+                }
+                Rating r = decode(ByteBuffer.wrap(payload, 0, length));
+                index.put(r.getProfile(), r);
+                log_records++;
+                good += 4 + length + 4;
+            }
+        }
+        return good;
+    }
+
+    /**
+     * @param profile the name of a profile
+     * @return the current rating of the profile, null if it never played
+     */
+    public Rating get( String profile ){
+        return index.get(profile);
+    }
+
+    /**
+     * @return the current rating of every profile, a live read-only view
+     */
+    public Collection<Rating> getRatings(){
+        return Collections.unmodifiableCollection(index.values());
+    }
+
+    /**
+     * Adds a callback called with every new rating, in the order of the updates.
+     * @param listener the callback, it must be quick: it holds up every other update
+     */
+    public void addListener( Consumer<Rating> listener ){
+        listeners.add(listener);
+    }
+
+    /**
+     * @return the number of profiles
+     */
+    public int size(){
+        return index.size();
+    }
+
+    /**
+     * Records a finished game: every player is rated against every other one by rounds won.
+     * @param game the game, once over
+     * @return the sequence number of the update
+     * @throws IOException if the store failed to write an earlier update
+     */
+    public long recordGame( Game game ) throws IOException {
+        Player[] players = game.getPlayers();
+        String[] profiles = new String[players.length];
+        int[] rounds_won = new int[players.length];
+        for( int i = 0; i < players.length; i++ ){
+            profiles[i] = players[i].getName();
+            rounds_won[i] = players[i].getRoundsWon();
+        }
+        return recordResult(profiles, rounds_won);
+    }
+
+    /**
+     * Records the result of a game. Each pair of players is an Elo match (more rounds won is a win, the same is a draw),
+     * the changes of a player are averaged over its opponents. The player with the most rounds won, if alone, wins the game.
+     * @param profiles the profile of each player, all different
+     * @param rounds_won the rounds won by each player
+     * @return the sequence number of the update
+     * @throws IOException if the store failed to write an earlier update
+     * @throws IllegalArgumentException if a profile is there twice, nothing is recorded then
+     */
+    public synchronized long recordResult( String[] profiles, int[] rounds_won ) throws IOException {
+        if( profiles.length < 2 || profiles.length != rounds_won.length )
+            throw new IllegalArgumentException("A result needs at least 2 players and the rounds won by each!");
+        HashSet<String> seen = new HashSet<String>();
+        for( String profile : profiles )
+            if( !seen.add(profile) )
+                throw new IllegalArgumentException("The profile " + profile + " is in the result twice!");
+        checkOpen();
+
+        int n = profiles.length;
+        Rating[] old = new Rating[n];
+        int best = 0;
+        int best_count = 0;
+        for( int i = 0; i < n; i++ ){
+            old[i] = index.getOrDefault(profiles[i], Rating.initial(profiles[i]));
+            if( best_count == 0 || rounds_won[i] > rounds_won[best] ){
+                best = i;
+                best_count = 1;
+            }else if( rounds_won[i] == rounds_won[best] ){
+                best_count++;
+            }
+        }
+
+        for( int i = 0; i < n; i++ ){
+            double delta = 0;
+            for( int j = 0; j < n; j++ ){
+                if( i == j )
+                    continue;
+                double expected = 1 / (1 + Math.pow(10, (old[j].getRating() - old[i].getRating()) / 400));
+                double score = rounds_won[i] > rounds_won[j] ? 1 : rounds_won[i] == rounds_won[j] ? 0.5 : 0;
+                delta += K * (score - expected);
+            }
+            Rating r = new Rating(profiles[i], old[i].getRating() + delta / (n - 1), old[i].getGames() + 1,
+                    old[i].getWins() + (best_count == 1 && best == i ? 1 : 0), old[i].getRoundsWon() + rounds_won[i]);
+            index.put(profiles[i], r);
+            append(r);
+            for( Consumer<Rating> l : listeners )
+                l.accept(r);
+        }
+        notifyAll();
+        return appended;
+    }
+
+    /**
+     * Encodes a rating into the pending buffer, waiting for the committer if too much is pending.
+     * @param r the rating
+     * @throws IOException if the store failed while waiting
+     */
+    private void append( Rating r ) throws IOException {
+        byte[] name = r.getProfile().getBytes(StandardCharsets.UTF_8);
+        int length = 4 + name.length + 8 + 8 + 8 + 8;
+        while( pending.position() > MAX_PENDING ){
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the rating log!", e);
+            }
+            checkOpen();
+        }
+        if( pending.remaining() < length + 8 ){
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length + 8));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        int start = pending.position();
+        pending.putInt(length);
+        pending.putInt(name.length);
+        pending.put(name);
+        pending.putDouble(r.getRating());
+        pending.putLong(r.getGames());
+        pending.putLong(r.getWins());
+        pending.putLong(r.getRoundsWon());
+        crc.reset();
+        crc.update(pending.array(), start + 4, length);
+        pending.putInt((int) crc.getValue());
+        pending_records++;
+        appended++;
+    }
+
+    /**
+     * Decodes the payload of a record.
+     * @param payload the payload
+     * @return the rating
+     */
+    private static Rating decode( ByteBuffer payload ){
+        byte[] name = new byte[payload.getInt()];
+        payload.get(name);
+        return new Rating(new String(name, StandardCharsets.UTF_8), payload.getDouble(), payload.getLong(), payload.getLong(), payload.getLong());
+    }
+
+    /**
+     * Throws if the store is closed or failed.
+     * @throws IOException if the committer failed to write
+     */
+    private void checkOpen() throws IOException {
+        if( failure != null )
+            throw new IOException("The rating store failed!", failure);
+        if( closing )
+            throw new IllegalStateException("The rating store is closed!");
+    }
+
+    /**
+     * Committer thread: writes and syncs every pending update at once, then compacts the log if needed.
+     */
+    private void commitLoop(){
+        while( true ){
+            long batch_seq;
+            int batch_records;
+            synchronized( this ){
+                while( pending.position() == 0 && !closing && !compact_requested ){
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if( pending.position() == 0 && closing )
+                    return;
+                ByteBuffer swap = writing;
+                writing = pending;
+                pending = swap;
+                pending.clear();
+                batch_seq = appended;
+                batch_records = pending_records;
+                pending_records = 0;
+                notifyAll(); // writers waiting on a full buffer
+            }
+
+            try {
+                writing.flip();
+                while( writing.hasRemaining() )
+                    log.write(writing);
+                writing.clear();
+                if( batch_records > 0 )
+                    log.force(false);
+                log_records += batch_records;
+
+                synchronized( this ){
+                    durable = batch_seq;
+                    notifyAll();
+                }
+                if( needsCompaction() )
+                    compactLog();
+            } catch (IOException e) {
+                synchronized( this ){
+                    failure = e;
+                    notifyAll();
+                }
+                Util.printError("Rating log failed: %s", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return if the log should be compacted now
+     */
+    private synchronized boolean needsCompaction(){
+        boolean requested = compact_requested;
+        compact_requested = false;
+        return requested || (log_records > COMPACT_MIN_RECORDS && log_records > (long) COMPACT_RATIO * index.size());
+    }
+
+    /**
+     * Rewrites the log with only the current rating of each profile and swaps it in.
+     * Updates made after the index is read are still pending and are appended to the new log.
+     * @throws IOException if the new log can not be written
+     */
+    private void compactLog() throws IOException {
+        ArrayList<Rating> snapshot;
+        synchronized( this ){
+            snapshot = new ArrayList<Rating>(index.values());
+        }
+        Path tmp = dir.resolve(LOG + ".tmp");
+        ByteBuffer out = ByteBuffer.allocate(1 << 16);
+        CRC32 sum = new CRC32(); // the one of the store is used by writers meanwhile
+        try( FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) ){
+            for( Rating r : snapshot ){
+                byte[] name = r.getProfile().getBytes(StandardCharsets.UTF_8);
+                int length = 4 + name.length + 32;
+                if( out.remaining() < length + 8 ){
+                    out.flip();
+                    while( out.hasRemaining() )
+                        channel.write(out);
+                    out = ByteBuffer.allocate(Math.max(out.capacity(), length + 8));
+                }
+                int start = out.position();
+                out.putInt(length).putInt(name.length).put(name);
+                out.putDouble(r.getRating()).putLong(r.getGames()).putLong(r.getWins()).putLong(r.getRoundsWon());
+                sum.reset();
+                sum.update(out.array(), start + 4, length);
+                out.putInt((int) sum.getValue());
+            }
+            out.flip();
+            while( out.hasRemaining() )
+                channel.write(out);
+            channel.force(true);
+        }
+        log.close();
+        Files.move(tmp, dir.resolve(LOG), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = FileChannel.open(dir.resolve(LOG), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        log_records = snapshot.size();
+        Util.printDebug("Compacted rating log to %d records", snapshot.size());
+    }
+
+    /**
+     * Asks the committer to compact the log now.
+     */
+    public synchronized void compact(){
+        compact_requested = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until an update is on disk.
+     * @param seq the sequence number of the update
+     * @throws IOException if the store failed to write it
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void awaitDurable( long seq ) throws IOException, InterruptedException {
+        while( durable < seq && failure == null )
+            wait();
+        if( durable < seq )
+            throw new IOException("The rating store failed!", failure);
+    }
+
+    /**
+     * Waits until every update made so far is on disk.
+     * @throws IOException if the store failed to write them
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws IOException, InterruptedException {
+        long seq;
+        synchronized( this ){
+            seq = appended;
+        }
+        awaitDurable(seq);
+    }
+
+    /**
+     * Writes every pending update and closes the log.
+     * @throws IOException if the pending updates can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized( this ){
+            if( closing )
+                return;
+            closing = true;
+            notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+        if( failure != null )
+            throw new IOException("The rating store failed!", failure);
+    }
+}
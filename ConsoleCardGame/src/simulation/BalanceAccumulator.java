@@ -0,0 +1,213 @@
+package simulation;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import cards.DeckFaction;
+import game.Game;
+import players.Computer;
+import players.ComputerType;
+import players.Player;
+import utility.Util;
+
+/**
+ * A data structure. Streaming win rate counters of every matchup:
+ * faction x faction x computer type x computer type, in seat order (A sat before B).
+ * Each round of a game is one result for every pair of players in it: the one with the higher
+ * final board power wins, equal power is a draw. Only counts and sums are kept, never the games,
+ * so millions of games take the same memory as one.
+ * Accumulators are not thread safe: each worker fills its own and they are merged at the end.
+ * @see {@link BalanceRun}
+ * @author paulo
+ */
+public final class BalanceAccumulator {
+    private static final DeckFaction[] FACTIONS = DeckFaction.values();
+    private static final ComputerType[] TYPES = ComputerType.values();
+    private static final int F = FACTIONS.length;
+    private static final int T = TYPES.length;
+    private static final int CELLS = F * F * T * T;
+
+    private final long[] results;
+    private final long[] wins_a;
+    private final long[] wins_b;
+    private final long[] power_a;
+    private final long[] power_b;
+    private long games;
+
+    /**
+     * Constructor. Creates empty counters.
+     */
+    public BalanceAccumulator(){
+        results = new long[CELLS];
+        wins_a = new long[CELLS];
+        wins_b = new long[CELLS];
+        power_a = new long[CELLS];
+        power_b = new long[CELLS];
+        games = 0;
+    }
+
+    /**
+     * @return the index of the counters of a matchup
+     */
+    private static int cell( int faction_a, int faction_b, int type_a, int type_b ){
+        return ((faction_a * F + faction_b) * T + type_a) * T + type_b;
+    }
+
+    /**
+     * Adds the rounds of a finished game. Players that are not computers and rounds not played
+     * with a preset deck have no matchup and are left out.
+     * @param game the game, once over
+     */
+    public void record( Game game ){
+        games++;
+        Player[] players = game.getPlayers();
+        int rounds = game.getRoundsPlayed();
+        for( int r = 0; r < rounds; r++ ){
+            for( int a = 0; a < players.length; a++ ){
+                for( int b = a + 1; b < players.length; b++ ){
+                    if( !(players[a] instanceof Computer) || !(players[b] instanceof Computer) )
+                        continue;
+                    DeckFaction fa = game.getRoundFaction(r, a);
+                    DeckFaction fb = game.getRoundFaction(r, b);
+                    if( fa == null || fb == null )
+                        continue;
+
+                    int c = cell(fa.ordinal(), fb.ordinal(), ((Computer) players[a]).getType().ordinal(), ((Computer) players[b]).getType().ordinal());
+                    int sa = game.getRoundScore(r, a);
+                    int sb = game.getRoundScore(r, b);
+                    results[c]++;
+                    if( sa > sb )
+                        wins_a[c]++;
+                    else if( sb > sa )
+                        wins_b[c]++;
+                    power_a[c] += sa;
+                    power_b[c] += sb;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the counters of another accumulator to this one.
+     * @param other the other accumulator, left unchanged
+     */
+    public void merge( BalanceAccumulator other ){
+        for( int c = 0; c < CELLS; c++ ){
+            results[c] += other.results[c];
+            wins_a[c] += other.wins_a[c];
+            wins_b[c] += other.wins_b[c];
+            power_a[c] += other.power_a[c];
+            power_b[c] += other.power_b[c];
+        }
+        games += other.games;
+    }
+
+    /**
+     * @return the number of games recorded
+     */
+    public long getGames(){
+        return games;
+    }
+
+    /**
+     * Win rate of a faction against another, over every computer type and both seat orders.
+     * Draws count as half a win.
+     * @param row the faction
+     * @param col the opposing faction
+     * @return the wins (fractional) and the number of results
+     */
+    private double[] factionScore( int row, int col ){
+        double wins = 0;
+        long n = 0;
+        for( int ta = 0; ta < T; ta++ ){
+            for( int tb = 0; tb < T; tb++ ){
+                int c = cell(row, col, ta, tb); // row sat first
+                wins += wins_a[c] + (results[c] - wins_a[c] - wins_b[c]) / 2.0;
+                n += results[c];
+                c = cell(col, row, ta, tb);     // row sat second
+                wins += wins_b[c] + (results[c] - wins_a[c] - wins_b[c]) / 2.0;
+                n += results[c];
+            }
+        }
+        return new double[]{ wins, n };
+    }
+
+    /**
+     * Prints the faction x faction matrix: win rate of the row faction against the column faction,
+     * with its 95% Wilson interval.
+     */
+    public void printMatrix(){
+        Util.printSeparator("FACTION BALANCE (" + games + " games)");
+        for( String line : matrixLines() )
+            Util.print("%s", line);
+    }
+
+    /**
+     * @return the lines of the faction matrix
+     */
+    private String[] matrixLines(){
+        String[] lines = new String[F + 1];
+        StringBuilder sb = new StringBuilder(String.format("%-10s", "row/col"));
+        for( DeckFaction f : FACTIONS )
+            sb.append(String.format(" | %-24s", f.getName()));
+        sb.append(" | overall");
+        lines[0] = sb.toString();
+        for( int row = 0; row < F; row++ ){
+            sb = new StringBuilder(String.format("%-10s", FACTIONS[row].getName()));
+            double all_wins = 0;
+            long all_n = 0;
+            for( int col = 0; col < F; col++ ){
+                double[] score = factionScore(row, col);
+                long n = (long) score[1];
+                double[] ci = Intervals.wilson(score[0], n, 1.96);
+                sb.append(n == 0 ? String.format(" | %-24s", "-") : String.format(" | %.3f [%.3f, %.3f]   ", score[0] / n, ci[0], ci[1]));
+                if( col != row ){
+                    all_wins += score[0];
+                    all_n += n;
+                }
+            }
+            double[] ci = Intervals.wilson(all_wins, all_n, 1.96);
+            sb.append(all_n == 0 ? " | -" : String.format(" | %.3f [%.3f, %.3f]", all_wins / all_n, ci[0], ci[1]));
+            lines[row + 1] = sb.toString();
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the report: the faction matrix, then one CSV line per matchup played with its counts,
+     * win rate of seat A and its 95% Wilson interval and the average final board power of both seats.
+     * @param file the file to write, replaced if it exists
+     * @throws IOException if the file can not be written
+     */
+    public void export( Path file ) throws IOException {
+        try( BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8) ){
+            out.write("# Faction balance over " + games + " games, win rate of the row faction against the column faction (draws count half)");
+            out.newLine();
+            for( String line : matrixLines() ){
+                out.write("# " + line);
+                out.newLine();
+            }
+            out.write("faction_a,faction_b,type_a,type_b,results,wins_a,wins_b,draws,win_rate_a,win_rate_a_low,win_rate_a_high,avg_power_a,avg_power_b");
+            out.newLine();
+            for( int fa = 0; fa < F; fa++ )
+                for( int fb = 0; fb < F; fb++ )
+                    for( int ta = 0; ta < T; ta++ )
+                        for( int tb = 0; tb < T; tb++ ){
+                            int c = cell(fa, fb, ta, tb);
+                            long n = results[c];
+                            if( n == 0 )
+                                continue;
+                            long draws = n - wins_a[c] - wins_b[c];
+                            double wins = wins_a[c] + draws / 2.0;
+                            double[] ci = Intervals.wilson(wins, n, 1.96);
+                            out.write(String.format("%s,%s,%s,%s,%d,%d,%d,%d,%.4f,%.4f,%.4f,%.2f,%.2f",
+                                    FACTIONS[fa].getName(), FACTIONS[fb].getName(), TYPES[ta].getName(), TYPES[tb].getName(),
+                                    n, wins_a[c], wins_b[c], draws, wins / n, ci[0], ci[1],
+                                    (double) power_a[c] / n, (double) power_b[c] / n));
+                            out.newLine();
+                        }
+        }
+    }
+}
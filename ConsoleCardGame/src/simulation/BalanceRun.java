@@ -0,0 +1,212 @@
+package simulation;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cards.DeckFaction;
+import game.Game;
+import game.Zobrist;
+import players.Computer;
+import players.ComputerType;
+import players.Player;
+import utility.Util;
+
+/**
+ * Faction balance run.
+ * Plays many headless games with random factions (picked again every round) and random computer types
+ * on a worker pool. Each batch of games fills its own BalanceAccumulator and GameDistributions, they are merged
+ * once every batch is done, so workers never share or lock anything while playing.
+ * The seed of every game only depends on the seed of the run and the game number, so runs are repeatable
+ * whatever the number of workers.
+ * @see {@link BalanceAccumulator}
+ * @see {@link GameDistributions}
+ * @author paulo
+ */
+public class BalanceRun {
+    private static final int BATCH = 256;
+
+    private final ComputerType[] types;
+    private final int n_players;
+    private final int rounds;
+    private final long seed;
+    private final ExecutorService workers;
+    private ResultExporter exporter;
+
+    /**
+     * The results of the games of a run, or of a batch of them.
+     * @author paulo
+     */
+    public static final class Results {
+        public final BalanceAccumulator balance;
+        public final GameDistributions distributions;
+
+        private Results(){
+            this.balance = new BalanceAccumulator();
+            this.distributions = new GameDistributions(GameDistributions.DEFAULT_K);
+        }
+
+        /**
+         * Adds a finished game.
+         * @param game the game, once over
+         */
+        private void record( Game game ){
+            balance.record(game);
+            distributions.record(game);
+        }
+
+        /**
+         * Adds the results of other games.
+         * @param other the other results, left unchanged
+         */
+        private void merge( Results other ){
+            balance.merge(other.balance);
+            distributions.merge(other.distributions);
+        }
+    }
+
+    /**
+     * Constructor. Creates a run with its own worker pool.
+     * @param types the computer types players are picked from
+     * @param n_players the number of players in a game
+     * @param rounds the number of rounds of a game
+     * @param n_workers the number of games that can run at the same time
+     * @param seed the seed of the run
+     */
+    public BalanceRun( ComputerType[] types, int n_players, int rounds, int n_workers, long seed ){
+        if( types.length == 0 || n_players < 2 || rounds < 1 )
+            throw new IllegalArgumentException("A balance run needs a computer type, 2 players and a round at least!");
+
+        this.types = types.clone();
+        this.n_players = n_players;
+        this.rounds = rounds;
+        this.seed = seed;
+        this.workers = Executors.newFixedThreadPool(n_workers, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ){
+                Thread t = new Thread(r, "balance-worker-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Sets where every game played is also exported to, row by row.
+     * @param exporter the exporter, null to not export
+     */
+    public void setExporter( ResultExporter exporter ){
+        this.exporter = exporter;
+    }
+
+    /**
+     * Plays games and collects their results.
+     * @param games the number of games to play
+     * @return the merged results of every game
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public Results run( int games ) throws InterruptedException {
+        ArrayList<Future<Results>> futures = new ArrayList<Future<Results>>();
+        for( int from = 0; from < games; from += BATCH ){
+            final int start = from;
+            final int end = Math.min(games, from + BATCH);
+            futures.add(workers.submit(() -> playBatch(start, end)));
+        }
+
+        Results total = new Results();
+        try {
+            for( Future<Results> f : futures )
+                total.merge(f.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A balance batch crashed!", e.getCause());
+        }
+        return total;
+    }
+
+    /**
+     * Plays a range of games into new results.
+     * @param from the first game number
+     * @param to the end game number
+     * @return the results of the games
+     * @throws IOException if a game can not be exported
+     */
+    private Results playBatch( int from, int to ) throws IOException {
+        Results results = new Results();
+        for( int n = from; n < to; n++ ){
+            Game game = playGame(n);
+            results.record(game);
+            if( exporter != null )
+                exporter.write(game);
+        }
+        return results;
+    }
+
+    /**
+     * Plays a headless game with random computer types and factions.
+     * @param n the game number
+     * @return the game, once over
+     */
+    private Game playGame( int n ){
+        long game_seed = Zobrist.mixKey(seed, n);
+        Random rnd = new Random(game_seed);
+        Player[] players = new Player[n_players];
+        for( int i = 0; i < n_players; i++ )
+            players[i] = new Computer(i, "Computer " + i, types[rnd.nextInt(types.length)]);
+
+        Game game = new Game(n, players, new DeckFaction[n_players], rounds, game_seed);
+        game.start();
+        return game;
+    }
+
+    /**
+     * Stops the worker pool.
+     */
+    public void shutdown(){
+        workers.shutdown();
+    }
+
+    /**
+     * Runs a balance run of computers picked among LOGICAL, RANDOM and DUMB, prints the faction matrix
+     * and the distributions, exports the report and saves the distributions (to merge them with other runs).
+     * Arguments (all optional): games, workers, players, rounds, seed, report file, distributions file,
+     * directory to export every game to (not exported if missing).
+     * @param args the arguments
+     * @throws InterruptedException if interrupted while waiting for the workers
+     * @throws IOException if the report can not be written
+     */
+    public static void main( String[] args ) throws InterruptedException, IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int n_workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int n_players = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+        String report = args.length > 5 ? args[5] : "balance.csv";
+        String sketches = args.length > 6 ? args[6] : "distributions.bin";
+        String export = args.length > 7 ? args[7] : null;
+
+        ComputerType[] types = { ComputerType.LOGICAL, ComputerType.RANDOM, ComputerType.DUMB };
+        BalanceRun run = new BalanceRun(types, n_players, rounds, n_workers, seed);
+        ResultExporter exporter = export == null ? null : new ResultExporter(Paths.get(export), n_players, rounds);
+        run.setExporter(exporter);
+        long start = System.nanoTime();
+        Results result = run.run(games);
+        if( exporter != null )
+            exporter.close();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        run.shutdown();
+
+        result.balance.printMatrix();
+        result.distributions.print();
+        result.balance.export(Paths.get(report));
+        result.distributions.save(Paths.get(sketches));
+        Util.print("%d games in %.1fs (%.0f games/s), report written to %s and %s", result.balance.getGames(), seconds, result.balance.getGames() / seconds, report, sketches);
+    }
+}
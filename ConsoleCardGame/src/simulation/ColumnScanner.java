@@ -0,0 +1,137 @@
+package simulation;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+import utility.Util;
+
+/**
+ * Sequential reader of one column written by ResultExporter.
+ * Only the file of the column is opened, read in large chunks, so scanning a column costs its own size
+ * and not the size of its table.
+ * @see {@link ResultExporter}
+ * @author paulo
+ */
+public class ColumnScanner implements Closeable {
+    private static final int CHUNK = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int width;
+    private final long rows;
+    private long read;
+
+    /**
+     * Constructor. Opens a column, its width is looked up in the schema header of the directory.
+     * @param dir the directory of the tables
+     * @param table the table
+     * @param name the column
+     * @throws IOException if the schema or the column can not be read
+     */
+    public ColumnScanner( Path dir, String table, String name ) throws IOException {
+        this.width = widthOf(dir, table, name);
+        this.channel = FileChannel.open(dir.resolve(ResultExporter.fileName(table, name)), StandardOpenOption.READ);
+        this.rows = channel.size() / width; // a row cut by a crash is not counted
+        this.buffer = ByteBuffer.allocateDirect(CHUNK - CHUNK % width);
+        this.buffer.limit(0);
+        this.read = 0;
+    }
+
+    /**
+     * Looks a column up in the schema header.
+     * @return the width of the column in bytes
+     * @throws IOException if the schema can not be read or does not have the column
+     */
+    private static int widthOf( Path dir, String table, String name ) throws IOException {
+        for( String line : Files.readAllLines(dir.resolve(ResultExporter.SCHEMA), StandardCharsets.UTF_8) ){
+            String[] words = line.trim().split("\\s+");
+            if( words.length == 4 && words[0].equals("column") && words[1].equals(table) && words[2].equals(name) )
+                return Integer.parseInt(words[3]);
+        }
+        throw new IOException("No column " + table + "." + name + " in the schema!");
+    }
+
+    /**
+     * @return the number of rows in the column
+     */
+    public long getRows(){
+        return rows;
+    }
+
+    /**
+     * @return if there are rows left to read
+     */
+    public boolean hasNext(){
+        return read < rows;
+    }
+
+    /**
+     * Reads the next row.
+     * @return the value of the row
+     * @throws IOException if the column can not be read
+     */
+    public long next() throws IOException {
+        if( !hasNext() )
+            throw new IllegalStateException("No rows left in the column!");
+        if( buffer.remaining() < width ){
+            buffer.compact();
+            while( buffer.position() < width )
+                if( channel.read(buffer) < 0 )
+                    throw new IOException("Column ended early!");
+            buffer.flip();
+        }
+        read++;
+        switch( width ){
+            case 1: return buffer.get();
+            case 2: return buffer.getShort();
+            case 4: return buffer.getInt();
+            case 8: return buffer.getLong();
+            default: throw new Error("Invalid column width!");
+        }
+    }
+
+    /**
+     * Reads every row left.
+     * @param consumer called with the value of each row
+     * @throws IOException if the column can not be read
+     */
+    public void forEach( LongConsumer consumer ) throws IOException {
+        while( hasNext() )
+            consumer.accept(next());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Prints the rows, sum, min and max of a column.
+     * Arguments: directory, table, column.
+     * @param args the arguments
+     * @throws IOException if the column can not be read
+     */
+    public static void main( String[] args ) throws IOException {
+        if( args.length < 3 )
+            throw new IllegalArgumentException("Usage: ColumnScanner <directory> <table> <column>");
+        try( ColumnScanner scanner = new ColumnScanner(Paths.get(args[0]), args[1], args[2]) ){
+            long[] stats = { 0, Long.MAX_VALUE, Long.MIN_VALUE };
+            long start = System.nanoTime();
+            scanner.forEach(v -> {
+                stats[0] += v;
+                stats[1] = Math.min(stats[1], v);
+                stats[2] = Math.max(stats[2], v);
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Util.print("%s.%s: %d rows, sum %d, min %d, max %d (%.2fs)", args[1], args[2], scanner.getRows(), stats[0],
+                    scanner.getRows() == 0 ? 0 : stats[1], scanner.getRows() == 0 ? 0 : stats[2], seconds);
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package simulation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import cards.CardPool;
+import cards.Deck;
+import cards.DeckFaction;
+import game.Game;
+import game.Zobrist;
+import players.Computer;
+import players.ComputerType;
+import players.Player;
+import utility.Util;
+
+/**
+ * Genetic deck builder.
+ * Evolves deck lists drawn from a card pool. The fitness of a deck is its win rate in headless games
+ * against reference decks played by reference computer types (a drawn game counts as half a win),
+ * decks are ranked by the lower bound of their win rate so lucky short evaluations do not win.
+ *  - the decks of a generation are evaluated in parallel on a worker pool;
+ *  - a deck is played in batches of games until the Wilson interval of its win rate is tight enough,
+ *    or its upper bound falls below the lower bound of the best deck of the last generation (it can not be the best);
+ *  - fitness is cached by the hash of the deck list, a deck is never evaluated twice;
+ *  - the seed of every game only depends on the deck and the game number, so runs are repeatable.
+ * @see {@link CardPool}
+ * @author paulo
+ */
+public class DeckOptimizer {
+    private final CardPool pool;
+    private final int[][] references;
+    private final ComputerType[] opponents;
+    private final ComputerType type;
+    private final ExecutorService workers;
+    private final Random rng;
+    private final long seed;
+    private final ConcurrentHashMap<Long, Fitness> cache;
+
+    // genetic algorithm parameters
+    private int deck_size = Deck.DEFAULT_DECK_SIZE;
+    private int max_copies = 2;
+    private int population = 48;
+    private int elite = 4;
+    private int tournament = 3;
+    private double mutation_rate = 0.2;
+    private int rounds = 1;
+    private int batch = 16;
+    private int max_games = 400;
+    private double z = 1.96;
+    private double target_half_width = 0.05;
+
+    // best deck of the last generation, used to stop evaluating decks that can not beat it
+    private volatile double best_lower;
+
+    // statistics
+    private final LongAdder games_played;
+    private final LongAdder decks_evaluated;
+    private final LongAdder cache_hits;
+
+    /**
+     * The fitness of a deck list: its win rate in the games it was played.
+     * @author paulo
+     */
+    public static final class Fitness {
+        public final int[] deck;
+        public final double wins;
+        public final int games;
+        public final double lower;
+        public final double upper;
+
+        private Fitness( int[] deck, double wins, int games, double z ){
+            this.deck = deck;
+            this.wins = wins;
+            this.games = games;
+            double[] interval = Intervals.wilson(wins, games, z);
+            this.lower = interval[0];
+            this.upper = interval[1];
+        }
+
+        /**
+         * @return the win rate of the deck
+         */
+        public double getWinRate(){
+            return games == 0 ? 0 : wins / games;
+        }
+    }
+
+    /**
+     * Constructor. Creates an optimizer with its own worker pool.
+     * @param pool the card pool decks are built from
+     * @param references the deck lists evolved decks play against
+     * @param opponents the computer types playing the reference decks
+     * @param type the computer type playing the evolved decks
+     * @param n_workers the number of games that can run at the same time
+     * @param seed the seed of the optimizer
+     */
+    public DeckOptimizer( CardPool pool, int[][] references, ComputerType[] opponents, ComputerType type, int n_workers, long seed ){
+        if( references.length == 0 || opponents.length == 0 )
+            throw new IllegalArgumentException("The optimizer needs at least one reference deck and opponent!");
+
+        this.pool = pool;
+        this.references = references.clone();
+        this.opponents = opponents.clone();
+        this.type = type;
+        this.seed = seed;
+        this.rng = new Random(seed);
+        this.cache = new ConcurrentHashMap<Long, Fitness>();
+        this.workers = Executors.newFixedThreadPool(n_workers, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ){
+                Thread t = new Thread(r, "optimizer-worker-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.best_lower = 0;
+        this.games_played = new LongAdder();
+        this.decks_evaluated = new LongAdder();
+        this.cache_hits = new LongAdder();
+    }
+
+    /**
+     * Sets the shape of the decks built.
+     * @param deck_size the number of cards in a deck
+     * @param max_copies the max copies of the same card in a deck
+     */
+    public void setDeckShape( int deck_size, int max_copies ){
+        if( (long) max_copies * pool.size() < deck_size )
+            throw new IllegalArgumentException("The pool does not have enough cards for a deck of that size!");
+        this.deck_size = deck_size;
+        this.max_copies = max_copies;
+    }
+
+    /**
+     * Sets the parameters of the genetic algorithm.
+     * @param population the number of decks in a generation
+     * @param elite the number of best decks kept as they are in the next generation
+     * @param tournament the number of decks competing to be picked as a parent
+     * @param mutation_rate the chance of each card of a child being replaced by a random one
+     */
+    public void setEvolution( int population, int elite, int tournament, double mutation_rate ){
+        this.population = population;
+        this.elite = Math.min(elite, population);
+        this.tournament = Math.max(tournament, 1);
+        this.mutation_rate = mutation_rate;
+    }
+
+    /**
+     * Sets how decks are evaluated.
+     * @param rounds the rounds of each game
+     * @param batch the games played between two checks of the confidence interval
+     * @param max_games the most games a deck is played
+     * @param z the z score of the confidence interval (1.96 for 95%)
+     * @param target_half_width the evaluation stops once the interval is this tight
+     */
+    public void setEvaluation( int rounds, int batch, int max_games, double z, double target_half_width ){
+        this.rounds = rounds;
+        this.batch = Math.max(batch, 1);
+        this.max_games = Math.max(max_games, this.batch);
+        this.z = z;
+        this.target_half_width = target_half_width;
+    }
+
+    /**
+     * Runs the genetic algorithm.
+     * @param generations the number of generations
+     * @param start deck lists put in the first generation (for example the presets), the rest is random
+     * @return the fitness of the best deck found
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public Fitness run( int generations, int[][] start ) throws InterruptedException {
+        long started = System.nanoTime();
+        ArrayList<int[]> decks = new ArrayList<int[]>();
+        for( int i = 0; i < start.length && decks.size() < population; i++ )
+            decks.add(canonical(start[i].clone()));
+        while( decks.size() < population )
+            decks.add(randomDeck());
+
+        Fitness best = null;
+        for( int g = 1; g <= generations; g++ ){
+            Fitness[] ranked = evaluate(decks);
+            // ranked by the lower bound, a deck has to prove it is good, ties by win rate
+            Arrays.sort(ranked, (x, y) -> x.lower != y.lower ? Double.compare(y.lower, x.lower) : Double.compare(y.getWinRate(), x.getWinRate()));
+            if( best == null || ranked[0].lower > best.lower )
+                best = ranked[0];
+            best_lower = ranked[0].lower;
+
+            double seconds = (System.nanoTime() - started) / 1e9;
+            Util.print("Generation %d: best %.3f [%.3f, %.3f] in %d games - %s", g, ranked[0].getWinRate(), ranked[0].lower, ranked[0].upper, ranked[0].games, pool.describe(ranked[0].deck));
+            Util.print("  %d decks evaluated (%d cache hits), %d games, %.0f games/s", getDecksEvaluated(), getCacheHits(), getGamesPlayed(), seconds > 0 ? getGamesPlayed() / seconds : 0);
+
+            if( g < generations )
+                decks = breed(ranked);
+        }
+        return best;
+    }
+
+    /**
+     * Evaluates a generation in parallel. Decks found in the cache are not played again.
+     * @param decks the decks of the generation
+     * @return the fitness of each deck
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    private Fitness[] evaluate( ArrayList<int[]> decks ) throws InterruptedException {
+        ArrayList<Future<Fitness>> futures = new ArrayList<Future<Fitness>>();
+        for( int[] deck : decks ){
+            final int[] d = deck;
+            futures.add(workers.submit(() -> fitnessOf(d)));
+        }
+        Fitness[] results = new Fitness[decks.size()];
+        try {
+            for( int i = 0; i < results.length; i++ )
+                results[i] = futures.get(i).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A deck evaluation crashed!", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Gets the fitness of a deck, from the cache or by playing it.
+     * The same deck twice in a generation may be played twice, but is only cached once.
+     * @param deck the deck list, canonical
+     * @return the fitness
+     */
+    private Fitness fitnessOf( int[] deck ){
+        long key = hashOf(deck);
+        Fitness cached = cache.get(key);
+        if( cached != null && Arrays.equals(cached.deck, deck) ){
+            cache_hits.increment();
+            return cached;
+        }
+
+        boolean was_muted = Util.isMuted();
+        Util.setMuted(true);
+        double wins = 0;
+        int games = 0;
+        try {
+            while( games < max_games ){
+                for( int i = 0; i < batch; i++, games++ )
+                    wins += playGame(deck, key, games);
+                double[] interval = Intervals.wilson(wins, games, z);
+                if( (interval[1] - interval[0]) / 2 <= target_half_width || interval[1] < best_lower )
+                    break;
+            }
+        } finally {
+            Util.setMuted(was_muted);
+        }
+
+        Fitness fitness = new Fitness(deck, wins, games, z);
+        decks_evaluated.increment();
+        if( cached == null )
+            cache.putIfAbsent(key, fitness); // on a hash collision the first deck keeps the entry
+        return fitness;
+    }
+
+    /**
+     * Plays one evaluation game of a deck. Opponents and seats rotate with the game number.
+     * @param deck the deck list
+     * @param key the hash of the deck list
+     * @param n the game number
+     * @return 1 for a win, 0.5 for a draw, 0 for a loss
+     */
+    private double playGame( int[] deck, long key, int n ){
+        int[] reference = references[n % references.length];
+        ComputerType opponent = opponents[(n / references.length) % opponents.length];
+        int seat = n % 2;
+
+        Player[] players = new Player[2];
+        Deck[] decks = new Deck[2];
+        players[seat] = new Computer(seat, "candidate", type);
+        decks[seat] = pool.newDeck("candidate", deck);
+        players[1-seat] = new Computer(1-seat, "reference", opponent);
+        decks[1-seat] = pool.newDeck("reference", reference);
+        new Game(n, players, decks, rounds, Zobrist.mixKey(seed ^ key, n)).start();
+        games_played.increment();
+
+        int mine = players[seat].getRoundsWon();
+        int theirs = players[1-seat].getRoundsWon();
+        return mine > theirs ? 1 : mine == theirs ? 0.5 : 0;
+    }
+
+    /**
+     * Makes the next generation: the elite is kept, the rest are children of tournament picked parents.
+     * @param ranked the fitness of the last generation, best first
+     * @return the decks of the next generation
+     */
+    private ArrayList<int[]> breed( Fitness[] ranked ){
+        ArrayList<int[]> next = new ArrayList<int[]>();
+        for( int i = 0; i < elite; i++ )
+            next.add(ranked[i].deck);
+        while( next.size() < population ){
+            int[] a = pick(ranked).deck;
+            int[] b = pick(ranked).deck;
+            next.add(mutate(crossover(a, b)));
+        }
+        return next;
+    }
+
+    /**
+     * Tournament selection.
+     * @param ranked the fitness of the generation, best first
+     * @return the best of a few decks picked at random
+     */
+    private Fitness pick( Fitness[] ranked ){
+        int best = rng.nextInt(ranked.length);
+        for( int i = 1; i < tournament; i++ )
+            best = Math.min(best, rng.nextInt(ranked.length)); // ranked best first, the lowest index wins
+        return ranked[best];
+    }
+
+    /**
+     * Makes a child deck out of the cards of two parents, respecting the copy limit.
+     * @param a a parent deck list
+     * @param b a parent deck list
+     * @return the child deck list, canonical
+     */
+    private int[] crossover( int[] a, int[] b ){
+        int[] genes = new int[a.length + b.length];
+        System.arraycopy(a, 0, genes, 0, a.length);
+        System.arraycopy(b, 0, genes, a.length, b.length);
+        for( int i = genes.length - 1; i > 0; i-- ){
+            int j = rng.nextInt(i + 1);
+            int t = genes[i];
+            genes[i] = genes[j];
+            genes[j] = t;
+        }
+
+        int[] child = new int[deck_size];
+        int[] copies = new int[pool.size()];
+        int n = 0;
+        for( int i = 0; i < genes.length && n < deck_size; i++ ){
+            if( copies[genes[i]] < max_copies ){
+                copies[genes[i]]++;
+                child[n++] = genes[i];
+            }
+        }
+        while( n < deck_size )
+            child[n++] = randomCard(copies);
+        return canonical(child);
+    }
+
+    /**
+     * Replaces cards of a deck by random ones.
+     * @param deck the deck list, changed in place
+     * @return the deck list, canonical
+     */
+    private int[] mutate( int[] deck ){
+        int[] copies = new int[pool.size()];
+        for( int id : deck )
+            copies[id]++;
+        for( int i = 0; i < deck.length; i++ ){
+            if( rng.nextDouble() < mutation_rate ){
+                copies[deck[i]]--;
+                deck[i] = randomCard(copies);
+            }
+        }
+        return canonical(deck);
+    }
+
+    /**
+     * @return a deck of random cards, respecting the copy limit
+     */
+    private int[] randomDeck(){
+        int[] deck = new int[deck_size];
+        int[] copies = new int[pool.size()];
+        for( int i = 0; i < deck_size; i++ )
+            deck[i] = randomCard(copies);
+        return canonical(deck);
+    }
+
+    /**
+     * Picks a random card that has not reached the copy limit, and counts it.
+     * @param copies the copies of each card already in the deck
+     * @return the id of the card
+     */
+    private int randomCard( int[] copies ){
+        int id;
+        do {
+            id = rng.nextInt(pool.size());
+        } while( copies[id] >= max_copies );
+        copies[id]++;
+        return id;
+    }
+
+    /**
+     * Sorts a deck list. The order of a deck list does not matter, the deck is shuffled before playing,
+     * so the sorted list is the one hashed and cached.
+     * @param deck the deck list, sorted in place
+     * @return the deck list
+     */
+    private static int[] canonical( int[] deck ){
+        Arrays.sort(deck);
+        return deck;
+    }
+
+    /**
+     * @param deck a canonical deck list
+     * @return the hash of the deck list
+     */
+    private static long hashOf( int[] deck ){
+        long h = deck.length;
+        for( int id : deck )
+            h = Zobrist.mixKey(h, id);
+        return h;
+    }
+
+    /**
+     * @return the number of games played
+     */
+    public long getGamesPlayed(){
+        return games_played.sum();
+    }
+
+    /**
+     * @return the number of decks played (cache hits not counted)
+     */
+    public long getDecksEvaluated(){
+        return decks_evaluated.sum();
+    }
+
+    /**
+     * @return the number of decks whose fitness was found in the cache
+     */
+    public long getCacheHits(){
+        return cache_hits.sum();
+    }
+
+    /**
+     * Stops the worker pool.
+     */
+    public void shutdown(){
+        workers.shutdown();
+    }
+
+    /**
+     * Runs the optimizer on the preset card pool against the presets.
+     * Arguments (all optional): generations, population, workers, seed.
+     * @param args the arguments
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public static void main( String[] args ) throws InterruptedException {
+        int generations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int population = args.length > 1 ? Integer.parseInt(args[1]) : 48;
+        int n_workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        CardPool pool = CardPool.fromPresets();
+        DeckFaction[] factions = DeckFaction.values();
+        int[][] presets = new int[factions.length][];
+        for( int i = 0; i < factions.length; i++ )
+            presets[i] = pool.getPreset(factions[i]);
+
+        DeckOptimizer optimizer = new DeckOptimizer(pool, presets, new ComputerType[]{ ComputerType.LOGICAL }, ComputerType.LOGICAL, n_workers, seed);
+        optimizer.setEvolution(population, Math.max(1, population / 12), 3, 0.2);
+        Fitness best = optimizer.run(generations, presets);
+        Util.printSeparator("BEST DECK");
+        Util.print("%s - win rate %.3f [%.3f, %.3f] in %d games", pool.describe(best.deck), best.getWinRate(), best.lower, best.upper, best.games);
+        optimizer.shutdown();
+    }
+}
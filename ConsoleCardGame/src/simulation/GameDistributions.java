@@ -0,0 +1,178 @@
+package simulation;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import game.Game;
+import utility.Util;
+
+/**
+ * A data structure. Distributions of finished games, in quantile sketches:
+ *  - turns per round;
+ *  - final board power of each player on each round;
+ *  - cards destroyed per game;
+ *  - timed attributes triggered per game.
+ * Memory is bounded whatever the number of games. Distributions of worker threads are merged in memory,
+ * those of separate runs are saved to files and merged with main.
+ * @see {@link QuantileSketch}
+ * @author paulo
+ */
+public final class GameDistributions {
+    public static final int DEFAULT_K = 256;
+    private static final double[] REPORTED = { 0.5, 0.9, 0.99 };
+
+    private final QuantileSketch turns;
+    private final QuantileSketch power;
+    private final QuantileSketch destroyed;
+    private final QuantileSketch timed;
+
+    /**
+     * Constructor. Creates empty distributions.
+     * @param k the accuracy of the sketches
+     */
+    public GameDistributions( int k ){
+        this(new QuantileSketch(k), new QuantileSketch(k), new QuantileSketch(k), new QuantileSketch(k));
+    }
+
+    /**
+     * Constructor. Creates distributions out of sketches.
+     */
+    private GameDistributions( QuantileSketch turns, QuantileSketch power, QuantileSketch destroyed, QuantileSketch timed ){
+        this.turns = turns;
+        this.power = power;
+        this.destroyed = destroyed;
+        this.timed = timed;
+    }
+
+    /**
+     * Adds the rounds of a finished game.
+     * @param game the game, once over
+     */
+    public void record( Game game ){
+        int rounds = game.getRoundsPlayed();
+        int n_players = game.getPlayers().length;
+        int game_destroyed = 0;
+        int game_timed = 0;
+        for( int r = 0; r < rounds; r++ ){
+            turns.add(game.getRoundTurns(r));
+            for( int i = 0; i < n_players; i++ )
+                power.add(game.getRoundScore(r, i));
+            game_destroyed += game.getRoundCardsDestroyed(r);
+            game_timed += game.getRoundTimedTriggered(r);
+        }
+        destroyed.add(game_destroyed);
+        timed.add(game_timed);
+    }
+
+    /**
+     * Adds the distributions of other games to these.
+     * @param other the other distributions, left unchanged
+     */
+    public void merge( GameDistributions other ){
+        turns.merge(other.turns);
+        power.merge(other.power);
+        destroyed.merge(other.destroyed);
+        timed.merge(other.timed);
+    }
+
+    /**
+     * @return the turns per round
+     */
+    public QuantileSketch getTurns(){
+        return turns;
+    }
+
+    /**
+     * @return the final board power of each player on each round
+     */
+    public QuantileSketch getPower(){
+        return power;
+    }
+
+    /**
+     * @return the cards destroyed per game
+     */
+    public QuantileSketch getDestroyed(){
+        return destroyed;
+    }
+
+    /**
+     * @return the timed attributes triggered per game
+     */
+    public QuantileSketch getTimed(){
+        return timed;
+    }
+
+    /**
+     * Prints the count, min, p50, p90, p99 and max of every distribution.
+     */
+    public void print(){
+        Util.printSeparator("DISTRIBUTIONS");
+        Util.print("%-22s %12s %8s %8s %8s %8s %8s", "", "count", "min", "p50", "p90", "p99", "max");
+        print("turns per round", turns);
+        print("power per player", power);
+        print("destroyed per game", destroyed);
+        print("timed per game", timed);
+    }
+
+    /**
+     * Prints a line of the distributions.
+     * @param name the name of the distribution
+     * @param sketch its sketch
+     */
+    private static void print( String name, QuantileSketch sketch ){
+        double[] q = sketch.quantiles(REPORTED);
+        Util.print("%-22s %12d %8.0f %8.0f %8.0f %8.0f %8.0f", name, sketch.getCount(), sketch.getMin(), q[0], q[1], q[2], sketch.getMax());
+    }
+
+    /**
+     * Saves the distributions to a file, to be merged with those of other runs.
+     * @param file the file, replaced if it exists
+     * @throws IOException if the file can not be written
+     */
+    public void save( Path file ) throws IOException {
+        try( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file))) ){
+            turns.writeTo(out);
+            power.writeTo(out);
+            destroyed.writeTo(out);
+            timed.writeTo(out);
+        }
+    }
+
+    /**
+     * Loads distributions saved with save.
+     * @param file the file
+     * @return the distributions
+     * @throws IOException if the file can not be read or does not hold distributions
+     */
+    public static GameDistributions load( Path file ) throws IOException {
+        try( DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))) ){
+            return new GameDistributions(QuantileSketch.readFrom(in), QuantileSketch.readFrom(in), QuantileSketch.readFrom(in), QuantileSketch.readFrom(in));
+        }
+    }
+
+    /**
+     * Merges the distributions saved by separate runs and prints them.
+     * Arguments: the files to merge, then optionally "-o" and the file to save the merged distributions to.
+     * @param args the arguments
+     * @throws IOException if a file can not be read or written
+     */
+    public static void main( String[] args ) throws IOException {
+        GameDistributions total = new GameDistributions(DEFAULT_K);
+        Path output = null;
+        for( int i = 0; i < args.length; i++ ){
+            if( args[i].equals("-o") && i + 1 < args.length )
+                output = Paths.get(args[++i]);
+            else
+                total.merge(load(Paths.get(args[i])));
+        }
+        total.print();
+        if( output != null )
+            total.save(output);
+    }
+}
@@ -0,0 +1,28 @@
+package simulation;
+
+/**
+ * Confidence intervals of the rates measured by simulations.
+ * @author paulo
+ */
+public final class Intervals {
+    private Intervals(){}
+
+    /**
+     * Computes the Wilson score interval of a rate. Unlike the normal approximation it stays
+     * inside [0, 1] and behaves on small counts and rates close to 0 or 1.
+     * @param successes the successes, may be fractional (a draw counting as half a win)
+     * @param trials the number of trials
+     * @param z the z score of the interval (1.96 for 95%)
+     * @return the lower and upper bounds, [0, 1] if there were no trials
+     */
+    public static double[] wilson( double successes, long trials, double z ){
+        if( trials == 0 )
+            return new double[]{ 0, 1 };
+        double n = trials;
+        double p = successes / n;
+        double z2 = z * z;
+        double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+        double half = z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n)) / (1 + z2 / n);
+        return new double[]{ Math.max(0, center - half), Math.min(1, center + half) };
+    }
+}
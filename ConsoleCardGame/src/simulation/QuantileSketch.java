@@ -0,0 +1,293 @@
+package simulation;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A data structure. Streaming quantile sketch (KLL).
+ * Keeps a bounded sample of the values added in levels of compactors: an item on level h stands for 2^h values.
+ * When a level is full it is sorted and every other item (starting at a random offset) is promoted to the next
+ * level, the others are dropped. Lower levels hold fewer items than higher ones, so the memory is about 3k items
+ * however many values are added, and the rank error of a quantile is about 1.7/k.
+ * Sketches can be merged (the same level of both is appended, then compacted) and written to / read from a stream,
+ * so sketches of worker threads or of separate runs add up to the sketch of every value.
+ * Not thread safe: each worker fills its own sketch.
+ * @see {@link GameDistributions}
+ * @author paulo
+ */
+public final class QuantileSketch {
+    private static final int MAGIC = 0x4B4C4C31; // "KLL1"
+    private static final int MIN_WIDTH = 8;
+    private static final double SHRINK = 2.0 / 3.0;
+
+    private final int k;
+    private double[][] levels;
+    private int[] sizes;
+    private int n_levels;
+    private int retained;
+    private long count;
+    private double min;
+    private double max;
+    private long coin; // xorshift state of the compaction offsets, seeded so runs are repeatable
+
+    /**
+     * Constructor. Creates an empty sketch.
+     * @param k the accuracy of the sketch, the capacity of its top level
+     */
+    public QuantileSketch( int k ){
+        if( k < MIN_WIDTH )
+            throw new IllegalArgumentException("The accuracy of a sketch must be at least " + MIN_WIDTH + "!");
+        this.k = k;
+        this.levels = new double[][]{ new double[k] };
+        this.sizes = new int[1];
+        this.n_levels = 1;
+        this.retained = 0;
+        this.count = 0;
+        this.min = Double.NaN;
+        this.max = Double.NaN;
+        this.coin = 0x9E3779B97F4A7C15L ^ k;
+    }
+
+    /**
+     * Adds a value.
+     * @param value the value
+     */
+    public void add( double value ){
+        if( count == 0 || value < min )
+            min = value;
+        if( count == 0 || value > max )
+            max = value;
+        count++;
+        push(0, value);
+        if( retained > capacity() )
+            compress();
+    }
+
+    /**
+     * Adds every value of another sketch to this one.
+     * @param other the other sketch, left unchanged
+     */
+    public void merge( QuantileSketch other ){
+        if( other.count == 0 )
+            return;
+        if( count == 0 || other.min < min )
+            min = other.min;
+        if( count == 0 || other.max > max )
+            max = other.max;
+        count += other.count;
+        for( int h = 0; h < other.n_levels; h++ ){
+            for( int i = 0; i < other.sizes[h]; i++ )
+                push(h, other.levels[h][i]);
+        }
+        compress();
+    }
+
+    /**
+     * Appends an item to a level, growing it if needed.
+     * @param h the level
+     * @param value the item
+     */
+    private void push( int h, double value ){
+        while( h >= n_levels )
+            addLevel();
+        if( sizes[h] == levels[h].length )
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        levels[h][sizes[h]++] = value;
+        retained++;
+    }
+
+    /**
+     * Adds an empty level on top.
+     */
+    private void addLevel(){
+        if( n_levels == levels.length ){
+            levels = Arrays.copyOf(levels, n_levels * 2);
+            sizes = Arrays.copyOf(sizes, n_levels * 2);
+        }
+        levels[n_levels] = new double[k];
+        sizes[n_levels] = 0;
+        n_levels++;
+    }
+
+    /**
+     * @param h a level
+     * @return the number of items the level can hold before it is compacted
+     */
+    private int capacity( int h ){
+        return Math.max(MIN_WIDTH, (int) Math.ceil(k * Math.pow(SHRINK, n_levels - 1 - h)));
+    }
+
+    /**
+     * @return the number of items every level can hold together
+     */
+    private int capacity(){
+        int total = 0;
+        for( int h = 0; h < n_levels; h++ )
+            total += capacity(h);
+        return total;
+    }
+
+    /**
+     * Compacts the lowest full level until the sketch fits its capacity.
+     */
+    private void compress(){
+        while( retained > capacity() ){
+            for( int h = 0; h < n_levels; h++ ){
+                if( sizes[h] >= capacity(h) ){
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts a level and promotes every other item of it to the next level. With an odd number of items
+     * the smallest one stays.
+     * @param h the level
+     */
+    private void compact( int h ){
+        if( h + 1 == n_levels )
+            addLevel();
+        double[] level = levels[h];
+        int size = sizes[h];
+        Arrays.sort(level, 0, size);
+        int start = size & 1;
+        coin ^= coin << 13;
+        coin ^= coin >>> 7;
+        coin ^= coin << 17;
+        for( int i = start + (int) (coin & 1); i < size; i += 2 )
+            push(h + 1, level[i]);
+        sizes[h] = start;
+        retained -= size - start;
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getCount(){
+        return count;
+    }
+
+    /**
+     * @return the smallest value added, NaN if none was
+     */
+    public double getMin(){
+        return min;
+    }
+
+    /**
+     * @return the largest value added, NaN if none was
+     */
+    public double getMax(){
+        return max;
+    }
+
+    /**
+     * @return the number of items kept by the sketch
+     */
+    public int getRetained(){
+        return retained;
+    }
+
+    /**
+     * Gets an estimate of a quantile.
+     * @param q the quantile, from 0 to 1
+     * @return the estimate, NaN if no value was added
+     */
+    public double quantile( double q ){
+        return quantiles(q)[0];
+    }
+
+    /**
+     * Gets estimates of quantiles, sorting the kept items once.
+     * @param qs the quantiles, from 0 to 1
+     * @return the estimate of each quantile, NaN if no value was added
+     */
+    public double[] quantiles( double... qs ){
+        double[] result = new double[qs.length];
+        if( count == 0 ){
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+
+        // every item with its weight, sorted by value
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int[] heads = new int[n_levels];
+        double[][] sorted = new double[n_levels][];
+        for( int h = 0; h < n_levels; h++ ){
+            sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+            Arrays.sort(sorted[h]);
+        }
+        long total = 0;
+        for( int i = 0; i < retained; i++ ){
+            int best = -1;
+            for( int h = 0; h < n_levels; h++ )
+                if( heads[h] < sorted[h].length && (best < 0 || sorted[h][heads[h]] < sorted[best][heads[best]]) )
+                    best = h;
+            values[i] = sorted[best][heads[best]++];
+            total += 1L << best;
+            weights[i] = total;
+        }
+
+        for( int j = 0; j < qs.length; j++ ){
+            if( qs[j] < 0 || qs[j] > 1 )
+                throw new IllegalArgumentException("A quantile must be between 0 and 1!");
+            if( qs[j] == 0 ){
+                result[j] = min;
+                continue;
+            }
+            if( qs[j] == 1 ){
+                result[j] = max;
+                continue;
+            }
+            long rank = (long) Math.ceil(qs[j] * total);
+            int i = Arrays.binarySearch(weights, rank);
+            result[j] = values[i >= 0 ? i : -i - 1];
+        }
+        return result;
+    }
+
+    /**
+     * Writes the sketch to a stream.
+     * @param out the stream
+     * @throws IOException if the stream can not be written
+     */
+    public void writeTo( DataOutput out ) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(k);
+        out.writeLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeInt(n_levels);
+        for( int h = 0; h < n_levels; h++ ){
+            out.writeInt(sizes[h]);
+            for( int i = 0; i < sizes[h]; i++ )
+                out.writeDouble(levels[h][i]);
+        }
+    }
+
+    /**
+     * Reads a sketch written by writeTo.
+     * @param in the stream
+     * @return the sketch
+     * @throws IOException if the stream can not be read or does not hold a sketch
+     */
+    public static QuantileSketch readFrom( DataInput in ) throws IOException {
+        if( in.readInt() != MAGIC )
+            throw new IOException("Not a quantile sketch!");
+        QuantileSketch s = new QuantileSketch(in.readInt());
+        s.count = in.readLong();
+        s.min = in.readDouble();
+        s.max = in.readDouble();
+        int n_levels = in.readInt();
+        for( int h = 0; h < n_levels; h++ ){
+            int size = in.readInt();
+            for( int i = 0; i < size; i++ )
+                s.push(h, in.readDouble());
+        }
+        return s;
+    }
+}
@@ -0,0 +1,292 @@
+package simulation;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import cards.DeckFaction;
+import game.Game;
+import players.Computer;
+import players.Player;
+
+/**
+ * Columnar exporter of game results.
+ * Streams finished games to a directory with two tables: games (one row per game) and rounds (one row per round
+ * of a game). Every column is its own file of fixed width big endian values, row i of a table is at offset
+ * i * width of each of its files, so scanning a column only reads that column's file.
+ * The directory holds a schema.txt header naming the tables, their columns and widths (see ColumnScanner).
+ * The seat and round columns are as wide as the number of players and rounds of the exporter need; a game
+ * with a value a column can not hold is refused before any of its rows is written.
+ *  - games: id, seed, rounds, winner (-1 for a draw), type_&lt;seat&gt; (ComputerType ordinal);
+ *  - rounds: game, round, turns, winner (-1 for a draw), faction_&lt;seat&gt; (DeckFaction ordinal, -1 if none), score_&lt;seat&gt;.
+ * Each column is buffered in a direct buffer, a share of the buffer memory of the exporter, written to its channel when full, and every channel is
+ * forced to disk every so many games, so a crash loses at most the games since the last sync.
+ * Games can be written by many workers at once, rows of all columns are appended together.
+ * @see {@link ColumnScanner}
+ * @author paulo
+ */
+public class ResultExporter implements Closeable {
+    public static final String SCHEMA = "schema.txt";
+    public static final int DEFAULT_BUFFER_MEMORY = 16 << 20;
+    public static final int MIN_BUFFER = 1 << 12;
+    public static final int DEFAULT_SYNC_GAMES = 100000;
+
+    private final int n_players;
+    private final int sync_games;
+    private final ArrayList<Column> columns;
+    private long games_since_sync;
+    private boolean closed;
+
+    // games table
+    private final Column g_id, g_seed, g_rounds, g_winner;
+    private final Column[] g_type;
+    // rounds table
+    private final Column r_game, r_round, r_turns, r_winner;
+    private final Column[] r_faction, r_score;
+
+    /**
+     * A column file being written: a channel and the buffer in front of it.
+     * @author paulo
+     */
+    private static final class Column {
+        public final String table;
+        public final String name;
+        public final int width;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        /**
+         * Constructor. Opens the file of the column, replacing it.
+         */
+        private Column( Path dir, String table, String name, int width, int buffer_size ) throws IOException {
+            this.table = table;
+            this.name = name;
+            this.width = width;
+            this.channel = FileChannel.open(dir.resolve(fileName(table, name)),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocateDirect(buffer_size - buffer_size % width);
+        }
+
+        /**
+         * Checks that a value fits in the width of the column.
+         * @param value the value
+         */
+        private void check( long value ){
+            long max = width == 8 ? Long.MAX_VALUE : (1L << (width * 8 - 1)) - 1;
+            if( value < -max - 1 || value > max )
+                throw new IllegalArgumentException("The value " + value + " does not fit in the " + width
+                        + " byte column " + table + "." + name + "!");
+        }
+
+        /**
+         * Appends a value, of the width of the column. Values that may not fit are checked first, so a row
+         * is never written to some columns only.
+         * @param value the value
+         * @throws IOException if the buffer had to be written and could not
+         */
+        private void put( long value ) throws IOException {
+            if( !buffer.hasRemaining() )
+                flush();
+            switch( width ){
+                case 1: buffer.put((byte) value); break;
+                case 2: buffer.putShort((short) value); break;
+                case 4: buffer.putInt((int) value); break;
+                case 8: buffer.putLong(value); break;
+                default: throw new Error("Invalid column width!");
+            }
+        }
+
+        /**
+         * Writes the buffer to the channel.
+         * @throws IOException if the channel can not be written
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            while( buffer.hasRemaining() )
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Constructor. Creates the directory if needed and replaces the tables in it.
+     * @param dir the directory of the tables
+     * @param n_players the number of players of every game written
+     * @param max_rounds the most rounds a game written can have
+     * @param buffer_memory the size in bytes of the buffers of all the columns, shared evenly (at least MIN_BUFFER each)
+     * @param sync_games the number of games between two syncs to disk
+     * @throws IOException if the files can not be created
+     */
+    public ResultExporter( Path dir, int n_players, int max_rounds, int buffer_memory, int sync_games ) throws IOException {
+        if( n_players < 2 || max_rounds < 1 || buffer_memory < 8 || sync_games < 1 )
+            throw new IllegalArgumentException("Invalid exporter settings!");
+        Files.createDirectories(dir);
+        this.n_players = n_players;
+        this.sync_games = sync_games;
+        this.columns = new ArrayList<Column>();
+        int buffer_size = Math.max(MIN_BUFFER, buffer_memory / (8 + 3 * n_players));
+        int seat = widthOf(n_players - 1);
+        int round = widthOf(max_rounds);
+
+        g_id = column(dir, "games", "id", 8, buffer_size);
+        g_seed = column(dir, "games", "seed", 8, buffer_size);
+        g_rounds = column(dir, "games", "rounds", round, buffer_size);
+        g_winner = column(dir, "games", "winner", seat, buffer_size);
+        g_type = new Column[n_players];
+        for( int i = 0; i < n_players; i++ )
+            g_type[i] = column(dir, "games", "type_" + i, 1, buffer_size);
+
+        r_game = column(dir, "rounds", "game", 8, buffer_size);
+        r_round = column(dir, "rounds", "round", round, buffer_size);
+        r_turns = column(dir, "rounds", "turns", 2, buffer_size);
+        r_winner = column(dir, "rounds", "winner", seat, buffer_size);
+        r_faction = new Column[n_players];
+        r_score = new Column[n_players];
+        for( int i = 0; i < n_players; i++ )
+            r_faction[i] = column(dir, "rounds", "faction_" + i, 1, buffer_size);
+        for( int i = 0; i < n_players; i++ )
+            r_score[i] = column(dir, "rounds", "score_" + i, 4, buffer_size);
+
+        writeSchema(dir);
+    }
+
+    /**
+     * Constructor. Creates an exporter with the default buffer memory and sync interval.
+     * @param dir the directory of the tables
+     * @param n_players the number of players of every game written
+     * @param max_rounds the most rounds a game written can have
+     * @throws IOException if the files can not be created
+     */
+    public ResultExporter( Path dir, int n_players, int max_rounds ) throws IOException {
+        this(dir, n_players, max_rounds, DEFAULT_BUFFER_MEMORY, DEFAULT_SYNC_GAMES);
+    }
+
+    /**
+     * @param max the largest value of a column, the smallest is -1
+     * @return the width in bytes of a column holding it
+     */
+    private static int widthOf( long max ){
+        if( max <= Byte.MAX_VALUE )
+            return 1;
+        if( max <= Short.MAX_VALUE )
+            return 2;
+        return max <= Integer.MAX_VALUE ? 4 : 8;
+    }
+
+    /**
+     * Opens a column and adds it to the schema.
+     * @return the column
+     */
+    private Column column( Path dir, String table, String name, int width, int buffer_size ) throws IOException {
+        Column c = new Column(dir, table, name, width, buffer_size);
+        columns.add(c);
+        return c;
+    }
+
+    /**
+     * @param table a table
+     * @param name a column of the table
+     * @return the name of the file of the column
+     */
+    static String fileName( String table, String name ){
+        return table + "." + name + ".col";
+    }
+
+    /**
+     * Writes the schema header: one "column" line per column with its table, name and width in bytes.
+     * @param dir the directory of the tables
+     * @throws IOException if the file can not be written
+     */
+    private void writeSchema( Path dir ) throws IOException {
+        try( BufferedWriter out = Files.newBufferedWriter(dir.resolve(SCHEMA), StandardCharsets.UTF_8) ){
+            out.write("# Card game results. Fixed width big endian signed columns, row i at offset i * width.");
+            out.newLine();
+            out.write("version 1");
+            out.newLine();
+            out.write("players " + n_players);
+            out.newLine();
+            for( Column c : columns ){
+                out.write("column " + c.table + " " + c.name + " " + c.width);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Appends a finished game and its rounds.
+     * @param game the game, once over, with the number of players of the exporter
+     * @throws IOException if a column can not be written
+     * @throws IllegalArgumentException if the game does not fit the columns, nothing is written then
+     */
+    public synchronized void write( Game game ) throws IOException {
+        if( closed )
+            throw new IllegalStateException("The exporter is closed!");
+        Player[] players = game.getPlayers();
+        if( players.length != n_players )
+            throw new IllegalArgumentException("The game does not have " + n_players + " players!");
+
+        int rounds = game.getRoundsPlayed();
+        g_rounds.check(rounds);
+        for( int r = 0; r < rounds; r++ )
+            r_turns.check(game.getRoundTurns(r));
+
+        g_id.put(game.getId());
+        g_seed.put(game.getSeed());
+        g_rounds.put(rounds);
+        g_winner.put(game.getWinner());
+        for( int i = 0; i < n_players; i++ )
+            g_type[i].put(players[i] instanceof Computer ? ((Computer) players[i]).getType().ordinal() : -1);
+
+        for( int r = 0; r < rounds; r++ ){
+            r_game.put(game.getId());
+            r_round.put(r);
+            r_turns.put(game.getRoundTurns(r));
+            int winner = -1;
+            for( int i = 0; i < n_players; i++ ){
+                if( game.isRoundWinner(r, i) )
+                    winner = winner == -1 ? i : -2;
+            }
+            r_winner.put(winner < 0 ? -1 : winner);
+            for( int i = 0; i < n_players; i++ ){
+                DeckFaction faction = game.getRoundFaction(r, i);
+                r_faction[i].put(faction == null ? -1 : faction.ordinal());
+                r_score[i].put(game.getRoundScore(r, i));
+            }
+        }
+
+        if( ++games_since_sync >= sync_games )
+            sync();
+    }
+
+    /**
+     * Writes every buffer and forces the files to disk.
+     * @throws IOException if a column can not be written
+     */
+    public synchronized void sync() throws IOException {
+        for( Column c : columns )
+            c.flush();
+        for( Column c : columns )
+            c.channel.force(false);
+        games_since_sync = 0;
+    }
+
+    /**
+     * Syncs and closes every column.
+     * @throws IOException if a column can not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if( closed )
+            return;
+        sync();
+        closed = true;
+        for( Column c : columns )
+            c.channel.close();
+    }
+}
@@ -0,0 +1,99 @@
+package simulation;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import game.Main;
+import utility.Util;
+
+/**
+ * Startup benchmark.
+ * Launches the game in new JVMs with a scripted one round game between two computers on its input and times,
+ * from the launch, the first prompt and the first turn of the game. Every launch is a cold start, so JVM options
+ * such as an AppCDS archive (-XX:SharedArchiveFile) are measured too.
+ * @see {@link Main}
+ * @author paulo
+ */
+public class StartupBenchmark {
+    private final String[] jvm_options;
+    private final boolean fast;
+
+    /**
+     * Constructor.
+     * @param fast launch the game with --fast?
+     * @param jvm_options the options of the launched JVMs
+     */
+    public StartupBenchmark( boolean fast, String[] jvm_options ){
+        this.fast = fast;
+        this.jvm_options = jvm_options.clone();
+    }
+
+    /**
+     * Launches the game once.
+     * @return the milliseconds from the launch to the first prompt and to the first turn
+     * @throws IOException if the game could not be launched or ended before its first turn
+     */
+    public double[] launch() throws IOException {
+        ArrayList<String> cmd = new ArrayList<String>();
+        cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        cmd.addAll(Arrays.asList(jvm_options));
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(Main.class.getName());
+        cmd.add("--no-ratings");
+        if( fast )
+            cmd.add("--fast");
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        try {
+            try( OutputStream in = process.getOutputStream() ){
+                in.write(Main.script(fast, 64).getBytes(StandardCharsets.UTF_8));
+            }
+            double prompt = -1;
+            BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while( (line = out.readLine()) != null ){
+                if( prompt < 0 && line.contains(Main.FIRST_PROMPT) )
+                    prompt = (System.nanoTime() - start) / 1e6;
+                if( line.contains(Main.FIRST_TURN) )
+                    return new double[]{ prompt, (System.nanoTime() - start) / 1e6 };
+            }
+            throw new IOException("The game ended before its first turn!");
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Launches the game a number of times and prints the median and min of both times.
+     * Arguments: launches, "fast" or "normal", then the options of the launched JVMs.
+     * @param args the arguments
+     * @throws IOException if the game could not be launched
+     */
+    public static void main( String[] args ) throws IOException {
+        int launches = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        boolean fast = args.length <= 1 || args[1].equals("fast");
+        String[] options = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : new String[0];
+
+        StartupBenchmark bench = new StartupBenchmark(fast, options);
+        bench.launch(); // warm the disk cache
+        double[] prompt = new double[launches];
+        double[] turn = new double[launches];
+        for( int i = 0; i < launches; i++ ){
+            double[] t = bench.launch();
+            prompt[i] = t[0];
+            turn[i] = t[1];
+        }
+        Arrays.sort(prompt);
+        Arrays.sort(turn);
+        Util.printSeparator("STARTUP (" + (fast ? "fast" : "normal") + " " + String.join(" ", options) + ")");
+        Util.print("time to first prompt: median %.1f ms, min %.1f ms", prompt[launches / 2], prompt[0]);
+        Util.print("time to first turn:   median %.1f ms, min %.1f ms", turn[launches / 2], turn[0]);
+    }
+}
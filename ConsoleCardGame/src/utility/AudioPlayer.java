@@ -0,0 +1,233 @@
+package utility;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.FloatControl;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Streaming audio player.
+ * Plays an audio file on its own daemon thread, decoding it a chunk at a time into a SourceDataLine, so playing
+ * starts as soon as the first chunk is read and the memory used is the chunk plus the ring buffer of the line
+ * (LINE_MILLIS of sound) whatever the length of the file. A looping file is opened again when it ends.
+ * Pause, resume and volume only set a flag the player thread picks up, they never wait on it.
+ * When there is no audio line (headless machine, no sound card) or the file is missing the player gives up
+ * quietly: the game goes on without music.
+ * @author paulo
+ */
+public final class AudioPlayer implements Closeable {
+    public static final int LINE_MILLIS = 250;
+    private static final int CHUNK = 4096;
+
+    /**
+     * The states of the player.
+     * @author paulo
+     */
+    public enum State { STARTING, PLAYING, PAUSED, UNAVAILABLE, STOPPED }
+
+    private final URL source;
+    private final boolean loop;
+    private final Thread thread;
+    private volatile State state;
+    private volatile boolean paused;
+    private volatile boolean stopped;
+    private volatile float volume;
+
+    /**
+     * Constructor. Creates a player, not started.
+     * @param source the audio file
+     * @param loop play again from the start when the file ends?
+     */
+    private AudioPlayer( URL source, boolean loop ){
+        this.source = source;
+        this.loop = loop;
+        this.state = State.STARTING;
+        this.volume = 1f;
+        this.thread = new Thread(this::run, "audio-player");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts playing an audio file in the background. Returns right away, the file is opened by the player thread.
+     * @param source the audio file, null if it could not be found
+     * @param loop play again from the start when the file ends?
+     * @return the player
+     */
+    public static AudioPlayer play( URL source, boolean loop ){
+        AudioPlayer player = new AudioPlayer(source, loop);
+        player.thread.start();
+        return player;
+    }
+
+    /**
+     * Player thread: streams the file into the line until stopped or the file ends.
+     */
+    private void run(){
+        SourceDataLine line = null;
+        try {
+            if( source == null )
+                throw new IOException("Audio file not found!");
+            AudioInputStream stream = open();
+            AudioFormat format = stream.getFormat();
+            int frame = Math.max(1, format.getFrameSize());
+            int line_bytes = Math.max(CHUNK, (int) (format.getFrameRate() * LINE_MILLIS / 1000) * frame);
+            line = (SourceDataLine) AudioSystem.getLine(new DataLine.Info(SourceDataLine.class, format));
+            line.open(format, line_bytes);
+            FloatControl gain = line.isControlSupported(FloatControl.Type.MASTER_GAIN) ? (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN) : null;
+            line.start();
+            state = State.PLAYING;
+            Util.printDebug("Music started! Type: %s", format);
+
+            byte[] chunk = new byte[CHUNK - CHUNK % frame];
+            float applied = -1;
+            while( !stopped ){
+                if( paused ){
+                    pauseLine(line);
+                    continue;
+                }
+                float v = volume;
+                if( gain != null && v != applied ){
+                    float db = v <= 0 ? gain.getMinimum() : (float) (20 * Math.log10(v));
+                    gain.setValue(Math.max(gain.getMinimum(), Math.min(gain.getMaximum(), db)));
+                    applied = v;
+                }
+
+                int n = stream.read(chunk, 0, chunk.length);
+                if( n < 0 ){
+                    stream.close();
+                    if( !loop )
+                        break;
+                    stream = open();
+                    continue;
+                }
+                if( gain == null && v < 1f )
+                    scale(chunk, n, format, v);
+                line.write(chunk, 0, n); // blocks this thread only while the line buffer is full
+            }
+            stream.close();
+            if( !stopped )
+                line.drain();
+            state = State.STOPPED;
+        } catch (LineUnavailableException | IOException | UnsupportedAudioFileException | IllegalArgumentException e) {
+            state = State.UNAVAILABLE;
+            Util.printDebug("Unable to play music (%s), carrying on without it", e.getMessage());
+        } finally {
+            if( line != null )
+                line.close();
+        }
+    }
+
+    /**
+     * Opens the file as a PCM stream, converting it if it is encoded otherwise.
+     * @return the stream
+     */
+    private AudioInputStream open() throws IOException, UnsupportedAudioFileException {
+        InputStream in = new BufferedInputStream(source.openStream(), CHUNK);
+        AudioInputStream stream = AudioSystem.getAudioInputStream(in);
+        AudioFormat format = stream.getFormat();
+        if( format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED && format.getEncoding() != AudioFormat.Encoding.PCM_UNSIGNED ){
+            AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+                    format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+            stream = AudioSystem.getAudioInputStream(pcm, stream);
+        }
+        return stream;
+    }
+
+    /**
+     * Stops the line while paused, waiting for resume or close.
+     * @param line the line
+     */
+    private void pauseLine( SourceDataLine line ){
+        line.stop();
+        state = State.PAUSED;
+        synchronized( this ){
+            while( paused && !stopped ){
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    stopped = true;
+                }
+            }
+        }
+        if( !stopped ){
+            line.start();
+            state = State.PLAYING;
+        }
+    }
+
+    /**
+     * Scales 16 bit samples in place, for lines without a gain control.
+     * @param chunk the samples
+     * @param n the number of bytes
+     * @param format the format of the samples
+     * @param v the volume, from 0 to 1
+     */
+    private static void scale( byte[] chunk, int n, AudioFormat format, float v ){
+        if( format.getSampleSizeInBits() != 16 || format.getEncoding() != AudioFormat.Encoding.PCM_SIGNED )
+            return;
+        boolean big = format.isBigEndian();
+        for( int i = 0; i + 1 < n; i += 2 ){
+            int hi = big ? i : i + 1;
+            int lo = big ? i + 1 : i;
+            int sample = (short) ((chunk[hi] << 8) | (chunk[lo] & 0xFF));
+            sample = (int) (sample * v);
+            chunk[hi] = (byte) (sample >> 8);
+            chunk[lo] = (byte) sample;
+        }
+    }
+
+    /**
+     * Pauses the music, it resumes where it was.
+     */
+    public void pause(){
+        paused = true;
+    }
+
+    /**
+     * Resumes the music if paused.
+     */
+    public synchronized void resume(){
+        paused = false;
+        notifyAll();
+    }
+
+    /**
+     * Sets the volume, picked up by the player on its next chunk.
+     * @param volume the volume, from 0 (silent) to 1 (as recorded)
+     */
+    public void setVolume( float volume ){
+        this.volume = Math.max(0f, Math.min(1f, volume));
+    }
+
+    /**
+     * @return the volume, from 0 to 1
+     */
+    public float getVolume(){
+        return volume;
+    }
+
+    /**
+     * @return the state of the player
+     */
+    public State getState(){
+        return state;
+    }
+
+    /**
+     * Stops the music. The player thread closes the line on its own, this does not wait for it.
+     */
+    @Override
+    public synchronized void close(){
+        stopped = true;
+        notifyAll();
+    }
+}
@@ -0,0 +1,138 @@
+package utility;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A data structure. Immutable vector that shares its structure with the vectors it was made from.
+ * The elements are the leaves of a tree of 32 wide nodes: get is O(log32 n), and set or add copy only the
+ * path to the leaf they change (at most 7 nodes for 2^31 elements), every other node is shared with the
+ * old vector, which is left as it was. Keeping many versions costs memory for their changes only.
+ * @param <T> the type of the elements
+ * @author paulo
+ */
+public final class PersistentVector<T> implements Iterable<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final PersistentVector<Object> EMPTY = new PersistentVector<Object>(0, 0, new Object[WIDTH]);
+
+    private final int size;
+    private final int shift;     // BITS times the height of the tree above the leaves
+    private final Object[] root;
+
+    /**
+     * Constructor.
+     * @param size the number of elements
+     * @param shift the shift of the root
+     * @param root the root node
+     */
+    private PersistentVector( int size, int shift, Object[] root ){
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    /**
+     * @return the empty vector
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> empty(){
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    /**
+     * @param elements some elements
+     * @return a vector of the elements, in order
+     */
+    public static <T> PersistentVector<T> of( Iterable<? extends T> elements ){
+        PersistentVector<T> v = empty();
+        for( T e : elements )
+            v = v.add(e);
+        return v;
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @param i an index, from 0
+     * @return the element at the index
+     */
+    @SuppressWarnings("unchecked")
+    public T get( int i ){
+        if( i < 0 || i >= size )
+            throw new IndexOutOfBoundsException("Index " + i + " out of a vector of " + size);
+        Object[] node = root;
+        for( int level = shift; level > 0; level -= BITS )
+            node = (Object[]) node[(i >>> level) & MASK];
+        return (T) node[i & MASK];
+    }
+
+    /**
+     * @param i an index, from 0
+     * @param e the new element
+     * @return a vector with the element at the index replaced, this one if it was already there
+     */
+    public PersistentVector<T> set( int i, T e ){
+        if( i < 0 || i >= size )
+            throw new IndexOutOfBoundsException("Index " + i + " out of a vector of " + size);
+        if( get(i) == e )
+            return this;
+        return new PersistentVector<T>(size, shift, set(root, shift, i, e));
+    }
+
+    /**
+     * @param e an element
+     * @return a vector with the element added at the end
+     */
+    public PersistentVector<T> add( T e ){
+        Object[] r = root;
+        int s = shift;
+        if( size == 1 << (shift + BITS) ){ // full, grow a level
+            r = new Object[WIDTH];
+            r[0] = root;
+            s += BITS;
+        }
+        return new PersistentVector<T>(size + 1, s, set(r, s, size, e));
+    }
+
+    /**
+     * Copies the path to an index and sets the element at its end. Missing nodes on the path are made.
+     * @param node the node, null if missing
+     * @param level the shift of the node
+     * @param i the index
+     * @param e the element
+     * @return the copy of the node
+     */
+    private static Object[] set( Object[] node, int level, int i, Object e ){
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        if( level == 0 )
+            copy[i & MASK] = e;
+        else
+            copy[(i >>> level) & MASK] = set((Object[]) copy[(i >>> level) & MASK], level - BITS, i, e);
+        return copy;
+    }
+
+    @Override
+    public Iterator<T> iterator(){
+        return new Iterator<T>(){
+            private int i = 0;
+
+            @Override
+            public boolean hasNext(){
+                return i < size;
+            }
+
+            @Override
+            public T next(){
+                if( i >= size )
+                    throw new NoSuchElementException();
+                return get(i++);
+            }
+        };
+    }
+}
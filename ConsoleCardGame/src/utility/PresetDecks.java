@@ -4,13 +4,60 @@ import cards.Attribute;
 import cards.AttributeType;
 import cards.Card;
 import cards.Deck;
+import cards.DeckFaction;
 
 /**
  * This class is used to load preset decks into the game.
  * Contains static methods to load the decks.
+ * The cards of a faction are only made the first time they are needed, see getCatalog.
  * @author paulo
  */
 public final class PresetDecks {
+    /*
+     * Catalogs of the cards of each faction. The JVM initializes a nested class the first time it is used,
+     * so a catalog is only built when a deck of its faction is first loaded, once, safely across threads.
+     */
+    private static final class ElvenCatalog {
+        static final Card[] CARDS = cardsOf(loadElvenDeck(new Deck(DeckFaction.ELVES.getName(), Deck.DEFAULT_DECK_SIZE)));
+    }
+    private static final class PirateCatalog {
+        static final Card[] CARDS = cardsOf(loadPirateDeck(new Deck(DeckFaction.PIRATES.getName(), Deck.DEFAULT_DECK_SIZE)));
+    }
+    private static final class KingdomCatalog {
+        static final Card[] CARDS = cardsOf(loadKingdomDeck(new Deck(DeckFaction.KINGDOM.getName(), Deck.DEFAULT_DECK_SIZE)));
+    }
+    
+    /**
+     * Gets the preset cards of a faction, building them on the first call for that faction.
+     * The cards returned are templates shared by every caller: copy them, never play them.
+     * @param faction the faction
+     * @return the cards of the preset deck of the faction, in deck order
+     */
+    public static Card[] getCatalog( DeckFaction faction ){
+        switch(faction){
+            case ELVES:
+                return ElvenCatalog.CARDS;
+            case PIRATES:
+                return PirateCatalog.CARDS;
+            case KINGDOM:
+                return KingdomCatalog.CARDS;
+            default:
+                throw new Error("Invalid faction!");
+        }
+    }
+    
+    /**
+     * @param deck a deck
+     * @return the cards in the deck, in order
+     */
+    private static Card[] cardsOf( Deck deck ){
+        Card[] cards = new Card[deck.getCardsLeft()];
+        int i = 0;
+        for( Card card : deck )
+            cards[i++] = card;
+        return cards;
+    }
+    
     /**
      * Loads the elven preset deck! 
      * @param deck
@@ -8,6 +8,23 @@ import java.util.Scanner;
  * @author paulo
  */
 public final class Util {
+    // Output is muted per thread, so headless games can run next to an interactive one
+    private static final ThreadLocal<Boolean> muted = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    
+    /**
+     * Mutes or unmutes all the printing methods of this class for the calling thread.
+     * @param mute true to mute
+     */
+    public static final void setMuted( boolean mute ){
+        muted.set(mute);
+    }
+    
+    /**
+     * @return if printing is muted for the calling thread
+     */
+    public static final boolean isMuted(){
+        return muted.get();
+    }
     
     /**
      * Prints a message out with a prefix.
@@ -15,6 +32,8 @@ public final class Util {
      * @param args the arguments part of the message
      */
     public static final void print(String msg, Object... args){
+        if( isMuted() )
+            return;
         System.out.printf( "[CARD GAME] " + msg + "\n", args );
     }
     
@@ -24,6 +43,8 @@ public final class Util {
      * @param args the arguments part of the message
      */
     public static final void printDebug(String msg, Object... args){
+        if( isMuted() )
+            return;
         System.out.printf( "[DEBUG] " + msg + "\n", args );
     }
     
@@ -33,6 +54,8 @@ public final class Util {
      * @param args the arguments part of the message
      */
     public static final void printError(String msg, Object... args){
+        if( isMuted() )
+            return;
         System.out.printf( "[ERROR] " + msg + "\n", args);
     }
     
@@ -41,6 +64,8 @@ public final class Util {
      * @param msg the message
      */
     public static final void printEmptyMessage( String msg ){
+        if( isMuted() )
+            return;
         System.out.println("<<< [" + msg + "] >>>");
     }
     
@@ -49,6 +74,8 @@ public final class Util {
      * @param msg the message
      */
     public static final void printSeparator( String msg ){
+        if( isMuted() )
+            return;
         System.out.println("==================[" + msg + "]==================");
     }
     
@@ -57,6 +84,8 @@ public final class Util {
      * @param msg the message
      */
     public static final void printSeparator2( String msg ){
+        if( isMuted() )
+            return;
         System.out.println(">>>>>>>>>>>>>>> [" + msg + "] <<<<<<<<<<<<<<<<");
     }
      
@@ -66,6 +95,8 @@ public final class Util {
      * @param args the arguments part of the message
      */
     public static void printInBox(String msg, Object... args) {
+        if( isMuted() )
+            return;
         String border = "";
         StringBuilder sbborder = new StringBuilder(border);
         for( int i = 0; i < msg.length(); i++ )